@@ -0,0 +1,95 @@
+package com.lookinsure.quotesaggregator.benchmark;
+
+import com.lookinsure.quotesaggregator.LookinsureQuotesAggregatorApplication;
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.entity.Provider;
+import com.lookinsure.quotesaggregator.entity.Quote;
+import com.lookinsure.quotesaggregator.service.QuoteAggregationIndex;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic quote data sets shared by the JMH benchmarks.
+ */
+final class BenchmarkData {
+
+    static final int PROVIDERS = 10;
+
+    private static final int INSERT_BATCH_SIZE = 10_000;
+
+    private BenchmarkData() {
+    }
+
+    static List<Quote> quotes(int size) {
+        List<Provider> providers = new ArrayList<>();
+        for (long i = 1; i <= PROVIDERS; i++) {
+            providers.add(new Provider(i, "Benchmark Provider " + i));
+        }
+
+        Random random = new Random(42);
+        List<Quote> quotes = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            quotes.add(new Quote(id, coverageType(random), price(random), providers.get(random.nextInt(PROVIDERS)), null));
+        }
+        return quotes;
+    }
+
+    static List<QuoteResponse> responses(int size) {
+        return quotes(size).stream()
+                .map(quote -> new QuoteResponse(quote.getId(), quote.getCoverageType(), quote.getPrice(),
+                        quote.getProvider().getName()))
+                .toList();
+    }
+
+    /**
+     * Starts the application without a web server against a private in-memory database
+     * holding {@code size} quotes, with the aggregation index already built.
+     */
+    static ConfigurableApplicationContext startApplication(int size) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(LookinsureQuotesAggregatorApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:jmh-" + size + ";LAZY_QUERY_EXECUTION=TRUE;OPTIMIZE_REUSE_RESULTS=FALSE",
+                        "spring.jpa.properties.hibernate.generate_statistics=false",
+                        "logging.level.root=WARN")
+                .run();
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        for (int i = 1; i <= PROVIDERS; i++) {
+            jdbcTemplate.update("insert into providers (name) values (?)", "Benchmark Provider " + i);
+        }
+        List<Long> providerIds = jdbcTemplate.queryForList("select id from providers", Long.class);
+
+        Random random = new Random(42);
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int i = 0; i < size; i++) {
+            batch.add(new Object[]{
+                    coverageType(random).name(), price(random), providerIds.get(random.nextInt(PROVIDERS))});
+            if (batch.size() == INSERT_BATCH_SIZE || i == size - 1) {
+                jdbcTemplate.batchUpdate("insert into quotes (id, coverage_type, price, provider_id, version) values (next value for quotes_seq, ?, ?, ?, 0)", batch);
+                batch.clear();
+            }
+        }
+
+        context.getBean(QuoteAggregationIndex.class).rebuild();
+        return context;
+    }
+
+    private static CoverageType coverageType(Random random) {
+        CoverageType[] coverageTypes = CoverageType.values();
+        return coverageTypes[random.nextInt(coverageTypes.length)];
+    }
+
+    private static BigDecimal price(Random random) {
+        return BigDecimal.valueOf(random.nextInt(500_000) + 1, 2);
+    }
+}
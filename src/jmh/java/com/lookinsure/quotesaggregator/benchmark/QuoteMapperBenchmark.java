@@ -0,0 +1,35 @@
+package com.lookinsure.quotesaggregator.benchmark;
+
+import com.lookinsure.quotesaggregator.entity.Quote;
+import com.lookinsure.quotesaggregator.mapper.QuoteMapper;
+import com.lookinsure.quotesaggregator.mapper.QuoteMapperImpl;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class QuoteMapperBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private final QuoteMapper quoteMapper = new QuoteMapperImpl();
+
+    private List<Quote> quotes;
+
+    @Setup
+    public void setup() {
+        quotes = BenchmarkData.quotes(size);
+    }
+
+    @Benchmark
+    public void toResponse(Blackhole blackhole) {
+        for (Quote quote : quotes) {
+            blackhole.consume(quoteMapper.toResponse(quote));
+        }
+    }
+}
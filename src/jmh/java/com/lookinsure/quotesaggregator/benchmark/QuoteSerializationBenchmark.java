@@ -0,0 +1,86 @@
+package com.lookinsure.quotesaggregator.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.service.EncodedQuotes;
+import com.lookinsure.quotesaggregator.service.QuoteDataVersion;
+import com.lookinsure.quotesaggregator.service.QuoteResponseEncoder;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Per-request cost of the aggregate response body: serialising (and compressing) the list on
+ * every request versus copying pre-encoded bytes. Run with {@code -prof gc} for allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class QuoteSerializationBenchmark {
+
+    private static final QuoteDataVersion.Snapshot VERSION = new QuoteDataVersion().current();
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final QuoteResponseEncoder encoder = new QuoteResponseEncoder(objectMapper);
+
+    private List<QuoteResponse> quotes;
+    private EncodedQuotes encoded;
+    private ByteArrayOutputStream response;
+
+    @Setup
+    public void setup() {
+        quotes = BenchmarkData.responses(size);
+        encoded = encoder.encode(quotes, VERSION);
+        // stands in for the servlet response buffer; reused so it does not count as allocation
+        response = new ByteArrayOutputStream(encoded.json().length * 2);
+    }
+
+    @Benchmark
+    public byte[] serializeAggregatedQuotes() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(quotes);
+    }
+
+    @Benchmark
+    public int writeSerializedPerRequest() throws IOException {
+        response.reset();
+        objectMapper.writeValue(response, quotes);
+        return response.size();
+    }
+
+    @Benchmark
+    public int writeGzipSerializedPerRequest() throws IOException {
+        response.reset();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(response)) {
+            objectMapper.writeValue(gzip, quotes);
+        }
+        return response.size();
+    }
+
+    @Benchmark
+    public int writePreEncoded() {
+        response.reset();
+        response.writeBytes(encoded.json());
+        return response.size();
+    }
+
+    @Benchmark
+    public int writePreEncodedGzip() {
+        response.reset();
+        response.writeBytes(encoded.gzip());
+        return response.size();
+    }
+
+    @Benchmark
+    public EncodedQuotes encodeOnDataChange() {
+        return encoder.encode(quotes, VERSION);
+    }
+}
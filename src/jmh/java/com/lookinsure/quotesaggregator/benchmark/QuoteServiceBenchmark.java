@@ -0,0 +1,90 @@
+package com.lookinsure.quotesaggregator.benchmark;
+
+import com.lookinsure.quotesaggregator.config.CacheConfig;
+import com.lookinsure.quotesaggregator.dto.AggregationFilter;
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.event.QuoteChangedEvent;
+import com.lookinsure.quotesaggregator.service.EncodedQuotes;
+import com.lookinsure.quotesaggregator.service.QuoteAggregationIndex;
+import com.lookinsure.quotesaggregator.service.QuoteService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class QuoteServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private final Pageable firstPage = PageRequest.of(0, 20, Sort.by("price", "id"));
+    private final AggregationFilter cheapestCar = new AggregationFilter(CoverageType.CAR, null, null, 10);
+
+    private ConfigurableApplicationContext context;
+    private QuoteService quoteService;
+    private QuoteAggregationIndex aggregationIndex;
+    private Cache encodedAggregatedQuotes;
+    private QuoteResponse updatedQuote;
+    private long updates;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkData.startApplication(size);
+        quoteService = context.getBean(QuoteService.class);
+        aggregationIndex = context.getBean(QuoteAggregationIndex.class);
+        encodedAggregatedQuotes = context.getBean(CacheManager.class).getCache(CacheConfig.ENCODED_AGGREGATED_QUOTES);
+        updatedQuote = aggregationIndex.query(cheapestCar).get(0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public EncodedQuotes getEncodedAggregatedQuotesWarmCache() {
+        return quoteService.getEncodedAggregatedQuotes(AggregationFilter.unfiltered());
+    }
+
+    @Benchmark
+    public EncodedQuotes getEncodedAggregatedQuotesColdCache() {
+        encodedAggregatedQuotes.clear();
+        return quoteService.getEncodedAggregatedQuotes(AggregationFilter.unfiltered());
+    }
+
+    @Benchmark
+    public List<QuoteResponse> queryCheapestCarQuotes() {
+        return aggregationIndex.query(cheapestCar);
+    }
+
+    @Benchmark
+    public int applySingleQuoteUpdate() {
+        BigDecimal price = BigDecimal.valueOf(++updates % 500_000 + 1, 2);
+        aggregationIndex.apply(QuoteChangedEvent.updated(new QuoteResponse(
+                updatedQuote.id(), updatedQuote.coverageType(), price, updatedQuote.providerName()), updates));
+        return aggregationIndex.size();
+    }
+
+    @Benchmark
+    public int rebuildAggregationIndex() {
+        aggregationIndex.rebuild();
+        return aggregationIndex.size();
+    }
+
+    @Benchmark
+    public Page<QuoteResponse> getAllQuotesFirstPage() {
+        return quoteService.getAllQuotes(firstPage);
+    }
+}
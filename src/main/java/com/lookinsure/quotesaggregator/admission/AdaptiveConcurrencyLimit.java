@@ -0,0 +1,83 @@
+package com.lookinsure.quotesaggregator.admission;
+
+import com.lookinsure.quotesaggregator.config.AdmissionControlProperties;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that follows measured latency, in the manner of the gradient limit of
+ * Netflix's concurrency-limits.
+ * <p>
+ * Each completed request's latency is compared with a long-term average. While latency stays
+ * within {@code tolerance} of it, the limit grows by about its square root, so it keeps probing for
+ * more capacity. Once requests start queueing and latency rises, the limit shrinks in proportion,
+ * by at most half per sample. Samples taken while less than half the limit is in use are ignored,
+ * as latency then says nothing about how much more load would be served.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private final AdmissionControlProperties.Budget budget;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    private double averageLatency;
+
+    public AdaptiveConcurrencyLimit(AdmissionControlProperties.Budget budget) {
+        this.budget = budget;
+        this.limit = budget.getInitialLimit();
+    }
+
+    /**
+     * Takes a slot if fewer than {@code share} of the limit are in use.
+     */
+    public boolean tryAcquire(double share) {
+        int allowed = Math.max(1, (int) (limit * share));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Frees a slot without a latency sample, e.g. for a request whose response is streamed.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public void release(long latencyNanos) {
+        onSample(latencyNanos, inFlight.getAndDecrement());
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    synchronized void onSample(long latencyNanos, int inFlightAtCompletion) {
+        double latency = Math.max(1, latencyNanos);
+        if (averageLatency == 0) {
+            averageLatency = latency;
+        } else {
+            averageLatency += (latency - averageLatency) / budget.getWindow();
+            // let the average follow a lasting drop in latency without waiting out the whole window
+            if (averageLatency > 2 * latency) {
+                averageLatency *= 0.95;
+            }
+        }
+        if (inFlightAtCompletion < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, budget.getTolerance() * averageLatency / latency));
+        double estimate = limit * gradient + Math.sqrt(limit);
+        double smoothed = limit * (1 - budget.getSmoothing()) + estimate * budget.getSmoothing();
+        limit = Math.max(budget.getMinLimit(), Math.min(budget.getMaxLimit(), smoothed));
+    }
+}
@@ -0,0 +1,116 @@
+package com.lookinsure.quotesaggregator.admission;
+
+import com.lookinsure.quotesaggregator.config.AdmissionControlProperties;
+import com.lookinsure.quotesaggregator.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.util.Set;
+
+/**
+ * Admits a request only while its budget has room, and rejects it straight away with
+ * {@link TooManyRequestsException} otherwise, so overload is answered with fast 429s instead of a
+ * growing queue on the servlet threads.
+ * <p>
+ * Reads and writes have separate {@link AdaptiveConcurrencyLimit}s, so slow writes cannot starve
+ * reads. Database-bound reads may only use part of the read budget; the rest is held for
+ * {@link CachedRead} endpoints. Cached reads are not sampled, as their latency says little about
+ * the database's capacity. Streamed responses hold their slot until the stream starts only.
+ */
+public class AdmissionControlInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String PERMIT = AdmissionControlInterceptor.class.getName() + ".permit";
+    private static final Set<String> READ_METHODS =
+            Set.of(HttpMethod.GET.name(), HttpMethod.HEAD.name(), HttpMethod.OPTIONS.name());
+
+    private final AdmissionControlProperties properties;
+    private final AdaptiveConcurrencyLimit reads;
+    private final AdaptiveConcurrencyLimit writes;
+    private final Counter readsRejected;
+    private final Counter writesRejected;
+
+    public AdmissionControlInterceptor(AdmissionControlProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.reads = new AdaptiveConcurrencyLimit(properties.getRead());
+        this.writes = new AdaptiveConcurrencyLimit(properties.getWrite());
+        this.readsRejected = register(registry, "read", reads);
+        this.writesRejected = register(registry, "write", writes);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // an async result is dispatched back through the interceptors; its slot was already taken
+        if (!(handler instanceof HandlerMethod method) || request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        boolean write = !READ_METHODS.contains(request.getMethod());
+        boolean cached = !write && method.hasMethodAnnotation(CachedRead.class);
+        AdaptiveConcurrencyLimit limit = write ? writes : reads;
+        if (!limit.tryAcquire(write || cached ? 1.0 : 1.0 - properties.getCachedReadReserve())) {
+            (write ? writesRejected : readsRejected).increment();
+            throw new TooManyRequestsException(
+                    "Too many " + (write ? "write" : "read") + " requests in flight; retry later",
+                    properties.getRetryAfter());
+        }
+        request.setAttribute(PERMIT, new Permit(limit, System.nanoTime(), !cached));
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        if (request.getAttribute(PERMIT) instanceof Permit permit) {
+            request.removeAttribute(PERMIT);
+            permit.limit().release();
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (request.getAttribute(PERMIT) instanceof Permit permit) {
+            request.removeAttribute(PERMIT);
+            if (permit.sampled()) {
+                permit.limit().release(System.nanoTime() - permit.startNanos());
+            } else {
+                permit.limit().release();
+            }
+        }
+    }
+
+    AdaptiveConcurrencyLimit getReads() {
+        return reads;
+    }
+
+    AdaptiveConcurrencyLimit getWrites() {
+        return writes;
+    }
+
+    private static Counter register(MeterRegistry registry, String budget, AdaptiveConcurrencyLimit limit) {
+        Gauge.builder("quotes.admission.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                .description("Concurrent requests currently admitted at most")
+                .tag("budget", budget)
+                .register(registry);
+        Gauge.builder("quotes.admission.in.flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                .description("Admitted requests in flight")
+                .tag("budget", budget)
+                .register(registry);
+        return Counter.builder("quotes.admission.rejected")
+                .description("Requests rejected with 429 because their budget was full")
+                .tag("budget", budget)
+                .register(registry);
+    }
+
+    private record Permit(
+            AdaptiveConcurrencyLimit limit,
+            long startNanos,
+            boolean sampled
+    ) {}
+}
@@ -0,0 +1,15 @@
+package com.lookinsure.quotesaggregator.admission;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a read endpoint served from memory. Admission control lets such reads use the share of
+ * the read budget held back from database-bound reads, so they keep being served under overload.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CachedRead {
+}
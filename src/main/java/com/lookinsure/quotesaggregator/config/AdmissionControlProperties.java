@@ -0,0 +1,71 @@
+package com.lookinsure.quotesaggregator.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "quotes.admission")
+public class AdmissionControlProperties {
+
+    /**
+     * Limit the requests in flight per budget and reject the excess with 429 instead of queueing it.
+     */
+    private boolean enabled;
+
+    /**
+     * Sent as {@code Retry-After} on rejected requests.
+     */
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+    /**
+     * Share of the read budget only reads served from memory may use, so they are still admitted
+     * when database-bound reads have used up the rest.
+     */
+    private double cachedReadReserve = 0.2;
+
+    private Budget read = new Budget(100, 10, 1000);
+
+    private Budget write = new Budget(20, 2, 200);
+
+    @Getter
+    @Setter
+    public static class Budget {
+
+        /**
+         * Concurrent requests allowed before any latency has been measured.
+         */
+        private int initialLimit;
+
+        private int minLimit;
+
+        private int maxLimit;
+
+        /**
+         * How much slower than the long-term average latency may get before the limit shrinks.
+         */
+        private double tolerance = 1.5;
+
+        /**
+         * Weight of each new limit estimate, between 0 (never move) and 1 (jump straight to it).
+         */
+        private double smoothing = 0.2;
+
+        /**
+         * Number of samples the long-term average latency is taken over.
+         */
+        private int window = 600;
+
+        public Budget() {
+        }
+
+        Budget(int initialLimit, int minLimit, int maxLimit) {
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+        }
+    }
+}
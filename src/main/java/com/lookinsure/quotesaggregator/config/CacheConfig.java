@@ -0,0 +1,82 @@
+package com.lookinsure.quotesaggregator.config;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.lookinsure.quotesaggregator.dto.AggregationFilter;
+import com.lookinsure.quotesaggregator.service.EncodedQuotes;
+import com.lookinsure.quotesaggregator.service.QuoteAggregationIndex;
+import com.lookinsure.quotesaggregator.service.QuoteDataVersion;
+import com.lookinsure.quotesaggregator.service.QuoteResponseEncoder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Configuration
+@EnableConfigurationProperties(QuoteCacheProperties.class)
+public class CacheConfig {
+
+    public static final String ENCODED_AGGREGATED_QUOTES = "encodedAggregatedQuotes";
+
+    @Bean
+    public CacheManager cacheManager(QuoteCacheProperties properties,
+                                     QuoteAggregationIndex aggregationIndex,
+                                     QuoteResponseEncoder quoteResponseEncoder,
+                                     QuoteDataVersion dataVersion,
+                                     ObjectProvider<Ticker> ticker) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setAllowNullValues(false);
+
+        Map<String, QuoteCacheProperties.Spec> specs = new LinkedHashMap<>(properties.getSpecs());
+        specs.putIfAbsent(ENCODED_AGGREGATED_QUOTES, new QuoteCacheProperties.Spec());
+        specs.forEach((name, spec) -> {
+            Caffeine<Object, Object> builder = newBuilder(spec, ticker.getIfAvailable(Ticker::systemTicker));
+            if (ENCODED_AGGREGATED_QUOTES.equals(name)) {
+                // the loader is what refresh-after-write reloads entries with
+                cacheManager.registerCustomCache(name, builder.build(new CacheLoader<Object, Object>() {
+                    @Override
+                    public Object load(Object key) {
+                        return aggregationIndex.query((AggregationFilter) key, quoteResponseEncoder::encode);
+                    }
+
+                    @Override
+                    public Object reload(Object key, Object oldValue) {
+                        // nothing changed since it was encoded: keep it rather than compress it again
+                        boolean current = ((EncodedQuotes) oldValue).version().version() == dataVersion.current().version();
+                        return current ? oldValue : load(key);
+                    }
+                }));
+            } else {
+                cacheManager.registerCustomCache(name, builder.build());
+            }
+        });
+
+        return cacheManager;
+    }
+
+    private static int weigh(Object key, Object value) {
+        if (value instanceof EncodedQuotes encoded) {
+            return encoded.count() + 1;
+        }
+        return 1;
+    }
+
+    private static Caffeine<Object, Object> newBuilder(QuoteCacheProperties.Spec spec, Ticker ticker) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumWeight(spec.getMaximumWeight())
+                .weigher(CacheConfig::weigh)
+                .expireAfterWrite(spec.getExpireAfterWrite())
+                .ticker(ticker)
+                .recordStats();
+        if (spec.getRefreshAfterWrite() != null) {
+            builder.refreshAfterWrite(spec.getRefreshAfterWrite());
+        }
+        return builder;
+    }
+}
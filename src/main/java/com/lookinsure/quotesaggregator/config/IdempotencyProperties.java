@@ -0,0 +1,45 @@
+package com.lookinsure.quotesaggregator.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "quotes.idempotency")
+public class IdempotencyProperties {
+
+    /**
+     * Where Idempotency-Key outcomes are kept: {@code memory} for a single node, or
+     * {@code database} to share them between nodes.
+     */
+    private Store store = Store.MEMORY;
+
+    /**
+     * How long a key's outcome is replayed; a retry after this is treated as a new request.
+     */
+    private Duration retention = Duration.ofHours(24);
+
+    /**
+     * How long a claimed key may stay without a response before a retry takes it over, assuming the
+     * request holding it has died. A request still running after this may be run twice.
+     */
+    private Duration inProgressTimeout = Duration.ofMinutes(1);
+
+    /**
+     * Completed keys held by the in-memory store at most; the least recently used are dropped first.
+     */
+    private long maximumSize = 100_000;
+
+    /**
+     * How often the database store deletes keys older than {@code retention}.
+     */
+    private Duration purgeInterval = Duration.ofMinutes(10);
+
+    public enum Store {
+        MEMORY,
+        DATABASE
+    }
+}
@@ -0,0 +1,28 @@
+package com.lookinsure.quotesaggregator.config;
+
+import com.lookinsure.quotesaggregator.service.QuoteAggregationIndex;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Records a timer for every method of beans annotated with {@code @Timed}.
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    @Bean
+    public MeterBinder quoteIndexMetrics(QuoteAggregationIndex aggregationIndex) {
+        return registry -> Gauge.builder("quotes.index.size", aggregationIndex, QuoteAggregationIndex::size)
+                .description("Quotes held by the in-memory aggregation index")
+                .register(registry);
+    }
+}
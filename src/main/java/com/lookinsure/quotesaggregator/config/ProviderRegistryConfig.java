@@ -0,0 +1,9 @@
+package com.lookinsure.quotesaggregator.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ProviderRegistryProperties.class)
+public class ProviderRegistryConfig {
+}
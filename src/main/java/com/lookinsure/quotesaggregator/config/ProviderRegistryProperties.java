@@ -0,0 +1,19 @@
+package com.lookinsure.quotesaggregator.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "quotes.providers")
+public class ProviderRegistryProperties {
+
+    /**
+     * Shortest time between two reloads triggered by an unknown provider id; unknown ids within it
+     * are reported missing without touching the database.
+     */
+    private Duration missRefreshInterval = Duration.ofSeconds(1);
+}
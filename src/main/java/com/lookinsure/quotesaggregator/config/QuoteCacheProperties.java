@@ -0,0 +1,41 @@
+package com.lookinsure.quotesaggregator.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "quotes.cache")
+public class QuoteCacheProperties {
+
+    private Map<String, Spec> specs = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class Spec {
+
+        /**
+         * Upper bound on the summed weight of all entries; an encoded list weighs its element count.
+         */
+        private long maximumWeight = 100_000;
+
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+
+        /**
+         * Entries older than this are reloaded in the background on the next read while the
+         * previous value keeps being served. Disabled when unset.
+         */
+        private Duration refreshAfterWrite;
+
+        /**
+         * When the quotes change, keep serving the previous entries while they are reloaded in the
+         * background instead of dropping them. Disabled by default.
+         */
+        private boolean staleWhileRevalidate;
+    }
+}
@@ -0,0 +1,9 @@
+package com.lookinsure.quotesaggregator.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(QuoteFeedProperties.class)
+public class QuoteFeedConfig {
+}
@@ -0,0 +1,35 @@
+package com.lookinsure.quotesaggregator.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "quotes.feed")
+public class QuoteFeedProperties {
+
+    /**
+     * Most recent changes kept for clients resuming with {@code Last-Event-ID}; clients further
+     * behind are told to reload instead.
+     */
+    private int capacity = 10_000;
+
+    /**
+     * Changes buffered per client; a client that falls further behind is disconnected and resumes
+     * on reconnect.
+     */
+    private int subscriberBuffer = 1_000;
+
+    /**
+     * Idle time after which a keep-alive comment is sent, so dead connections are noticed.
+     */
+    private Duration heartbeat = Duration.ofSeconds(15);
+
+    /**
+     * Lifetime of one stream; clients reconnect and resume afterwards.
+     */
+    private Duration timeout = Duration.ofMinutes(30);
+}
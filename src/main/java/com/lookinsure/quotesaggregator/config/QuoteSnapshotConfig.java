@@ -0,0 +1,11 @@
+package com.lookinsure.quotesaggregator.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(QuoteSnapshotProperties.class)
+public class QuoteSnapshotConfig {
+}
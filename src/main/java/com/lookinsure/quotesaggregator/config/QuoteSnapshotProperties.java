@@ -0,0 +1,27 @@
+package com.lookinsure.quotesaggregator.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "quotes.snapshot")
+public class QuoteSnapshotProperties {
+
+    /**
+     * Save the aggregation index to {@link #path} periodically and on shutdown, and restore it
+     * from there on startup before reconciling with the database in the background.
+     */
+    private boolean enabled;
+
+    private Path path = Path.of("data", "quote-index.snapshot");
+
+    /**
+     * Delay between snapshot checks; a snapshot is only written when the data has changed.
+     */
+    private Duration interval = Duration.ofMinutes(1);
+}
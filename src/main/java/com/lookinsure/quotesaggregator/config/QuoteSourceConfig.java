@@ -0,0 +1,18 @@
+package com.lookinsure.quotesaggregator.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+@EnableConfigurationProperties(QuoteSourceProperties.class)
+public class QuoteSourceConfig {
+
+    @Bean(destroyMethod = "close")
+    public ExecutorService quoteSourceExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
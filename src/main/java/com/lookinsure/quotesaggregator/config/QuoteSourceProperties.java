@@ -0,0 +1,46 @@
+package com.lookinsure.quotesaggregator.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "quotes.sources")
+public class QuoteSourceProperties {
+
+    /**
+     * Latency budget for a live aggregation; sources that have not answered by then are left out.
+     */
+    private Duration budget = Duration.ofMillis(300);
+
+    /**
+     * A second attempt is started against a source that has not answered after this long, or
+     * straight away when the first attempt fails. Disabled when unset.
+     */
+    private Duration hedgeDelay = Duration.ofMillis(100);
+
+    private List<Simulation> simulated = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Simulation {
+
+        private String provider;
+
+        private Duration latency = Duration.ofMillis(50);
+
+        /**
+         * Random extra delay, uniformly distributed between zero and this value.
+         */
+        private Duration jitter = Duration.ZERO;
+
+        private double failureRate;
+
+        private Duration timeout;
+    }
+}
@@ -0,0 +1,45 @@
+package com.lookinsure.quotesaggregator.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "quotes.write-behind")
+public class WriteBehindProperties {
+
+    /**
+     * Accept quote mutations into an in-memory queue and acknowledge them before they are written,
+     * instead of committing each request on its own.
+     */
+    private boolean enabled;
+
+    /**
+     * Mutations held in memory at most; further writes are rejected until the queue drains.
+     */
+    private int capacity = 10_000;
+
+    /**
+     * Mutations committed per transaction at most.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Longest a queued mutation waits for its batch to fill before the batch is flushed anyway.
+     */
+    private Duration flushInterval = Duration.ofMillis(200);
+
+    /**
+     * How long the outcome of a mutation can be looked up by its pending id.
+     */
+    private Duration resultRetention = Duration.ofMinutes(10);
+
+    /**
+     * Outcomes kept at most; beyond it, outcomes are dropped before their retention ends. Writes
+     * still pending do not count towards it.
+     */
+    private int resultCapacity = 100_000;
+}
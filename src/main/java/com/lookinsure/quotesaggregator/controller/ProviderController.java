@@ -0,0 +1,38 @@
+package com.lookinsure.quotesaggregator.controller;
+
+import com.lookinsure.quotesaggregator.admission.CachedRead;
+import com.lookinsure.quotesaggregator.dto.ProviderRequest;
+import com.lookinsure.quotesaggregator.dto.ProviderResponse;
+import com.lookinsure.quotesaggregator.service.ProviderService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/providers")
+@RequiredArgsConstructor
+public class ProviderController {
+
+    private final ProviderService providerService;
+
+    @PostMapping
+    public ResponseEntity<ProviderResponse> createProvider(@Valid @RequestBody ProviderRequest request) {
+        return new ResponseEntity<>(providerService.createProvider(request), HttpStatus.CREATED);
+    }
+
+    @CachedRead
+    @GetMapping
+    public ResponseEntity<List<ProviderResponse>> getAllProviders() {
+        return ResponseEntity.ok(providerService.getAllProviders());
+    }
+
+    @CachedRead
+    @GetMapping("/{id}")
+    public ResponseEntity<ProviderResponse> getProvider(@PathVariable Long id) {
+        return ResponseEntity.ok(providerService.getProviderById(id));
+    }
+}
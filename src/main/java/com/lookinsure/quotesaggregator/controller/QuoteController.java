@@ -1,32 +1,123 @@
 package com.lookinsure.quotesaggregator.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.lookinsure.quotesaggregator.admission.CachedRead;
+import com.lookinsure.quotesaggregator.dto.AggregationFilter;
+import com.lookinsure.quotesaggregator.dto.LiveAggregationResponse;
+import com.lookinsure.quotesaggregator.dto.PendingWrite;
+import com.lookinsure.quotesaggregator.dto.QuoteBatchRequest;
+import com.lookinsure.quotesaggregator.dto.QuoteBatchSummary;
+import com.lookinsure.quotesaggregator.dto.QuoteCursor;
+import com.lookinsure.quotesaggregator.dto.QuoteCursorPage;
+import com.lookinsure.quotesaggregator.dto.QuoteCursorRequest;
 import com.lookinsure.quotesaggregator.dto.QuoteRequest;
 import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.dto.QuoteStats;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.exception.InvalidQuoteBatchException;
+import com.lookinsure.quotesaggregator.exception.ResourceNotFoundException;
+import com.lookinsure.quotesaggregator.idempotency.IdempotentWrites;
+import com.lookinsure.quotesaggregator.service.EncodedQuotes;
+import com.lookinsure.quotesaggregator.service.QuoteChangeFeed;
+import com.lookinsure.quotesaggregator.service.QuoteDataVersion;
+import com.lookinsure.quotesaggregator.service.QuoteMutation;
 import com.lookinsure.quotesaggregator.service.QuoteService;
+import com.lookinsure.quotesaggregator.service.QuoteWriteBehindQueue;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/quotes")
 @RequiredArgsConstructor
 public class QuoteController {
 
+    private static final int STREAM_FLUSH_INTERVAL = 1000;
+
     private final QuoteService quoteService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ObjectProvider<QuoteWriteBehindQueue> writeBehindQueue;
+    private final QuoteChangeFeed changeFeed;
+    private final IdempotentWrites idempotentWrites;
 
     @PostMapping
-    public ResponseEntity<QuoteResponse> createQuote(@Valid @RequestBody QuoteRequest request) {
-        QuoteResponse response = quoteService.createQuote(request);
+    public ResponseEntity<?> createQuote(
+            @RequestHeader(value = IdempotentWrites.HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody QuoteRequest request) {
+        return idempotentWrites.execute(idempotencyKey, "POST /quotes", request, () -> {
+            QuoteWriteBehindQueue queue = writeBehindQueue.getIfAvailable();
+            if (queue != null) {
+                return accepted(queue.submit(QuoteMutation.create(request)));
+            }
+            QuoteResponse response = quoteService.createQuote(request);
+            return new ResponseEntity<>(response, HttpStatus.CREATED);
+        });
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<QuoteResponse>> createQuotes(@Valid @RequestBody QuoteBatchRequest request) {
+        List<QuoteResponse> response = quoteService.createQuotes(request.quotes());
         return new ResponseEntity<>(response, HttpStatus.CREATED);
     }
 
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<QuoteBatchSummary> uploadQuotes(InputStream body) throws IOException {
+        long created = 0;
+        long index = 0;
+        List<QuoteRequest> chunk = new ArrayList<>(QuoteBatchRequest.MAX_SIZE);
+
+        try (MappingIterator<QuoteRequest> requests = objectMapper.readerFor(QuoteRequest.class).readValues(body)) {
+            QuoteRequest request;
+            while ((request = nextLine(requests, index, created)) != null) {
+                validate(request, index++, created);
+                chunk.add(request);
+                if (chunk.size() == QuoteBatchRequest.MAX_SIZE) {
+                    created += quoteService.createQuotes(chunk).size();
+                    chunk = new ArrayList<>(QuoteBatchRequest.MAX_SIZE);
+                }
+            }
+        }
+
+        if (index == 0) {
+            throw new InvalidQuoteBatchException(Map.of("quotes", "Batch must contain at least one quote"), 0);
+        }
+        if (!chunk.isEmpty()) {
+            created += quoteService.createQuotes(chunk).size();
+        }
+        return new ResponseEntity<>(new QuoteBatchSummary(created), HttpStatus.CREATED);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<QuoteResponse> getQuote(@PathVariable Long id) {
         return ResponseEntity.ok(quoteService.getQuoteById(id));
@@ -38,21 +129,191 @@ public class QuoteController {
         return ResponseEntity.ok(quoteService.getAllQuotes(pageable));
     }
 
+    @CachedRead
+    @GetMapping("/stats")
+    public ResponseEntity<List<QuoteStats>> getQuoteStats(
+            @RequestParam(required = false) String providerName,
+            @RequestParam(required = false) CoverageType coverageType) {
+        return ResponseEntity.ok(quoteService.getQuoteStats(providerName, coverageType));
+    }
+
+    @GetMapping("/seek")
+    public ResponseEntity<QuoteCursorPage> getQuotesAfter(@Valid QuoteCursorRequest request) {
+        QuoteCursor cursor = request.cursor() == null ? null : QuoteCursor.decode(request.cursor());
+        return ResponseEntity.ok(quoteService.getQuotesAfter(cursor, request.effectiveSize()));
+    }
+
     @PutMapping("/{id}")
-    public ResponseEntity<QuoteResponse> updateQuote(
+    public ResponseEntity<?> updateQuote(
             @PathVariable Long id,
+            @RequestHeader(value = IdempotentWrites.HEADER, required = false) String idempotencyKey,
             @Valid @RequestBody QuoteRequest request) {
-        return ResponseEntity.ok(quoteService.updateQuote(id, request));
+        return idempotentWrites.execute(idempotencyKey, "PUT /quotes/" + id, request, () -> {
+            QuoteWriteBehindQueue queue = writeBehindQueue.getIfAvailable();
+            if (queue != null) {
+                return accepted(queue.submit(QuoteMutation.update(id, request)));
+            }
+            return ResponseEntity.ok(quoteService.updateQuote(id, request));
+        });
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteQuote(@PathVariable Long id) {
+    public ResponseEntity<?> deleteQuote(@PathVariable Long id) {
+        QuoteWriteBehindQueue queue = writeBehindQueue.getIfAvailable();
+        if (queue != null) {
+            return accepted(queue.submit(QuoteMutation.delete(id)));
+        }
         quoteService.deleteQuote(id);
         return ResponseEntity.noContent().build();
     }
 
+    @CachedRead
+    @GetMapping("/pending/{id}")
+    public ResponseEntity<PendingWrite> getPendingWrite(@PathVariable String id) {
+        QuoteWriteBehindQueue queue = writeBehindQueue.getIfAvailable();
+        Optional<PendingWrite> pending = queue == null ? Optional.empty() : queue.status(id);
+        return ResponseEntity.ok(pending
+                .orElseThrow(() -> new ResourceNotFoundException("Pending write not found with ID: " + id)));
+    }
+
+    @CachedRead
     @GetMapping("/aggregate")
-    public ResponseEntity<List<QuoteResponse>> getAggregatedQuotes() {
-        return ResponseEntity.ok(quoteService.getAggregatedQuotes());
+    public ResponseEntity<byte[]> getAggregatedQuotes(@Valid AggregationFilter filter, WebRequest request) {
+        // without stale entries the current version is the one served, so a poll that is up to date
+        // is answered before the cache is read, even when the entry was just invalidated
+        boolean gzip = acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        Optional<QuoteDataVersion.Snapshot> current = quoteService.getAggregatedQuotesVersion();
+        if (current.isPresent() && notModified(request, current.get(), gzip)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+
+        // served from pre-encoded bytes, so a cache hit never goes through Jackson or the compressor
+        EncodedQuotes quotes = quoteService.getEncodedAggregatedQuotes(filter);
+        if (current.isPresent() && quotes.version().version() < current.get().version()) {
+            // loaded before the last change and cached after its invalidation had already run
+            quotes = quoteService.reloadEncodedAggregatedQuotes(filter);
+        }
+        // validated against the entry's own version, which lags the current one while it is revalidated
+        QuoteDataVersion.Snapshot version = quotes.version();
+        if (current.isEmpty() && notModified(request, version, gzip)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag(version, gzip))
+                .lastModified(version.lastModified())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(gzip ? quotes.gzip() : quotes.json());
+    }
+
+    @GetMapping("/aggregate/live")
+    public ResponseEntity<LiveAggregationResponse> getLiveAggregatedQuotes(@Valid AggregationFilter filter) {
+        return ResponseEntity.ok(quoteService.getLiveAggregatedQuotes(filter));
+    }
+
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(required = false) String lastEventId,
+            @RequestParam(required = false) Set<CoverageType> coverageType) {
+        // browsers send the header on reconnect; the parameter lets a new page resume a stored position
+        return changeFeed.stream(lastEventIdHeader != null ? lastEventIdHeader : lastEventId, coverageType);
+    }
+
+    @GetMapping(value = "/aggregate/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAggregatedQuotes() {
+        ObjectWriter writer = objectMapper.writerFor(QuoteResponse.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        StreamingResponseBody body = out -> {
+            AtomicLong written = new AtomicLong();
+            quoteService.streamAggregatedQuotes(quote -> {
+                writeLine(writer, out, quote);
+                if (written.getAndIncrement() % STREAM_FLUSH_INTERVAL == 0) {
+                    flush(out);
+                }
+            });
+            out.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    // a line that is not JSON, or not a quote, stops the upload like a line that fails validation
+    private static QuoteRequest nextLine(MappingIterator<QuoteRequest> requests, long index, long created)
+            throws IOException {
+        try {
+            return requests.hasNextValue() ? requests.nextValue() : null;
+        } catch (JsonProcessingException e) {
+            throw new InvalidQuoteBatchException(
+                    Map.of("quotes[" + index + "]", "Malformed quote: " + e.getOriginalMessage()), created);
+        }
+    }
+
+    private void validate(QuoteRequest request, long index, long created) {
+        Set<ConstraintViolation<QuoteRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            Map<String, String> errors = violations.stream().collect(Collectors.toMap(
+                    violation -> "quotes[" + index + "]." + violation.getPropertyPath(),
+                    ConstraintViolation::getMessage,
+                    (first, second) -> first));
+            throw new InvalidQuoteBatchException(errors, created);
+        }
+    }
+
+    private static boolean notModified(WebRequest request, QuoteDataVersion.Snapshot version, boolean gzip) {
+        return request.checkNotModified(etag(version, gzip), version.lastModified().toEpochMilli());
+    }
+
+    // a strong validator names one representation, so the gzip bytes get their own tag
+    private static String etag(QuoteDataVersion.Snapshot version, boolean gzip) {
+        String etag = version.etag();
+        return gzip ? etag.substring(0, etag.length() - 1) + "-gzip\"" : etag;
+    }
+
+    private static ResponseEntity<PendingWrite> accepted(PendingWrite pending) {
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentContextPath()
+                        .path("/quotes/pending/{id}")
+                        .buildAndExpand(pending.id())
+                        .toUri())
+                .body(pending);
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (name.equalsIgnoreCase("gzip") || name.equals("*")) {
+                return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static void writeLine(ObjectWriter writer, OutputStream out, QuoteResponse quote) {
+        try {
+            writer.writeValue(out, quote);
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void flush(OutputStream out) {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
@@ -0,0 +1,31 @@
+package com.lookinsure.quotesaggregator.dto;
+
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Positive;
+
+import java.math.BigDecimal;
+
+public record AggregationFilter(
+        CoverageType coverageType,
+
+        @DecimalMin(value = "0.00", message = "Minimum price cannot be negative")
+        BigDecimal minPrice,
+
+        @DecimalMin(value = "0.00", message = "Maximum price cannot be negative")
+        BigDecimal maxPrice,
+
+        @Positive(message = "Limit must be greater than 0")
+        Integer limit
+) {
+
+    public static AggregationFilter unfiltered() {
+        return new AggregationFilter(null, null, null, null);
+    }
+
+    @AssertTrue(message = "Minimum price cannot be greater than maximum price")
+    public boolean isPriceRangeValid() {
+        return minPrice == null || maxPrice == null || minPrice.compareTo(maxPrice) <= 0;
+    }
+}
@@ -0,0 +1,11 @@
+package com.lookinsure.quotesaggregator.dto;
+
+import java.util.List;
+
+public record LiveAggregationResponse(
+        List<QuoteResponse> quotes,
+        boolean partial,
+        List<String> respondedProviders,
+        List<String> timedOutProviders,
+        List<String> failedProviders
+) {}
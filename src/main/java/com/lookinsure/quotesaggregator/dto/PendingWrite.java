@@ -0,0 +1,27 @@
+package com.lookinsure.quotesaggregator.dto;
+
+public record PendingWrite(
+        String id,
+        Status status,
+        Long quoteId,
+        String error
+) {
+
+    public enum Status {
+        PENDING,
+        COMMITTED,
+        FAILED
+    }
+
+    public static PendingWrite pending(String id) {
+        return new PendingWrite(id, Status.PENDING, null, null);
+    }
+
+    public static PendingWrite committed(String id, Long quoteId) {
+        return new PendingWrite(id, Status.COMMITTED, quoteId, null);
+    }
+
+    public static PendingWrite failed(String id, String error) {
+        return new PendingWrite(id, Status.FAILED, null, error);
+    }
+}
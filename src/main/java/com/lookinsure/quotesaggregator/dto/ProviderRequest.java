@@ -0,0 +1,10 @@
+package com.lookinsure.quotesaggregator.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+
+public record ProviderRequest(
+        @NotBlank(message = "Provider name is required")
+        @Size(max = 255, message = "Provider name must be at most 255 characters")
+        String name
+) {}
@@ -0,0 +1,6 @@
+package com.lookinsure.quotesaggregator.dto;
+
+public record ProviderResponse(
+        Long id,
+        String name
+) {}
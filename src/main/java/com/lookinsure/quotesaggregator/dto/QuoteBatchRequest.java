@@ -0,0 +1,17 @@
+package com.lookinsure.quotesaggregator.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record QuoteBatchRequest(
+        @NotEmpty(message = "Batch must contain at least one quote")
+        @Size(max = QuoteBatchRequest.MAX_SIZE, message = "Batch cannot contain more than {max} quotes")
+        List<@NotNull @Valid QuoteRequest> quotes
+) {
+
+    public static final int MAX_SIZE = 1000;
+}
@@ -0,0 +1,5 @@
+package com.lookinsure.quotesaggregator.dto;
+
+public record QuoteBatchSummary(
+        long created
+) {}
@@ -0,0 +1,40 @@
+package com.lookinsure.quotesaggregator.dto;
+
+import com.lookinsure.quotesaggregator.exception.InvalidCursorException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last quote on a keyset page, in {@code (price, id)} order. Clients only see
+ * the opaque {@link #encode() encoded} form.
+ */
+public record QuoteCursor(
+        BigDecimal price,
+        long id
+) {
+
+    private static final char SEPARATOR = ':';
+
+    public static QuoteCursor of(QuoteResponse quote) {
+        return new QuoteCursor(quote.price(), quote.id());
+    }
+
+    public static QuoteCursor decode(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(SEPARATOR);
+            return new QuoteCursor(
+                    new BigDecimal(decoded.substring(0, separator)),
+                    Long.parseLong(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException("Invalid cursor: " + token);
+        }
+    }
+
+    public String encode() {
+        String raw = price.toPlainString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,9 @@
+package com.lookinsure.quotesaggregator.dto;
+
+import java.util.List;
+
+public record QuoteCursorPage(
+        List<QuoteResponse> content,
+        int size,
+        String nextCursor
+) {}
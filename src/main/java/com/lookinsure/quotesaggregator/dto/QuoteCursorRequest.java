@@ -0,0 +1,20 @@
+package com.lookinsure.quotesaggregator.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Positive;
+
+public record QuoteCursorRequest(
+        String cursor,
+
+        @Positive(message = "Size must be greater than 0")
+        @Max(value = QuoteCursorRequest.MAX_SIZE, message = "Size cannot be greater than {value}")
+        Integer size
+) {
+
+    public static final int DEFAULT_SIZE = 20;
+    public static final int MAX_SIZE = 1000;
+
+    public int effectiveSize() {
+        return size == null ? DEFAULT_SIZE : size;
+    }
+}
@@ -0,0 +1,14 @@
+package com.lookinsure.quotesaggregator.dto;
+
+import com.lookinsure.quotesaggregator.event.QuoteChangedEvent;
+
+/**
+ * One committed quote change as sent on the change feed; {@code quote} is {@code null} for
+ * deletions.
+ */
+public record QuoteFeedEvent(
+        long sequence,
+        QuoteChangedEvent.ChangeType type,
+        Long quoteId,
+        QuoteResponse quote
+) {}
@@ -0,0 +1,19 @@
+package com.lookinsure.quotesaggregator.dto;
+
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+
+import java.math.BigDecimal;
+
+/**
+ * Price statistics of one provider and coverage type. A {@code null} provider name or coverage
+ * type means the figures cover all of them.
+ */
+public record QuoteStats(
+        String providerName,
+        CoverageType coverageType,
+        long count,
+        BigDecimal minPrice,
+        BigDecimal maxPrice,
+        BigDecimal averagePrice,
+        BigDecimal medianPrice
+) {}
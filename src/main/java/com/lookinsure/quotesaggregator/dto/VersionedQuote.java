@@ -0,0 +1,26 @@
+package com.lookinsure.quotesaggregator.dto;
+
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+
+import java.math.BigDecimal;
+
+/**
+ * A quote together with the row version it was read at, for the in-memory views that must not let
+ * an older change overwrite a newer one.
+ */
+public record VersionedQuote(
+        Long id,
+        CoverageType coverageType,
+        BigDecimal price,
+        String providerName,
+        long version
+) {
+
+    public VersionedQuote(QuoteResponse quote, long version) {
+        this(quote.id(), quote.coverageType(), quote.price(), quote.providerName(), version);
+    }
+
+    public QuoteResponse response() {
+        return new QuoteResponse(id, coverageType, price, providerName);
+    }
+}
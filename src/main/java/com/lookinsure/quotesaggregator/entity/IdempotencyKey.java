@@ -0,0 +1,43 @@
+package com.lookinsure.quotesaggregator.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * An Idempotency-Key claimed through the database store. {@code status} stays null until the
+ * request holding the key has succeeded; {@code createdAt} is when the key was last claimed, and
+ * {@code claimToken} identifies the caller that claimed it.
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = @Index(name = "idx_idempotency_keys_created_at", columnList = "created_at"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyKey {
+
+    public static final int MAX_LENGTH = 255;
+
+    @Id
+    @Column(name = "idempotency_key", length = MAX_LENGTH)
+    private String key;
+
+    @Column(nullable = false)
+    private String fingerprint;
+
+    @Column(name = "claim_token", nullable = false, length = 36)
+    private String claimToken;
+
+    private Integer status;
+
+    @Column(length = 2048)
+    private String location;
+
+    @Lob
+    private byte[] body;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
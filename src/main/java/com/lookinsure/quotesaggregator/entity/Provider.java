@@ -2,11 +2,17 @@ package com.lookinsure.quotesaggregator.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Immutable;
 
+/**
+ * Read-only once created: there are no setters, Hibernate skips dirty checking, and quote writes
+ * reference providers through {@link com.lookinsure.quotesaggregator.service.ProviderRegistry}
+ * instead of loading them.
+ */
 @Entity
+@Immutable
 @Table(name = "providers")
 @Getter
-@Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
@@ -6,7 +6,10 @@ import lombok.*;
 import java.math.BigDecimal;
 
 @Entity
-@Table(name = "quotes")
+@Table(name = "quotes", indexes = {
+        @Index(name = "idx_quotes_price_id", columnList = "price, id"),
+        @Index(name = "idx_quotes_coverage_type_price_id", columnList = "coverage_type, price, id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -14,18 +17,27 @@ import java.math.BigDecimal;
 @Builder
 public class Quote {
 
+    /** Prices are stored with two decimal places (minor units). */
+    public static final int PRICE_SCALE = 2;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "quotes_seq")
+    @SequenceGenerator(name = "quotes_seq", sequenceName = "quotes_seq", allocationSize = 50)
     private Long id;
 
     @Enumerated(EnumType.STRING)
     @Column(name = "coverage_type", nullable = false)
     private CoverageType coverageType;
 
-    @Column(nullable = false)
+    @Column(nullable = false, scale = PRICE_SCALE)
     private BigDecimal price;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "provider_id", nullable = false)
     private Provider provider;
+
+    /** Row version, incremented by every committed update; orders changes to the same quote. */
+    @Version
+    @Column(nullable = false)
+    private Long version;
 }
\ No newline at end of file
@@ -0,0 +1,5 @@
+package com.lookinsure.quotesaggregator.event;
+
+public record ProviderChangedEvent(
+        Long providerId
+) {}
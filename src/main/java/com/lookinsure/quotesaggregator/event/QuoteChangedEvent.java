@@ -0,0 +1,49 @@
+package com.lookinsure.quotesaggregator.event;
+
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+
+import java.util.List;
+
+public record QuoteChangedEvent(
+        List<QuoteChange> changes
+) {
+
+    /** Version of a quote row when it is inserted. */
+    public static final long INITIAL_VERSION = 0;
+
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    /**
+     * One change to a quote. {@code version} is the row version the change produced; a deletion
+     * carries the deleted row's version plus one, so it outranks every version the quote had. A
+     * change whose version is not newer than the one already applied for the quote is stale.
+     */
+    public record QuoteChange(
+            ChangeType type,
+            Long quoteId,
+            long version,
+            QuoteResponse quote
+    ) {}
+
+    public static QuoteChangedEvent created(QuoteResponse quote) {
+        return created(List.of(quote));
+    }
+
+    public static QuoteChangedEvent created(List<QuoteResponse> quotes) {
+        return new QuoteChangedEvent(quotes.stream()
+                .map(quote -> new QuoteChange(ChangeType.CREATED, quote.id(), INITIAL_VERSION, quote))
+                .toList());
+    }
+
+    public static QuoteChangedEvent updated(QuoteResponse quote, long version) {
+        return new QuoteChangedEvent(List.of(new QuoteChange(ChangeType.UPDATED, quote.id(), version, quote)));
+    }
+
+    public static QuoteChangedEvent deleted(Long quoteId, long version) {
+        return new QuoteChangedEvent(List.of(new QuoteChange(ChangeType.DELETED, quoteId, version, null)));
+    }
+}
@@ -0,0 +1,8 @@
+package com.lookinsure.quotesaggregator.exception;
+
+public class DuplicateProviderException extends RuntimeException {
+
+    public DuplicateProviderException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.lookinsure.quotesaggregator.exception;
+
+public class IdempotencyKeyInUseException extends RuntimeException {
+
+    public IdempotencyKeyInUseException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.lookinsure.quotesaggregator.exception;
+
+public class IdempotencyKeyMismatchException extends RuntimeException {
+
+    public IdempotencyKeyMismatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.lookinsure.quotesaggregator.exception;
+
+public class InvalidIdempotencyKeyException extends RuntimeException {
+
+    public InvalidIdempotencyKeyException(String message) {
+        super(message);
+    }
+}
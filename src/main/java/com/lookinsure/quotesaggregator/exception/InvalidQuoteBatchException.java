@@ -0,0 +1,22 @@
+package com.lookinsure.quotesaggregator.exception;
+
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * Raised when a line of a streamed quote upload fails validation. Chunks before the failing
+ * line have already been committed; {@code created} tells the client where to resume.
+ */
+@Getter
+public class InvalidQuoteBatchException extends RuntimeException {
+
+    private final Map<String, String> errors;
+    private final long created;
+
+    public InvalidQuoteBatchException(Map<String, String> errors, long created) {
+        super("Invalid quote in batch upload");
+        this.errors = errors;
+        this.created = created;
+    }
+}
@@ -0,0 +1,8 @@
+package com.lookinsure.quotesaggregator.exception;
+
+public class QuoteSourceException extends RuntimeException {
+
+    public QuoteSourceException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,97 @@
+package com.lookinsure.quotesaggregator.idempotency;
+
+import com.lookinsure.quotesaggregator.config.IdempotencyProperties;
+import com.lookinsure.quotesaggregator.entity.IdempotencyKey;
+import com.lookinsure.quotesaggregator.repository.IdempotencyKeyRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Keeps keys in the {@code idempotency_keys} table, so that every node sharing the database sees
+ * the same claims. A key is claimed by inserting its row; the primary key makes concurrent claims
+ * fail. A row still in progress after {@code in-progress-timeout} is taken over by a conditional
+ * update, so only one caller wins it. Each claim writes its caller's token, and completing or
+ * releasing a row requires that token, so a caller whose claim was taken over cannot finish or
+ * delete the new holder's. Rows older than the retention are ignored, and purged every
+ * {@code purge-interval}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "quotes.idempotency.store", havingValue = "database")
+public class DatabaseIdempotencyStore implements IdempotencyStore {
+
+    // an expired row is deleted (or a stale one taken over) and the claim retried; losing that race
+    // again means another claim won
+    private static final int CLAIM_ATTEMPTS = 2;
+
+    private final IdempotencyKeyRepository repository;
+    private final IdempotencyProperties properties;
+
+    @Override
+    public Optional<IdempotencyRecord> claim(String key, String fingerprint, String token) {
+        for (int attempt = 1; ; attempt++) {
+            Instant now = Instant.now();
+            try {
+                repository.insertClaim(key, fingerprint, token, now);
+                return Optional.empty();
+            } catch (DataIntegrityViolationException e) {
+                Instant cutoff = now.minus(properties.getRetention());
+                Instant staleBefore = now.minus(properties.getInProgressTimeout());
+                Optional<IdempotencyKey> existing = repository.findClaim(key)
+                        .filter(claim -> !claim.getCreatedAt().isBefore(cutoff));
+                boolean stale = existing.filter(claim -> claim.getStatus() == null
+                        && claim.getCreatedAt().isBefore(staleBefore)).isPresent();
+                if ((existing.isPresent() && !stale) || attempt == CLAIM_ATTEMPTS) {
+                    return Optional.of(existing.map(DatabaseIdempotencyStore::toRecord)
+                            .orElseGet(() -> IdempotencyRecord.claimed(fingerprint)));
+                }
+                if (stale) {
+                    if (repository.takeOver(key, fingerprint, token, now, staleBefore) == 1) {
+                        log.warn("Took over Idempotency-Key {} left in progress since {}", key,
+                                existing.get().getCreatedAt());
+                        return Optional.empty();
+                    }
+                } else {
+                    repository.deleteExpired(key, cutoff);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void complete(String key, String token, IdempotencyRecord record) {
+        IdempotencyRecord.StoredResponse response = record.response();
+        if (repository.complete(key, token, response.status(), response.location(), response.body()) == 0) {
+            log.warn("Idempotency-Key {} was taken over before its response was recorded", key);
+        }
+    }
+
+    @Override
+    public void release(String key, String token) {
+        repository.release(key, token);
+    }
+
+    @Scheduled(fixedDelayString = "${quotes.idempotency.purge-interval:10m}")
+    public void purgeExpired() {
+        int purged = repository.deleteAllExpired(Instant.now().minus(properties.getRetention()));
+        if (purged > 0) {
+            log.debug("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    private static IdempotencyRecord toRecord(IdempotencyKey claim) {
+        if (claim.getStatus() == null) {
+            return IdempotencyRecord.claimed(claim.getFingerprint());
+        }
+        return new IdempotencyRecord(claim.getFingerprint(),
+                new IdempotencyRecord.StoredResponse(claim.getStatus(), claim.getLocation(), claim.getBody()));
+    }
+}
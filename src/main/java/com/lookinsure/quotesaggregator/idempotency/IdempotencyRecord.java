@@ -0,0 +1,28 @@
+package com.lookinsure.quotesaggregator.idempotency;
+
+/**
+ * What an Idempotency-Key holds: the fingerprint of the request that first used it and, once that
+ * request has succeeded, its response. A record without a response is still being processed.
+ */
+public record IdempotencyRecord(
+        String fingerprint,
+        StoredResponse response
+) {
+
+    public static IdempotencyRecord claimed(String fingerprint) {
+        return new IdempotencyRecord(fingerprint, null);
+    }
+
+    public boolean inProgress() {
+        return response == null;
+    }
+
+    /**
+     * A response as written to the client: status, {@code Location} header (if any) and JSON body.
+     */
+    public record StoredResponse(
+            int status,
+            String location,
+            byte[] body
+    ) {}
+}
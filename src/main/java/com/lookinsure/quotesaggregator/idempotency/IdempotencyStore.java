@@ -0,0 +1,29 @@
+package com.lookinsure.quotesaggregator.idempotency;
+
+import java.util.Optional;
+
+/**
+ * Keeps Idempotency-Keys and the responses of the requests that used them, for
+ * {@code quotes.idempotency.retention}.
+ */
+public interface IdempotencyStore {
+
+    /**
+     * Claims {@code key} for a request with the given fingerprint, under a {@code token} unique to
+     * the caller. Returns empty if the caller now holds the key, or what the key already holds
+     * otherwise. A key is claimed by one caller at a time, across every node sharing the store.
+     */
+    Optional<IdempotencyRecord> claim(String key, String fingerprint, String token);
+
+    /**
+     * Records the response of the request holding {@code key}, to be replayed to its retries. Does
+     * nothing once the claim made with {@code token} has been taken over.
+     */
+    void complete(String key, String token, IdempotencyRecord record);
+
+    /**
+     * Gives up a claimed key without a response, so a retry is processed as a new request. Does
+     * nothing once the claim made with {@code token} has been taken over.
+     */
+    void release(String key, String token);
+}
@@ -0,0 +1,143 @@
+package com.lookinsure.quotesaggregator.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lookinsure.quotesaggregator.entity.IdempotencyKey;
+import com.lookinsure.quotesaggregator.exception.IdempotencyKeyInUseException;
+import com.lookinsure.quotesaggregator.exception.IdempotencyKeyMismatchException;
+import com.lookinsure.quotesaggregator.exception.InvalidIdempotencyKeyException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Runs a write at most once per Idempotency-Key. The first request with a key is processed and its
+ * successful response kept; a retry with the same key and body gets that response back, marked
+ * {@code Idempotent-Replayed: true}, without touching the quotes or the caches.
+ * <p>
+ * A retry that arrives while the first request is still running is rejected with 409, and a key
+ * reused for a different request with 422. Failed requests give their key up, so they can be
+ * retried. A successful write whose response cannot be recorded is still answered, and gives its
+ * key up as well: a retry then runs the write again rather than waiting for a response that will
+ * never be recorded.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdempotentWrites {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * @param key       the request's Idempotency-Key, or null to run {@code write} unconditionally
+     * @param operation what the request does, e.g. {@code PUT /quotes/1}; part of the fingerprint
+     * @param request   the request body; part of the fingerprint
+     */
+    public ResponseEntity<?> execute(String key, String operation, Object request, Supplier<ResponseEntity<?>> write) {
+        if (key == null) {
+            return write.get();
+        }
+        if (key.isBlank() || key.length() > IdempotencyKey.MAX_LENGTH) {
+            throw new InvalidIdempotencyKeyException(
+                    HEADER + " must be between 1 and " + IdempotencyKey.MAX_LENGTH + " characters");
+        }
+
+        String fingerprint = fingerprint(operation, request);
+        String token = UUID.randomUUID().toString();
+        Optional<IdempotencyRecord> existing = store.claim(key, fingerprint, token);
+        if (existing.isPresent()) {
+            return replay(existing.get(), fingerprint);
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = write.get();
+        } catch (RuntimeException e) {
+            try {
+                store.release(key, token);
+            } catch (RuntimeException releaseFailure) {
+                e.addSuppressed(releaseFailure);
+            }
+            throw e;
+        }
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            store.release(key, token);
+            return response;
+        }
+        try {
+            store.complete(key, token, new IdempotencyRecord(fingerprint, store(response)));
+        } catch (RuntimeException e) {
+            // the write has happened; answer it and leave the key to be retried rather than stuck
+            log.warn("Could not record the response for {} {}; giving the key up", HEADER, key, e);
+            try {
+                store.release(key, token);
+            } catch (RuntimeException releaseFailure) {
+                log.warn("Could not give up {} {}; it is taken over after the in-progress timeout", HEADER, key,
+                        releaseFailure);
+            }
+        }
+        return response;
+    }
+
+    private ResponseEntity<?> replay(IdempotencyRecord record, String fingerprint) {
+        if (!record.fingerprint().equals(fingerprint)) {
+            throw new IdempotencyKeyMismatchException(HEADER + " was already used for a different request");
+        }
+        if (record.inProgress()) {
+            throw new IdempotencyKeyInUseException("A request with this " + HEADER + " is still being processed");
+        }
+        IdempotencyRecord.StoredResponse stored = record.response();
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(stored.status())
+                .header(REPLAYED_HEADER, "true");
+        if (stored.location() != null) {
+            response.location(URI.create(stored.location()));
+        }
+        if (stored.body() == null) {
+            return response.build();
+        }
+        return response.contentType(MediaType.APPLICATION_JSON).body(stored.body());
+    }
+
+    private IdempotencyRecord.StoredResponse store(ResponseEntity<?> response) {
+        URI location = response.getHeaders().getLocation();
+        return new IdempotencyRecord.StoredResponse(
+                response.getStatusCode().value(),
+                location == null ? null : location.toString(),
+                response.hasBody() ? toJson(response.getBody()) : null);
+    }
+
+    private String fingerprint(String operation, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(operation.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(toJson(request));
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialise " + value.getClass().getSimpleName(), e);
+        }
+    }
+}
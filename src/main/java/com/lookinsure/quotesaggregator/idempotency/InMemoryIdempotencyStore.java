@@ -0,0 +1,69 @@
+package com.lookinsure.quotesaggregator.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lookinsure.quotesaggregator.config.IdempotencyProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps keys local to this node. Completed keys live in a bounded, expiring Caffeine cache; keys
+ * still being processed are held apart until completed or released, so the bound can never evict
+ * a claim and let the same key run twice. A claim older than {@code in-progress-timeout} is taken
+ * over by the next request with its key; the caller it was taken from can then no longer complete
+ * or release it.
+ */
+@Component
+@ConditionalOnProperty(name = "quotes.idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final Cache<String, IdempotencyRecord> records;
+    private final Map<String, Claim> pending = new ConcurrentHashMap<>();
+    private final long inProgressTimeoutNanos;
+
+    public InMemoryIdempotencyStore(IdempotencyProperties properties) {
+        this.records = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getRetention())
+                .build();
+        this.inProgressTimeoutNanos = properties.getInProgressTimeout().toNanos();
+    }
+
+    @Override
+    public Optional<IdempotencyRecord> claim(String key, String fingerprint, String token) {
+        long now = System.nanoTime();
+        IdempotencyRecord[] existing = new IdempotencyRecord[1];
+        // complete() records the response before dropping the claim, so one of the two is always seen
+        pending.compute(key, (ignored, claim) -> {
+            if (claim != null && now - claim.claimedAt() < inProgressTimeoutNanos) {
+                existing[0] = IdempotencyRecord.claimed(claim.fingerprint());
+                return claim;
+            }
+            existing[0] = records.getIfPresent(key);
+            return existing[0] == null ? new Claim(fingerprint, token, now) : null;
+        });
+        return Optional.ofNullable(existing[0]);
+    }
+
+    @Override
+    public void complete(String key, String token, IdempotencyRecord record) {
+        pending.computeIfPresent(key, (ignored, claim) -> {
+            if (!claim.token().equals(token)) {
+                return claim;
+            }
+            records.put(key, record);
+            return null;
+        });
+    }
+
+    @Override
+    public void release(String key, String token) {
+        pending.computeIfPresent(key, (ignored, claim) -> claim.token().equals(token) ? null : claim);
+    }
+
+    private record Claim(String fingerprint, String token, long claimedAt) {}
+}
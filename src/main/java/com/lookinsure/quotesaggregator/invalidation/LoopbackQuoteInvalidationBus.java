@@ -0,0 +1,35 @@
+package com.lookinsure.quotesaggregator.invalidation;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process bus that delivers each message synchronously to every subscriber. Used when no
+ * {@link QuoteInvalidationBus} bean is defined (a single node), and to connect several nodes
+ * inside one JVM in tests.
+ */
+@Slf4j
+public class LoopbackQuoteInvalidationBus implements QuoteInvalidationBus {
+
+    private final List<Consumer<QuoteInvalidation>> subscribers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(QuoteInvalidation invalidation) {
+        for (Consumer<QuoteInvalidation> subscriber : subscribers) {
+            try {
+                subscriber.accept(invalidation);
+            } catch (RuntimeException e) {
+                log.warn("Quote invalidation subscriber failed for {}#{}",
+                        invalidation.originNodeId(), invalidation.sequence(), e);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<QuoteInvalidation> subscriber) {
+        subscribers.add(subscriber);
+    }
+}
@@ -0,0 +1,15 @@
+package com.lookinsure.quotesaggregator.invalidation;
+
+import com.lookinsure.quotesaggregator.event.QuoteChangedEvent;
+
+import java.util.List;
+
+/**
+ * Committed quote changes broadcast by one node. {@code sequence} starts at 1 and increases by one
+ * per message from the same {@code originNodeId}, so receivers can detect lost or repeated messages.
+ */
+public record QuoteInvalidation(
+        String originNodeId,
+        long sequence,
+        List<QuoteChangedEvent.QuoteChange> changes
+) {}
@@ -0,0 +1,16 @@
+package com.lookinsure.quotesaggregator.invalidation;
+
+import java.util.function.Consumer;
+
+/**
+ * Transport for {@link QuoteInvalidation}s between aggregator nodes, e.g. a message broker topic.
+ * Implementations must deliver messages from one publisher in publish order; they may lose or
+ * repeat messages, which receivers detect from the sequence numbers. Every subscriber, including
+ * the publishing node, receives every message.
+ */
+public interface QuoteInvalidationBus {
+
+    void publish(QuoteInvalidation invalidation);
+
+    void subscribe(Consumer<QuoteInvalidation> subscriber);
+}
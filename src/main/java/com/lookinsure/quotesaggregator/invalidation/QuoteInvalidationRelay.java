@@ -0,0 +1,132 @@
+package com.lookinsure.quotesaggregator.invalidation;
+
+import com.lookinsure.quotesaggregator.event.QuoteChangedEvent;
+import com.lookinsure.quotesaggregator.service.QuoteAggregationIndex;
+import com.lookinsure.quotesaggregator.service.QuoteChangeFeed;
+import com.lookinsure.quotesaggregator.service.QuoteService;
+import com.lookinsure.quotesaggregator.service.QuoteStatistics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps this node's aggregation index and caches coherent with writes committed on other nodes.
+ * <p>
+ * Local commits are broadcast on the {@link QuoteInvalidationBus} as versioned deltas. Peers apply
+ * a delta straight to their own index and statistics and evict their aggregate caches, so a write
+ * costs every other node an in-memory update instead of a database reload. A receiver only goes
+ * back to the database when it cannot trust its deltas: a gap in a node's sequence, or the first
+ * message seen from a node mid-stream. Such rebuilds are coalesced, so a burst of gaps causes at
+ * most one rebuild running and one queued on this node. Applied deltas are also appended to this
+ * node's {@link QuoteChangeFeed}, so its clients see writes made on any node.
+ * <p>
+ * Deltas from different nodes may arrive in any order, so each change carries its quote's row
+ * version and the index skips one that is not newer than what it holds; skipped changes reach
+ * neither the statistics nor the change feed.
+ * <p>
+ * Without a {@link QuoteInvalidationBus} bean the node runs alone on a
+ * {@link LoopbackQuoteInvalidationBus}.
+ */
+@Slf4j
+@Component
+public class QuoteInvalidationRelay {
+
+    private final QuoteInvalidationBus invalidationBus;
+    private final QuoteAggregationIndex aggregationIndex;
+    private final QuoteStatistics quoteStatistics;
+    private final QuoteService quoteService;
+    private final QuoteChangeFeed changeFeed;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Object publishLock = new Object();
+    private final Map<String, Long> lastSequenceByNode = new HashMap<>();
+    private final AtomicInteger rebuildRequests = new AtomicInteger();
+    private long sequence;
+
+    public QuoteInvalidationRelay(ObjectProvider<QuoteInvalidationBus> invalidationBus,
+                                  QuoteAggregationIndex aggregationIndex,
+                                  QuoteStatistics quoteStatistics,
+                                  QuoteService quoteService,
+                                  QuoteChangeFeed changeFeed) {
+        this.invalidationBus = invalidationBus.getIfAvailable(LoopbackQuoteInvalidationBus::new);
+        this.aggregationIndex = aggregationIndex;
+        this.quoteStatistics = quoteStatistics;
+        this.quoteService = quoteService;
+        this.changeFeed = changeFeed;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        invalidationBus.subscribe(this::onInvalidation);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void broadcast(QuoteChangedEvent event) {
+        // numbering and publishing together keeps this node's messages in sequence order
+        synchronized (publishLock) {
+            invalidationBus.publish(new QuoteInvalidation(nodeId, ++sequence, event.changes()));
+        }
+    }
+
+    synchronized void onInvalidation(QuoteInvalidation invalidation) {
+        if (nodeId.equals(invalidation.originNodeId())) {
+            return;
+        }
+        Long last = lastSequenceByNode.get(invalidation.originNodeId());
+        if (last != null && invalidation.sequence() <= last) {
+            return;
+        }
+        lastSequenceByNode.put(invalidation.originNodeId(), invalidation.sequence());
+
+        long expected = last == null ? 1 : last + 1;
+        if (invalidation.sequence() != expected) {
+            // changes are broadcast after they commit, so the rebuild also picks up this message's changes
+            log.warn("Missed quote invalidations from node {} (expected #{}, got #{}); rebuilding the index",
+                    invalidation.originNodeId(), expected, invalidation.sequence());
+            requestRebuild();
+            return;
+        }
+        // a delta overtaken by a newer write from another node is skipped, and not fed to clients
+        List<QuoteChangedEvent.QuoteChange> applied = aggregationIndex.apply(new QuoteChangedEvent(invalidation.changes()));
+        if (applied.isEmpty()) {
+            return;
+        }
+        quoteStatistics.apply(new QuoteChangedEvent(applied));
+        quoteService.invalidateAggregatedQuotes();
+        changeFeed.append(applied);
+    }
+
+    private void requestRebuild() {
+        if (rebuildRequests.getAndIncrement() == 0) {
+            Thread.ofVirtual().name("quote-index-resync").start(this::rebuildUntilCurrent);
+        }
+    }
+
+    private void rebuildUntilCurrent() {
+        int handled;
+        do {
+            handled = rebuildRequests.get();
+            try {
+                aggregationIndex.rebuild();
+                quoteStatistics.rebuild();
+                quoteService.invalidateAggregatedQuotes();
+                // which quotes changed is unknown, so change feed clients have to reload
+                changeFeed.reset();
+            } catch (RuntimeException e) {
+                log.error("Could not rebuild the aggregation index after missed invalidations", e);
+            }
+        } while (rebuildRequests.addAndGet(-handled) != 0);
+    }
+}
@@ -0,0 +1,20 @@
+package com.lookinsure.quotesaggregator.mapper;
+
+import com.lookinsure.quotesaggregator.dto.ProviderRequest;
+import com.lookinsure.quotesaggregator.dto.ProviderResponse;
+import com.lookinsure.quotesaggregator.entity.Provider;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+import java.util.List;
+
+@Mapper(componentModel = "spring")
+public interface ProviderMapper {
+
+    ProviderResponse toResponse(Provider provider);
+
+    List<ProviderResponse> toResponses(List<Provider> providers);
+
+    @Mapping(target = "id", ignore = true)
+    Provider toEntity(ProviderRequest request);
+}
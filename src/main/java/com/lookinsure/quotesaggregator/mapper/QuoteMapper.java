@@ -15,10 +15,12 @@ public interface QuoteMapper {
     QuoteResponse toResponse(Quote quote);
 
     @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
     @Mapping(target = "provider", source = "provider")
     Quote toEntity(QuoteRequest request, Provider provider);
 
     @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
     @Mapping(target = "provider", source = "provider")
     void updateEntity(@MappingTarget Quote existingQuote, QuoteRequest request, Provider provider);
 }
@@ -0,0 +1,62 @@
+package com.lookinsure.quotesaggregator.repository;
+
+import com.lookinsure.quotesaggregator.entity.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    // a plain insert, so a key claimed concurrently fails on the primary key instead of being merged
+    @Transactional
+    @Modifying
+    @Query(value = """
+            insert into idempotency_keys (idempotency_key, fingerprint, claim_token, created_at)
+            values (:key, :fingerprint, :token, :createdAt)
+            """, nativeQuery = true)
+    void insertClaim(String key, String fingerprint, String token, Instant createdAt);
+
+    // read-write so it runs on the primary, where a claim made a moment ago is already visible
+    @Transactional
+    @Query("select k from IdempotencyKey k where k.key = :key")
+    Optional<IdempotencyKey> findClaim(String key);
+
+    // only succeeds while the claim is still in progress and older than staleBefore, so one caller wins
+    @Transactional
+    @Modifying
+    @Query("""
+            update IdempotencyKey k set k.fingerprint = :fingerprint, k.claimToken = :token, k.createdAt = :claimedAt
+            where k.key = :key and k.status is null and k.createdAt < :staleBefore
+            """)
+    int takeOver(String key, String fingerprint, String token, Instant claimedAt, Instant staleBefore);
+
+    // complete and release only touch the row while the caller's claim has not been taken over
+    @Transactional
+    @Modifying
+    @Query("""
+            update IdempotencyKey k set k.status = :status, k.location = :location, k.body = :body
+            where k.key = :key and k.claimToken = :token
+            """)
+    int complete(String key, String token, int status, String location, byte[] body);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.key = :key and k.claimToken = :token and k.status is null")
+    int release(String key, String token);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.key = :key and k.createdAt < :cutoff")
+    int deleteExpired(String key, Instant cutoff);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.createdAt < :cutoff")
+    int deleteAllExpired(Instant cutoff);
+}
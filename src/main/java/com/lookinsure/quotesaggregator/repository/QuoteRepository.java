@@ -1,14 +1,83 @@
 package com.lookinsure.quotesaggregator.repository;
 
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.dto.VersionedQuote;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
 import com.lookinsure.quotesaggregator.entity.Quote;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface QuoteRepository extends JpaRepository<Quote, Long> {
 
-    List<Quote> findAllByOrderByPriceAsc();
+    @Query("""
+            select new com.lookinsure.quotesaggregator.dto.QuoteResponse(q.id, q.coverageType, q.price, p.name)
+            from Quote q left join q.provider p
+            order by q.price asc, q.id asc
+            """)
+    List<QuoteResponse> findAllResponsesByOrderByPriceAsc();
+
+    // leading coverage_type in ORDER BY lets H2 read idx_quotes_coverage_type_price_id in order.
+    // Read-write so it runs on the primary: an index rebuild must not miss commits a replica has not seen yet
+    @Transactional
+    @Query("""
+            select new com.lookinsure.quotesaggregator.dto.VersionedQuote(q.id, q.coverageType, q.price, p.name, q.version)
+            from Quote q left join q.provider p
+            where q.coverageType = :coverageType
+            order by q.coverageType, q.price asc, q.id asc
+            """)
+    List<VersionedQuote> findAllVersionedByCoverageType(CoverageType coverageType);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("""
+            select new com.lookinsure.quotesaggregator.dto.QuoteResponse(q.id, q.coverageType, q.price, p.name)
+            from Quote q left join q.provider p
+            order by q.price asc, q.id asc
+            """)
+    Stream<QuoteResponse> streamAllResponsesByOrderByPriceAsc();
+
+    @Query("""
+            select new com.lookinsure.quotesaggregator.dto.QuoteResponse(q.id, q.coverageType, q.price, p.name)
+            from Quote q left join q.provider p
+            order by q.price asc, q.id asc
+            """)
+    List<QuoteResponse> findFirstResponses(Limit limit);
+
+    // seek predicate on (price, id) lets H2 start the idx_quotes_price_id scan at the cursor
+    @Query("""
+            select new com.lookinsure.quotesaggregator.dto.QuoteResponse(q.id, q.coverageType, q.price, p.name)
+            from Quote q left join q.provider p
+            where q.price >= :price and (q.price > :price or q.id > :id)
+            order by q.price asc, q.id asc
+            """)
+    List<QuoteResponse> findResponsesAfter(BigDecimal price, Long id, Limit limit);
+
+    @Query(value = """
+            select new com.lookinsure.quotesaggregator.dto.QuoteResponse(q.id, q.coverageType, q.price, p.name)
+            from Quote q left join q.provider p
+            """,
+            countQuery = "select count(q) from Quote q")
+    Page<QuoteResponse> findAllResponses(Pageable pageable);
+
+    @Query("""
+            select new com.lookinsure.quotesaggregator.dto.QuoteResponse(q.id, q.coverageType, q.price, p.name)
+            from Quote q left join q.provider p
+            where q.id = :id
+            """)
+    Optional<QuoteResponse> findResponseById(Long id);
 
 }
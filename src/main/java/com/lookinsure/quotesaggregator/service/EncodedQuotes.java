@@ -0,0 +1,13 @@
+package com.lookinsure.quotesaggregator.service;
+
+/**
+ * A quote list already serialised to JSON, plus its gzip encoding, ready to be written to a
+ * response as-is. {@code version} is the data version the list was read at, which may be older
+ * than the current one while a stale entry is being revalidated.
+ */
+public record EncodedQuotes(
+        byte[] json,
+        byte[] gzip,
+        int count,
+        QuoteDataVersion.Snapshot version
+) {}
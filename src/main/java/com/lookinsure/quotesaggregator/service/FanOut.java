@@ -0,0 +1,49 @@
+package com.lookinsure.quotesaggregator.service;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs independent blocking lookups concurrently, one virtual thread per task, and joins them
+ * before returning. The first failure cancels the remaining tasks and is rethrown to the caller,
+ * mirroring {@code StructuredTaskScope.ShutdownOnFailure} (still a preview API on Java 21).
+ * <p>
+ * Tasks run outside the caller's transaction, so only use this for self-contained reads.
+ */
+final class FanOut {
+
+    private FanOut() {
+    }
+
+    static <T> List<T> invokeAll(List<? extends Callable<T>> tasks) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // completions are taken as they finish, so a failure is seen before slower tasks end
+            CompletionService<T> completions = new ExecutorCompletionService<>(executor);
+            List<Future<T>> futures = tasks.stream()
+                    .map(completions::submit)
+                    .toList();
+
+            try {
+                for (int i = 0; i < futures.size(); i++) {
+                    completions.take().get();
+                }
+            } catch (ExecutionException e) {
+                executor.shutdownNow();
+                throw e.getCause() instanceof RuntimeException runtime
+                        ? runtime
+                        : new IllegalStateException("Concurrent lookup failed", e.getCause());
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for concurrent lookups", e);
+            }
+            return futures.stream().map(Future::resultNow).toList();
+        }
+    }
+}
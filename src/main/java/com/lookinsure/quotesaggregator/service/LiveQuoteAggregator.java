@@ -0,0 +1,167 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.config.QuoteSourceProperties;
+import com.lookinsure.quotesaggregator.dto.AggregationFilter;
+import com.lookinsure.quotesaggregator.dto.LiveAggregationResponse;
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.source.QuoteSource;
+import com.lookinsure.quotesaggregator.source.QuoteSourceRegistry;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Asks every {@link QuoteSource} for quotes in parallel and merges whatever arrives within the
+ * latency budget. Each source call has its own deadline and is hedged with one extra attempt;
+ * sources that time out or fail are reported alongside a partial result instead of failing it.
+ * Attempts still running at the deadline are abandoned and their late answers discarded.
+ */
+@Slf4j
+@Service
+@Timed("quotes.service")
+@RequiredArgsConstructor
+public class LiveQuoteAggregator {
+
+    private static final int MAX_ATTEMPTS = 2;
+
+    private final QuoteSourceRegistry sourceRegistry;
+    private final QuoteSourceProperties properties;
+    private final ExecutorService quoteSourceExecutor;
+
+    public LiveAggregationResponse aggregate(AggregationFilter filter) {
+        Duration budget = properties.getBudget();
+
+        Map<QuoteSource, CompletableFuture<List<QuoteResponse>>> calls = new LinkedHashMap<>();
+        for (QuoteSource source : sourceRegistry.getSources()) {
+            calls.put(source, new HedgedCall(source, filter.coverageType()).start()
+                    .orTimeout(deadline(source, budget).toMillis(), TimeUnit.MILLISECONDS));
+        }
+
+        try {
+            CompletableFuture.allOf(calls.values().toArray(CompletableFuture[]::new))
+                    .get(budget.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // outcomes are classified per source below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<QuoteResponse> quotes = new ArrayList<>();
+        List<String> responded = new ArrayList<>();
+        List<String> timedOut = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        calls.forEach((source, call) -> {
+            if (!call.isDone()) {
+                call.cancel(false);
+                timedOut.add(source.providerName());
+            } else if (call.isCompletedExceptionally()) {
+                Throwable cause = call.exceptionNow();
+                if (cause instanceof TimeoutException) {
+                    timedOut.add(source.providerName());
+                } else {
+                    log.warn("Quote source {} failed: {}", source.providerName(), cause.getMessage());
+                    failed.add(source.providerName());
+                }
+            } else {
+                responded.add(source.providerName());
+                quotes.addAll(call.resultNow());
+            }
+        });
+
+        return new LiveAggregationResponse(
+                bestPrices(quotes, filter),
+                !timedOut.isEmpty() || !failed.isEmpty(),
+                responded, timedOut, failed);
+    }
+
+    private static Duration deadline(QuoteSource source, Duration budget) {
+        return source.timeout()
+                .filter(timeout -> timeout.compareTo(budget) < 0)
+                .orElse(budget);
+    }
+
+    private static List<QuoteResponse> bestPrices(List<QuoteResponse> quotes, AggregationFilter filter) {
+        Stream<QuoteResponse> results = quotes.stream()
+                .filter(quote -> filter.coverageType() == null || quote.coverageType() == filter.coverageType())
+                .filter(quote -> filter.minPrice() == null || quote.price().compareTo(filter.minPrice()) >= 0)
+                .filter(quote -> filter.maxPrice() == null || quote.price().compareTo(filter.maxPrice()) <= 0)
+                .sorted(Comparator.comparing(QuoteResponse::price).thenComparing(QuoteResponse::providerName));
+        if (filter.limit() != null) {
+            results = results.limit(filter.limit());
+        }
+        return results.toList();
+    }
+
+    /**
+     * Up to {@link #MAX_ATTEMPTS} concurrent attempts against one source: the hedge starts after
+     * the hedge delay, or immediately once the only running attempt fails. The first successful
+     * attempt wins; the call fails only when every attempt has failed.
+     */
+    private final class HedgedCall {
+
+        private final QuoteSource source;
+        private final CoverageType coverageType;
+        private final CompletableFuture<List<QuoteResponse>> result = new CompletableFuture<>();
+        private final AtomicInteger started = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        private HedgedCall(QuoteSource source, CoverageType coverageType) {
+            this.source = source;
+            this.coverageType = coverageType;
+        }
+
+        private CompletableFuture<List<QuoteResponse>> start() {
+            tryLaunch();
+            Duration hedgeDelay = properties.getHedgeDelay();
+            if (hedgeDelay != null) {
+                CompletableFuture.delayedExecutor(hedgeDelay.toMillis(), TimeUnit.MILLISECONDS, quoteSourceExecutor)
+                        .execute(() -> {
+                            if (!result.isDone()) {
+                                tryLaunch();
+                            }
+                        });
+            }
+            return result;
+        }
+
+        private boolean tryLaunch() {
+            for (int attempts = started.get(); attempts < MAX_ATTEMPTS; attempts = started.get()) {
+                if (started.compareAndSet(attempts, attempts + 1)) {
+                    CompletableFuture.supplyAsync(() -> source.fetchQuotes(coverageType), quoteSourceExecutor)
+                            .whenComplete(this::onAttemptComplete);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void onAttemptComplete(List<QuoteResponse> quotes, Throwable error) {
+            if (error == null) {
+                result.complete(quotes);
+                return;
+            }
+            int failures = failed.incrementAndGet();
+            if (failures == started.get() && !tryLaunch() && failed.get() == started.get()) {
+                result.completeExceptionally(error instanceof CompletionException
+                        ? error.getCause() : error);
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.config.ProviderRegistryProperties;
+import com.lookinsure.quotesaggregator.entity.Provider;
+import com.lookinsure.quotesaggregator.event.ProviderChangedEvent;
+import com.lookinsure.quotesaggregator.repository.ProviderRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory copy of the providers, so quote writes can validate a {@code providerId} and resolve
+ * its name without a database round trip.
+ * <p>
+ * Providers are held as sorted ids with a parallel array of names, replaced as a whole on every
+ * refresh. Refreshes are numbered when they start, and one that finishes after a newer one is
+ * discarded. Providers created through {@link ProviderService} refresh the registry once committed;
+ * an id it does not know, e.g. a provider created on another node, triggers one refresh before it
+ * is reported missing. Such refreshes run one at a time and at most once per
+ * {@code miss-refresh-interval}: concurrent misses wait for the refresh in flight and are answered
+ * by it, so a stream of unknown ids cannot turn into a stream of table reloads.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProviderRegistry {
+
+    private final ProviderRepository providerRepository;
+    private final ProviderRegistryProperties properties;
+
+    private final AtomicLong refreshes = new AtomicLong();
+    private final ReentrantLock missRefreshLock = new ReentrantLock();
+    private volatile Snapshot snapshot = new Snapshot(0, new long[0], new String[0]);
+    private long lastMissRefresh; // System.nanoTime() of the last refresh on a miss, guarded by missRefreshLock
+    private boolean refreshedOnMiss;
+
+    public Optional<Provider> find(Long id) {
+        long started = refreshes.get();
+        Provider provider = snapshot.find(id);
+        if (provider == null) {
+            refreshOnMiss(started);
+            provider = snapshot.find(id);
+        }
+        return Optional.ofNullable(provider);
+    }
+
+    /**
+     * Returns the known providers among {@code ids}, keyed by id; missing ids are left out.
+     */
+    public Map<Long, Provider> findAll(Collection<Long> ids) {
+        long started = refreshes.get();
+        Map<Long, Provider> providers = snapshot.findAll(ids);
+        if (providers.size() < ids.size()) {
+            refreshOnMiss(started);
+            providers = snapshot.findAll(ids);
+        }
+        return providers;
+    }
+
+    public List<Provider> getAll() {
+        Snapshot current = snapshot;
+        return IntStream.range(0, current.ids().length).mapToObj(current::provider).toList();
+    }
+
+    public long version() {
+        return snapshot.version();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProviderChanged(ProviderChangedEvent event) {
+        refresh();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void refresh() {
+        long version = refreshes.incrementAndGet();
+        List<Provider> providers = providerRepository.findAll(Sort.by("id"));
+        long[] ids = new long[providers.size()];
+        String[] names = new String[providers.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = providers.get(i).getId();
+            names[i] = providers.get(i).getName();
+        }
+        install(new Snapshot(version, ids, names));
+    }
+
+    /**
+     * Refreshes after a lookup missed, given the number of refreshes started before it looked. Skipped
+     * when a refresh that started after the miss has been installed meanwhile, or when the last
+     * refresh on a miss is more recent than {@code miss-refresh-interval}.
+     */
+    private void refreshOnMiss(long startedBeforeMiss) {
+        missRefreshLock.lock();
+        try {
+            if (snapshot.version() > startedBeforeMiss) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (refreshedOnMiss && now - lastMissRefresh < properties.getMissRefreshInterval().toNanos()) {
+                return;
+            }
+            lastMissRefresh = now;
+            refreshedOnMiss = true;
+            refresh();
+        } finally {
+            missRefreshLock.unlock();
+        }
+    }
+
+    private synchronized void install(Snapshot next) {
+        if (next.version() > snapshot.version()) {
+            snapshot = next;
+        }
+    }
+
+    private record Snapshot(
+            long version,
+            long[] ids,
+            String[] names
+    ) {
+
+        Provider find(Long id) {
+            int index = id == null ? -1 : Arrays.binarySearch(ids, id);
+            return index < 0 ? null : provider(index);
+        }
+
+        Map<Long, Provider> findAll(Collection<Long> ids) {
+            Map<Long, Provider> providers = new HashMap<>();
+            for (Long id : ids) {
+                Provider provider = find(id);
+                if (provider != null) {
+                    providers.put(id, provider);
+                }
+            }
+            return providers;
+        }
+
+        // a fresh detached instance per caller; JPA only needs its id to write the foreign key
+        Provider provider(int index) {
+            return new Provider(ids[index], names[index]);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.dto.ProviderRequest;
+import com.lookinsure.quotesaggregator.dto.ProviderResponse;
+import com.lookinsure.quotesaggregator.entity.Provider;
+import com.lookinsure.quotesaggregator.event.ProviderChangedEvent;
+import com.lookinsure.quotesaggregator.exception.DuplicateProviderException;
+import com.lookinsure.quotesaggregator.exception.ResourceNotFoundException;
+import com.lookinsure.quotesaggregator.mapper.ProviderMapper;
+import com.lookinsure.quotesaggregator.repository.ProviderRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class ProviderService {
+
+    private final ProviderRepository providerRepository;
+    private final ProviderRegistry providerRegistry;
+    private final ProviderMapper providerMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public List<ProviderResponse> getAllProviders() {
+        return providerMapper.toResponses(providerRegistry.getAll());
+    }
+
+    public ProviderResponse getProviderById(Long id) {
+        return providerRegistry.find(id)
+                .map(providerMapper::toResponse)
+                .orElseThrow(() -> new ResourceNotFoundException("Provider not found with ID: " + id));
+    }
+
+    @Transactional
+    public ProviderResponse createProvider(ProviderRequest request) {
+        if (providerRepository.findByName(request.name()).isPresent()) {
+            throw new DuplicateProviderException("Provider already exists with name: " + request.name());
+        }
+        Provider provider = providerRepository.save(providerMapper.toEntity(request));
+        eventPublisher.publishEvent(new ProviderChangedEvent(provider.getId()));
+        return providerMapper.toResponse(provider);
+    }
+}
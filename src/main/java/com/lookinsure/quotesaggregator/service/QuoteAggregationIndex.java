@@ -0,0 +1,558 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.dto.AggregationFilter;
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.dto.VersionedQuote;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.entity.Quote;
+import com.lookinsure.quotesaggregator.event.QuoteChangedEvent;
+import com.lookinsure.quotesaggregator.repository.QuoteRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * In-memory view of all quotes ordered by (price, id), overall and per {@link CoverageType}.
+ * <p>
+ * Populated from the database or a {@link QuoteIndexSnapshot} on startup (see
+ * {@link QuoteIndexLoader}), or on demand via {@link #rebuild()}, and then kept up to date by
+ * applying {@link QuoteChangedEvent}s after each write commits, so aggregation reads never rescan
+ * the quotes table.
+ * <p>
+ * Each coverage type is one {@link Segment}: parallel primitive arrays of prices in minor units,
+ * ids, row versions and provider name codes, sorted by (price, id). Range lookups are binary searches, the
+ * overall order is a merge of the segments, and {@link QuoteResponse}s (with their
+ * {@link BigDecimal} prices) are only created for the quotes a query returns. Reads are lock-free
+ * against an immutable {@link State}; a change publishes a new state in which only the segments it
+ * touches are replaced. Each segment also keeps its ids in id order with their prices, so a changed
+ * quote is found by two binary searches, and the new segment is spliced together from block copies
+ * of the unchanged runs. A write therefore costs O(k log n) to locate k changes plus one
+ * {@code System.arraycopy} pass over each touched segment, in exchange for compact,
+ * allocation-free scans.
+ * <p>
+ * Every published state carries the {@link QuoteDataVersion} bumped for it under the write lock,
+ * so a reader gets quotes and version from the same state and a version never labels content it
+ * does not describe.
+ * <p>
+ * Changes can arrive out of order (a peer's delta overtaken by a later one from another node), so
+ * a change only applies if its row version is newer than the one held for the quote. Deleted
+ * quotes keep their deletion version as a {@link Tombstones tombstone} for a bounded window, so a
+ * late update cannot bring them back. A rebuild or restore drops the tombstones: its state is
+ * taken from the database or snapshot as a whole.
+ */
+@Slf4j
+@Component
+public class QuoteAggregationIndex {
+
+    private static final CoverageType[] COVERAGE_TYPES = CoverageType.values();
+
+    private final QuoteRepository quoteRepository;
+    private final QuoteDataVersion dataVersion;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private ProviderNames providerNames = new ProviderNames();
+    private final Tombstones tombstones = new Tombstones();
+    private volatile State state;
+
+    public QuoteAggregationIndex(QuoteRepository quoteRepository, QuoteDataVersion dataVersion) {
+        this.quoteRepository = quoteRepository;
+        this.dataVersion = dataVersion;
+        this.state = State.empty(dataVersion.current());
+    }
+
+    public void rebuild() {
+        writeLock.lock();
+        try {
+            // each coverage type is an independent index range scan, so load them concurrently
+            List<List<VersionedQuote>> loaded = FanOut.invokeAll(Arrays.stream(COVERAGE_TYPES)
+                    .map(coverageType -> (Callable<List<VersionedQuote>>) () ->
+                            quoteRepository.findAllVersionedByCoverageType(coverageType))
+                    .toList());
+
+            ProviderNames rebuiltNames = new ProviderNames();
+            Segment[] segments = new Segment[COVERAGE_TYPES.length];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = Segment.of(loaded.get(i), rebuiltNames);
+            }
+            providerNames = rebuiltNames;
+            tombstones.clear();
+            state = new State(segments, rebuiltNames.snapshot(), dataVersion.bump());
+            log.info("Aggregation index rebuilt with {} quotes", size());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void restore(QuoteIndexSnapshot snapshot) {
+        Segment[] segments = new Segment[COVERAGE_TYPES.length];
+        Arrays.fill(segments, Segment.EMPTY);
+        for (QuoteIndexSnapshot.Segment segment : snapshot.segments()) {
+            segments[segment.coverageType().ordinal()] = Segment.restore(segment, snapshot.providerNames().length);
+        }
+
+        writeLock.lock();
+        try {
+            providerNames = ProviderNames.of(snapshot.providerNames());
+            tombstones.clear();
+            state = new State(segments, snapshot.providerNames().clone(), dataVersion.bump());
+            log.info("Aggregation index restored from snapshot with {} quotes", size());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    QuoteIndexSnapshot snapshot() {
+        State current = state;
+        return new QuoteIndexSnapshot(current.providerNames, Arrays.stream(COVERAGE_TYPES)
+                .map(coverageType -> {
+                    Segment segment = current.segments[coverageType.ordinal()];
+                    return new QuoteIndexSnapshot.Segment(coverageType, segment.prices, segment.ids, segment.versions,
+                            segment.providers);
+                })
+                .toList());
+    }
+
+    /**
+     * Applies the changes that are newer than what the index holds for their quotes and returns
+     * them; stale and repeated changes are skipped.
+     */
+    public List<QuoteChangedEvent.QuoteChange> apply(QuoteChangedEvent event) {
+        writeLock.lock();
+        try {
+            // newest change per id wins, the later one on equal versions
+            Map<Long, QuoteChangedEvent.QuoteChange> latest = new LinkedHashMap<>();
+            for (QuoteChangedEvent.QuoteChange change : event.changes()) {
+                latest.merge(change.quoteId(), change,
+                        (previous, next) -> next.version() >= previous.version() ? next : previous);
+            }
+            State current = state;
+            Map<Long, Location> held = new HashMap<>();
+            for (Long quoteId : latest.keySet()) {
+                for (CoverageType coverageType : COVERAGE_TYPES) {
+                    int index = current.segments[coverageType.ordinal()].indexOf(quoteId);
+                    if (index >= 0) {
+                        held.put(quoteId, new Location(coverageType, index));
+                        break;
+                    }
+                }
+            }
+            latest.values().removeIf(change -> {
+                Location location = held.get(change.quoteId());
+                long applied = Math.max(location == null ? -1 : current.version(location),
+                        tombstones.version(change.quoteId()));
+                return change.version() <= applied;
+            });
+            if (latest.isEmpty()) {
+                return List.of();
+            }
+
+            Map<CoverageType, List<Integer>> removals = new EnumMap<>(CoverageType.class);
+            Map<CoverageType, List<VersionedQuote>> inserts = new EnumMap<>(CoverageType.class);
+            for (QuoteChangedEvent.QuoteChange change : latest.values()) {
+                Location location = held.get(change.quoteId());
+                if (location != null) {
+                    removals.computeIfAbsent(location.coverageType(), type -> new ArrayList<>()).add(location.index());
+                }
+                if (change.type() == QuoteChangedEvent.ChangeType.DELETED) {
+                    tombstones.record(change.quoteId(), change.version());
+                } else {
+                    tombstones.forget(change.quoteId());
+                    inserts.computeIfAbsent(change.quote().coverageType(), type -> new ArrayList<>())
+                            .add(new VersionedQuote(change.quote(), change.version()));
+                }
+            }
+
+            Segment[] segments = current.segments.clone();
+            for (CoverageType coverageType : COVERAGE_TYPES) {
+                List<Integer> removed = removals.get(coverageType);
+                List<VersionedQuote> added = inserts.get(coverageType);
+                if (removed != null || added != null) {
+                    segments[coverageType.ordinal()] = segments[coverageType.ordinal()].splice(
+                            removed == null ? new int[0] : removed.stream().mapToInt(Integer::intValue).sorted().toArray(),
+                            Segment.of(added == null ? List.of() : added, providerNames));
+                }
+            }
+            state = new State(segments, providerNames.snapshot(), dataVersion.bump());
+            return List.copyOf(latest.values());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public List<QuoteResponse> query(AggregationFilter filter) {
+        return query(state, filter);
+    }
+
+    /**
+     * Runs the query and hands its result to {@code reader} together with the version of the
+     * state it was read from.
+     */
+    public <T> T query(AggregationFilter filter, BiFunction<List<QuoteResponse>, QuoteDataVersion.Snapshot, T> reader) {
+        State snapshot = state;
+        return reader.apply(query(snapshot, filter), snapshot.version);
+    }
+
+    private static List<QuoteResponse> query(State snapshot, AggregationFilter filter) {
+        long minPrice = filter.minPrice() == null ? Long.MIN_VALUE : toMinorUnitBound(filter.minPrice(), RoundingMode.CEILING);
+        long maxPrice = filter.maxPrice() == null ? Long.MAX_VALUE : toMinorUnitBound(filter.maxPrice(), RoundingMode.FLOOR);
+        int limit = filter.limit() == null ? Integer.MAX_VALUE : filter.limit();
+
+        CoverageType[] coverageTypes = filter.coverageType() == null
+                ? COVERAGE_TYPES
+                : new CoverageType[]{filter.coverageType()};
+        Segment[] segments = new Segment[coverageTypes.length];
+        int[] next = new int[coverageTypes.length];
+        int[] end = new int[coverageTypes.length];
+        long matching = 0;
+        for (int i = 0; i < coverageTypes.length; i++) {
+            segments[i] = snapshot.segments[coverageTypes[i].ordinal()];
+            next[i] = segments[i].lowerBound(minPrice);
+            end[i] = Math.max(next[i], segments[i].upperBound(maxPrice));
+            matching += end[i] - next[i];
+        }
+
+        // k-way merge of the per-coverage ranges, materialising only the quotes returned
+        List<QuoteResponse> results = new ArrayList<>((int) Math.min(limit, matching));
+        while (results.size() < limit) {
+            int cheapest = -1;
+            for (int i = 0; i < segments.length; i++) {
+                if (next[i] < end[i] && (cheapest < 0
+                        || segments[i].precedes(next[i], segments[cheapest], next[cheapest]))) {
+                    cheapest = i;
+                }
+            }
+            if (cheapest < 0) {
+                break;
+            }
+            results.add(snapshot.toResponse(coverageTypes[cheapest], segments[cheapest], next[cheapest]++));
+        }
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Returns every quote with its row version, in no particular order.
+     */
+    public List<VersionedQuote> versionedQuotes() {
+        State snapshot = state;
+        List<VersionedQuote> quotes = new ArrayList<>(Arrays.stream(snapshot.segments).mapToInt(Segment::size).sum());
+        for (CoverageType coverageType : COVERAGE_TYPES) {
+            Segment segment = snapshot.segments[coverageType.ordinal()];
+            for (int i = 0; i < segment.size(); i++) {
+                quotes.add(new VersionedQuote(snapshot.toResponse(coverageType, segment, i), segment.versions[i]));
+            }
+        }
+        return quotes;
+    }
+
+    public int size() {
+        return Arrays.stream(state.segments).mapToInt(Segment::size).sum();
+    }
+
+    static long toMinorUnits(BigDecimal price) {
+        return price.setScale(Quote.PRICE_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    // filter bounds beyond the representable range simply match everything on that side
+    private static long toMinorUnitBound(BigDecimal bound, RoundingMode roundingMode) {
+        BigDecimal minorUnits = bound.setScale(Quote.PRICE_SCALE, roundingMode);
+        if (minorUnits.unscaledValue().bitLength() > 63) {
+            return minorUnits.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+        return minorUnits.unscaledValue().longValue();
+    }
+
+    private record State(Segment[] segments, String[] providerNames, QuoteDataVersion.Snapshot version) {
+
+        private static State empty(QuoteDataVersion.Snapshot version) {
+            Segment[] segments = new Segment[COVERAGE_TYPES.length];
+            Arrays.fill(segments, Segment.EMPTY);
+            return new State(segments, new String[0], version);
+        }
+
+        private long version(Location location) {
+            return segments[location.coverageType().ordinal()].versions[location.index()];
+        }
+
+        private QuoteResponse toResponse(CoverageType coverageType, Segment segment, int index) {
+            return new QuoteResponse(segment.ids[index], coverageType,
+                    BigDecimal.valueOf(segment.prices[index], Quote.PRICE_SCALE),
+                    providerNames[segment.providers[index]]);
+        }
+    }
+
+    private record Location(CoverageType coverageType, int index) {}
+
+    /**
+     * Quotes of one coverage type as parallel arrays sorted by (price, id), plus their ids in id
+     * order with the matching prices, to find a quote by id. Never mutated once published.
+     */
+    private static final class Segment {
+
+        private static final Segment EMPTY =
+                new Segment(new long[0], new long[0], new long[0], new int[0], new long[0], new long[0]);
+
+        private final long[] prices;
+        private final long[] ids;
+        private final long[] versions;
+        private final int[] providers;
+        private final long[] idOrder;
+        private final long[] idOrderPrices;
+
+        private Segment(long[] prices, long[] ids, long[] versions, int[] providers,
+                        long[] idOrder, long[] idOrderPrices) {
+            this.prices = prices;
+            this.ids = ids;
+            this.versions = versions;
+            this.providers = providers;
+            this.idOrder = idOrder;
+            this.idOrderPrices = idOrderPrices;
+        }
+
+        private static Segment withIdOrder(long[] prices, long[] ids, long[] versions, int[] providers) {
+            long[] idOrder = ids.clone();
+            Arrays.sort(idOrder);
+            long[] idOrderPrices = new long[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                if (i > 0 && idOrder[i - 1] == idOrder[i]) {
+                    throw new IllegalArgumentException("Quote " + idOrder[i] + " is held twice");
+                }
+                idOrderPrices[Arrays.binarySearch(idOrder, ids[i])] = prices[i];
+            }
+            return new Segment(prices, ids, versions, providers, idOrder, idOrderPrices);
+        }
+
+        private static Segment of(List<VersionedQuote> quotes, ProviderNames providerNames) {
+            if (quotes.isEmpty()) {
+                return EMPTY;
+            }
+            long[] prices = new long[quotes.size()];
+            long[] ids = new long[quotes.size()];
+            long[] versions = new long[quotes.size()];
+            int[] providers = new int[quotes.size()];
+            boolean sorted = true;
+            for (int i = 0; i < prices.length; i++) {
+                VersionedQuote quote = quotes.get(i);
+                prices[i] = toMinorUnits(quote.price());
+                ids[i] = quote.id();
+                versions[i] = quote.version();
+                providers[i] = providerNames.code(quote.providerName());
+                sorted &= i == 0 || prices[i - 1] < prices[i] || (prices[i - 1] == prices[i] && ids[i - 1] < ids[i]);
+            }
+            if (sorted) {
+                return withIdOrder(prices, ids, versions, providers);
+            }
+            List<VersionedQuote> ordered = new ArrayList<>(quotes);
+            ordered.sort(Comparator.comparingLong((VersionedQuote quote) -> toMinorUnits(quote.price()))
+                    .thenComparingLong(VersionedQuote::id));
+            return of(ordered, providerNames);
+        }
+
+        private static Segment restore(QuoteIndexSnapshot.Segment snapshot, int providerCount) {
+            long[] prices = snapshot.prices();
+            long[] ids = snapshot.ids();
+            long[] versions = snapshot.versions();
+            int[] providers = snapshot.providers();
+            if (prices.length != ids.length || versions.length != ids.length || providers.length != ids.length) {
+                throw new IllegalArgumentException("Snapshot arrays for " + snapshot.coverageType() + " differ in length");
+            }
+            for (int i = 0; i < ids.length; i++) {
+                if (providers[i] < 0 || providers[i] >= providerCount) {
+                    throw new IllegalArgumentException("Snapshot references unknown provider code " + providers[i]);
+                }
+                if (i > 0 && !(prices[i - 1] < prices[i] || (prices[i - 1] == prices[i] && ids[i - 1] < ids[i]))) {
+                    throw new IllegalArgumentException("Snapshot quotes for " + snapshot.coverageType() + " are not sorted");
+                }
+            }
+            return ids.length == 0 ? EMPTY : withIdOrder(prices, ids, versions, providers);
+        }
+
+        private int size() {
+            return ids.length;
+        }
+
+        private boolean precedes(int index, Segment other, int otherIndex) {
+            return prices[index] < other.prices[otherIndex]
+                    || (prices[index] == other.prices[otherIndex] && ids[index] < other.ids[otherIndex]);
+        }
+
+        // first index whose price is >= price
+        private int lowerBound(long price) {
+            int low = 0;
+            int high = prices.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (prices[mid] < price) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // first index whose price is > price
+        private int upperBound(long price) {
+            int low = 0;
+            int high = prices.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (prices[mid] <= price) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // first index whose (price, id) is >= (price, id)
+        private int position(long price, long id) {
+            int low = 0;
+            int high = prices.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (prices[mid] < price || (prices[mid] == price && ids[mid] < id)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // index of the quote with this id, or -1 if this segment does not hold it
+        private int indexOf(long id) {
+            int byId = Arrays.binarySearch(idOrder, id);
+            return byId < 0 ? -1 : position(idOrderPrices[byId], id);
+        }
+
+        /**
+         * Returns a copy without the quotes at the ascending indexes {@code removed}, with the
+         * sorted {@code additions} inserted in place.
+         */
+        private Segment splice(int[] removed, Segment additions) {
+            int size = size() - removed.length + additions.size();
+            if (size == 0) {
+                return EMPTY;
+            }
+
+            long[] splicedPrices = new long[size];
+            long[] splicedIds = new long[size];
+            long[] splicedVersions = new long[size];
+            int[] splicedProviders = new int[size];
+            int[] insertAt = new int[additions.size()];
+            for (int j = 0; j < insertAt.length; j++) {
+                insertAt[j] = position(additions.prices[j], additions.ids[j]);
+            }
+            int[] slots = copyAround(new Object[]{prices, ids, versions, providers},
+                    new Object[]{splicedPrices, splicedIds, splicedVersions, splicedProviders}, size(), removed, insertAt);
+            for (int j = 0; j < slots.length; j++) {
+                splicedPrices[slots[j]] = additions.prices[j];
+                splicedIds[slots[j]] = additions.ids[j];
+                splicedVersions[slots[j]] = additions.versions[j];
+                splicedProviders[slots[j]] = additions.providers[j];
+            }
+
+            long[] splicedIdOrder = new long[size];
+            long[] splicedIdOrderPrices = new long[size];
+            int[] removedById = Arrays.stream(removed)
+                    .map(index -> Arrays.binarySearch(idOrder, ids[index]))
+                    .sorted()
+                    .toArray();
+            int[] insertById = new int[additions.size()];
+            for (int j = 0; j < insertById.length; j++) {
+                int byId = Arrays.binarySearch(idOrder, additions.idOrder[j]);
+                insertById[j] = byId < 0 ? -byId - 1 : byId;
+            }
+            int[] idSlots = copyAround(new Object[]{idOrder, idOrderPrices},
+                    new Object[]{splicedIdOrder, splicedIdOrderPrices}, size(), removedById, insertById);
+            for (int j = 0; j < idSlots.length; j++) {
+                splicedIdOrder[idSlots[j]] = additions.idOrder[j];
+                splicedIdOrderPrices[idSlots[j]] = additions.idOrderPrices[j];
+            }
+
+            return new Segment(splicedPrices, splicedIds, splicedVersions, splicedProviders,
+                    splicedIdOrder, splicedIdOrderPrices);
+        }
+
+        /**
+         * Copies the first {@code length} elements of each source array into its target, leaving out
+         * the ascending indexes in {@code removed} and opening a slot before each ascending index in
+         * {@code insertAt}. Unchanged runs are block copies. Returns the target index of each slot.
+         */
+        private static int[] copyAround(Object[] sources, Object[] targets, int length, int[] removed, int[] insertAt) {
+            int[] slots = new int[insertAt.length];
+            int source = 0;
+            int target = 0;
+            int r = 0;
+            int a = 0;
+            while (source < length || a < insertAt.length) {
+                if (a < insertAt.length && insertAt[a] <= source) {
+                    slots[a++] = target++;
+                    continue;
+                }
+                if (r < removed.length && removed[r] == source) {
+                    r++;
+                    source++;
+                    continue;
+                }
+                int end = length;
+                if (a < insertAt.length) {
+                    end = Math.min(end, insertAt[a]);
+                }
+                if (r < removed.length) {
+                    end = Math.min(end, removed[r]);
+                }
+                for (int i = 0; i < sources.length; i++) {
+                    System.arraycopy(sources[i], source, targets[i], target, end - source);
+                }
+                target += end - source;
+                source = end;
+            }
+            return slots;
+        }
+    }
+
+    /**
+     * Dictionary of provider names, so each quote stores an int code instead of a reference.
+     * Only used by the writer; readers see an array snapshot held by the {@link State}.
+     */
+    private static final class ProviderNames {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+
+        private static ProviderNames of(String[] names) {
+            ProviderNames providerNames = new ProviderNames();
+            for (String name : names) {
+                providerNames.code(name);
+            }
+            return providerNames;
+        }
+
+        private int code(String name) {
+            return codes.computeIfAbsent(name, key -> {
+                names.add(key);
+                return names.size() - 1;
+            });
+        }
+
+        private String[] snapshot() {
+            return names.toArray(String[]::new);
+        }
+    }
+}
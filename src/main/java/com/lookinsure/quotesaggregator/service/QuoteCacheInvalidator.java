@@ -0,0 +1,82 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.config.QuoteCacheProperties;
+import com.lookinsure.quotesaggregator.dto.AggregationFilter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Invalidates the aggregate caches after the quotes have changed.
+ * <p>
+ * By default the entries are dropped, and the first reader of each filter reloads it while
+ * concurrent readers of that filter wait for the same load ({@code @Cacheable(sync = true)}).
+ * Caches with {@code stale-while-revalidate} keep serving their previous entries instead, while a
+ * single background pass reloads every cached filter. Invalidations that arrive during a pass are
+ * coalesced into one more pass.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class QuoteCacheInvalidator {
+
+    private final CacheManager cacheManager;
+    private final QuoteCacheProperties properties;
+
+    private final Map<String, Function<AggregationFilter, ?>> loaders = new ConcurrentHashMap<>();
+    private final AtomicInteger revalidationRequests = new AtomicInteger();
+
+    public void invalidate(String cacheName, Function<AggregationFilter, ?> loader) {
+        if (!servesStale(cacheName)) {
+            cacheManager.getCache(cacheName).clear();
+            return;
+        }
+        loaders.put(cacheName, loader);
+        if (revalidationRequests.getAndIncrement() == 0) {
+            Thread.ofVirtual().name("quote-cache-revalidate").start(this::revalidateUntilCurrent);
+        }
+    }
+
+    /**
+     * Whether entries of {@code cacheName} may lag behind the current data version while they are
+     * revalidated. Otherwise entries are dropped on every change; only a load already running when
+     * they are dropped can still cache an older entry, which readers replace when they find it.
+     */
+    public boolean servesStale(String cacheName) {
+        QuoteCacheProperties.Spec spec = properties.getSpecs().get(cacheName);
+        return spec != null && spec.isStaleWhileRevalidate();
+    }
+
+    private void revalidateUntilCurrent() {
+        int handled;
+        do {
+            handled = revalidationRequests.get();
+            loaders.forEach(this::revalidate);
+        } while (revalidationRequests.addAndGet(-handled) != 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void revalidate(String cacheName, Function<AggregationFilter, ?> loader) {
+        Cache cache = cacheManager.getCache(cacheName);
+        ConcurrentMap<Object, Object> entries =
+                ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache()).asMap();
+        for (Object key : List.copyOf(entries.keySet())) {
+            try {
+                // replaces the entry in place, so readers see the previous value until the new one is ready
+                entries.computeIfPresent(key, (filter, previous) -> loader.apply((AggregationFilter) filter));
+            } catch (RuntimeException e) {
+                log.error("Could not revalidate {} entry {}; evicting it", cacheName, key, e);
+                cache.evict(key);
+            }
+        }
+    }
+}
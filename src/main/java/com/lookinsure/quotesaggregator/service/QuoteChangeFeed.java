@@ -0,0 +1,227 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.config.QuoteFeedProperties;
+import com.lookinsure.quotesaggregator.dto.QuoteFeedEvent;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.event.QuoteChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process log of committed quote changes, numbered in the order this node applied them and
+ * streamed to clients as Server-Sent Events.
+ * <p>
+ * Local changes are appended by an after-commit listener, so two transactions that commit at
+ * nearly the same time may be numbered in either order. Changes relayed from other nodes are
+ * numbered when they arrive here; event ids are therefore only meaningful on this node.
+ * <p>
+ * The most recent {@code capacity} changes are kept, so a client that reconnects with its
+ * {@code Last-Event-ID} receives exactly the changes it missed. Event ids carry a per-boot epoch.
+ * A client whose position is no longer retained, or comes from an earlier boot, gets a
+ * {@code reset} event and should reload {@code /quotes/aggregate}. Each client has its own bounded
+ * buffer and sender thread, so a slow client never holds up a write.
+ */
+@Slf4j
+@Component
+public class QuoteChangeFeed {
+
+    static final String CHANGE = "change";
+    static final String RESET = "reset";
+    static final String SUBSCRIBED = "subscribed";
+
+    private final QuoteFeedProperties properties;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Item[] retained;
+    private final Object lock = new Object();
+    private final List<Subscription> subscriptions = new ArrayList<>(); // guarded by lock
+    private long sequence; // guarded by lock
+
+    public QuoteChangeFeed(QuoteFeedProperties properties) {
+        this.properties = properties;
+        this.retained = new Item[properties.getCapacity()];
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onQuoteChanged(QuoteChangedEvent event) {
+        append(event.changes());
+    }
+
+    public void append(List<QuoteChangedEvent.QuoteChange> changes) {
+        synchronized (lock) {
+            for (QuoteChangedEvent.QuoteChange change : changes) {
+                ++sequence;
+                record(Item.change(new QuoteFeedEvent(sequence, change.type(), change.quoteId(), change.quote())));
+            }
+        }
+    }
+
+    /**
+     * Tells every client to reload, for when this node can no longer say which quotes changed.
+     */
+    public void reset() {
+        synchronized (lock) {
+            record(Item.marker(RESET, ++sequence));
+        }
+    }
+
+    public SseEmitter stream(String lastEventId, Set<CoverageType> coverageTypes) {
+        SseEmitter emitter = new SseEmitter(properties.getTimeout().toMillis());
+        Subscription subscription = subscribe(lastEventId, coverageTypes);
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(error -> subscription.close());
+        Thread.ofVirtual().name("quote-feed-sender").start(() -> send(subscription, emitter));
+        return emitter;
+    }
+
+    /**
+     * Registers a client positioned after {@code lastEventId}, with the changes it missed already
+     * queued, or a {@code subscribed} event carrying the current position when it has none.
+     */
+    Subscription subscribe(String lastEventId, Set<CoverageType> coverageTypes) {
+        Subscription subscription = new Subscription(coverageTypes, properties.getSubscriberBuffer());
+        Long position = lastEventId == null ? null : parsePosition(lastEventId);
+        synchronized (lock) {
+            long oldest = Math.max(1, sequence - retained.length + 1);
+            if (lastEventId == null) {
+                subscription.offer(Item.marker(SUBSCRIBED, sequence));
+            } else if (position == null || position > sequence || position + 1 < oldest) {
+                subscription.offer(Item.marker(RESET, sequence));
+            } else {
+                for (long next = position + 1; next <= sequence; next++) {
+                    subscription.offer(retained[(int) (next % retained.length)]);
+                }
+            }
+            subscriptions.add(subscription);
+        }
+        return subscription;
+    }
+
+    private void record(Item item) {
+        retained[(int) (item.sequence() % retained.length)] = item;
+        subscriptions.removeIf(subscription -> !subscription.offer(item));
+    }
+
+    private Long parsePosition(String eventId) {
+        int separator = eventId.lastIndexOf('-');
+        if (separator < 0 || !epoch.equals(eventId.substring(0, separator))) {
+            return null;
+        }
+        try {
+            return Long.parseLong(eventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    String eventId(long position) {
+        return epoch + "-" + position;
+    }
+
+    private void send(Subscription subscription, SseEmitter emitter) {
+        long heartbeat = properties.getHeartbeat().toMillis();
+        try {
+            while (true) {
+                // once closed, only what is already buffered is sent, so a reconnect resumes after it
+                Item item = subscription.poll(subscription.isClosed() ? 0 : heartbeat);
+                if (item == null && subscription.isClosed()) {
+                    break;
+                }
+                if (item == null) {
+                    emitter.send(SseEmitter.event().comment("keep-alive"));
+                } else if (item.event() != null) {
+                    emitter.send(SseEmitter.event().id(eventId(item.sequence())).name(CHANGE).data(item.event()));
+                } else {
+                    emitter.send(SseEmitter.event().id(eventId(item.sequence())).name(item.name()).data(item.sequence()));
+                }
+            }
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Quote change feed client disconnected", e);
+            subscription.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            emitter.complete();
+        }
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        synchronized (lock) {
+            subscriptions.remove(subscription);
+        }
+    }
+
+    /**
+     * A logged change, or a named marker ({@code reset}, {@code subscribed}) carrying only a position.
+     */
+    record Item(
+            long sequence,
+            QuoteFeedEvent event,
+            String name
+    ) {
+
+        static Item change(QuoteFeedEvent event) {
+            return new Item(event.sequence(), event, CHANGE);
+        }
+
+        static Item marker(String name, long sequence) {
+            return new Item(sequence, null, name);
+        }
+    }
+
+    final class Subscription {
+
+        private final Set<CoverageType> coverageTypes;
+        private final BlockingQueue<Item> pending;
+        private volatile boolean closed;
+
+        private Subscription(Set<CoverageType> coverageTypes, int buffer) {
+            this.coverageTypes = coverageTypes == null ? Set.of() : Set.copyOf(coverageTypes);
+            this.pending = new ArrayBlockingQueue<>(buffer);
+        }
+
+        /**
+         * Queues the item if this client wants it; returns {@code false} once the client is closed,
+         * which happens here when its buffer is full.
+         */
+        private boolean offer(Item item) {
+            if (closed) {
+                return false;
+            }
+            if (!wants(item) || pending.offer(item)) {
+                return true;
+            }
+            closed = true;
+            return false;
+        }
+
+        // deletions carry no quote, so they reach every client; ids a client does not hold are ignored
+        private boolean wants(Item item) {
+            return coverageTypes.isEmpty() || item.event() == null || item.event().quote() == null
+                    || coverageTypes.contains(item.event().quote().coverageType());
+        }
+
+        Item poll(long timeoutMillis) throws InterruptedException {
+            return pending.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        void close() {
+            closed = true;
+            unsubscribe(this);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.lookinsure.quotesaggregator.service;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Monotonic version of the quote data served by the aggregation reads, bumped once per applied
+ * change. ETags are prefixed with a per-boot epoch so they never repeat across restarts.
+ */
+@Component
+public class QuoteDataVersion {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(snapshot(0));
+
+    public Snapshot current() {
+        return current.get();
+    }
+
+    public Snapshot bump() {
+        return current.updateAndGet(previous -> snapshot(previous.version() + 1));
+    }
+
+    private Snapshot snapshot(long version) {
+        return new Snapshot(version, "\"" + epoch + "-" + version + "\"",
+                Instant.now().truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    public record Snapshot(
+            long version,
+            String etag,
+            Instant lastModified
+    ) {}
+}
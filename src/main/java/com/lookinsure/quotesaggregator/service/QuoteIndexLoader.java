@@ -0,0 +1,104 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.config.QuoteSnapshotProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Fills the {@link QuoteAggregationIndex} on startup and, when {@code quotes.snapshot.enabled}
+ * is set, keeps a {@link QuoteIndexSnapshot} of it on disk.
+ * <p>
+ * Without a usable snapshot the index is rebuilt from the database before the application reports
+ * itself ready. With one, the snapshot is restored and served straight away while the database
+ * rebuild runs in the background and replaces it once finished.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class QuoteIndexLoader {
+
+    private final QuoteAggregationIndex aggregationIndex;
+    private final QuoteStatistics quoteStatistics;
+    private final QuoteService quoteService;
+    private final QuoteDataVersion dataVersion;
+    private final QuoteSnapshotProperties properties;
+
+    private long savedVersion = -1;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (properties.isEnabled() && restoreSnapshot()) {
+            Thread.ofVirtual().name("quote-index-reconcile").start(this::reconcile);
+        } else {
+            rebuild();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${quotes.snapshot.interval:1m}", initialDelayString = "${quotes.snapshot.interval:1m}")
+    public synchronized void saveSnapshot() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        // read the version first: if a change lands in between, the next run saves again
+        long version = dataVersion.current().version();
+        if (version == savedVersion) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            aggregationIndex.snapshot().writeTo(properties.getPath());
+            savedVersion = version;
+            log.info("Saved aggregation index snapshot to {} in {} ms",
+                    properties.getPath(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not save aggregation index snapshot to {}", properties.getPath(), e);
+        }
+    }
+
+    @PreDestroy
+    public void saveSnapshotOnShutdown() {
+        saveSnapshot();
+    }
+
+    private boolean restoreSnapshot() {
+        Path path = properties.getPath();
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try {
+            long start = System.nanoTime();
+            aggregationIndex.restore(QuoteIndexSnapshot.readFrom(path));
+            quoteStatistics.rebuild();
+            quoteService.invalidateAggregatedQuotes();
+            log.info("Serving aggregation index snapshot from {} after {} ms, reconciling with the database",
+                    path, (System.nanoTime() - start) / 1_000_000);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Ignoring unusable aggregation index snapshot {}", path, e);
+            return false;
+        }
+    }
+
+    private void reconcile() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.error("Could not rebuild the aggregation index; still serving the snapshot", e);
+        }
+    }
+
+    private void rebuild() {
+        aggregationIndex.rebuild();
+        quoteStatistics.rebuild();
+        quoteService.invalidateAggregatedQuotes();
+    }
+}
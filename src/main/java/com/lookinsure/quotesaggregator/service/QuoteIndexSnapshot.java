@@ -0,0 +1,152 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.entity.Quote;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Point-in-time copy of the {@link QuoteAggregationIndex} arrays and its binary file layout.
+ * <p>
+ * The file is written through a memory mapping to a temporary file that is then atomically moved
+ * into place, and read back by mapping it and bulk-copying each array. Layout (big-endian):
+ * magic, format version, price scale, provider names, then per coverage type its name, quote
+ * count and the price, id, row version and provider code arrays, followed by a CRC32 of everything before it.
+ */
+record QuoteIndexSnapshot(
+        String[] providerNames,
+        List<Segment> segments
+) {
+
+    private static final int MAGIC = 0x51494458; // "QIDX"
+    private static final int FORMAT_VERSION = 2;
+
+    record Segment(
+            CoverageType coverageType,
+            long[] prices,
+            long[] ids,
+            long[] versions,
+            int[] providers
+    ) {}
+
+    void writeTo(Path path) throws IOException {
+        long size = 3L * Integer.BYTES + Integer.BYTES + Integer.BYTES + Long.BYTES;
+        for (String name : providerNames) {
+            size += Integer.BYTES + name.getBytes(StandardCharsets.UTF_8).length;
+        }
+        for (Segment segment : segments) {
+            size += Integer.BYTES + segment.coverageType().name().length() + Integer.BYTES
+                    + (long) segment.ids().length * (3 * Long.BYTES + Integer.BYTES);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot of " + size + " bytes exceeds the mappable size");
+        }
+
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(Quote.PRICE_SCALE);
+                buffer.putInt(providerNames.length);
+                for (String name : providerNames) {
+                    putString(buffer, name);
+                }
+                buffer.putInt(segments.size());
+                for (Segment segment : segments) {
+                    putString(buffer, segment.coverageType().name());
+                    buffer.putInt(segment.ids().length);
+                    buffer.asLongBuffer().put(segment.prices());
+                    buffer.position(buffer.position() + segment.prices().length * Long.BYTES);
+                    buffer.asLongBuffer().put(segment.ids());
+                    buffer.position(buffer.position() + segment.ids().length * Long.BYTES);
+                    buffer.asLongBuffer().put(segment.versions());
+                    buffer.position(buffer.position() + segment.versions().length * Long.BYTES);
+                    buffer.asIntBuffer().put(segment.providers());
+                    buffer.position(buffer.position() + segment.providers().length * Integer.BYTES);
+                }
+                buffer.putLong(checksum(buffer, buffer.position()));
+                buffer.force();
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    static QuoteIndexSnapshot readFrom(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 4L * Integer.BYTES + Long.BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + path + " has an invalid size of " + size + " bytes");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int contentLength = (int) size - Long.BYTES;
+            if (buffer.getLong(contentLength) != checksum(buffer, contentLength)) {
+                throw new IOException("Snapshot " + path + " failed its checksum");
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Snapshot " + path + " has an unsupported format");
+            }
+            if (buffer.getInt() != Quote.PRICE_SCALE) {
+                throw new IOException("Snapshot " + path + " was written with a different price scale");
+            }
+
+            String[] providerNames = new String[buffer.getInt()];
+            for (int i = 0; i < providerNames.length; i++) {
+                providerNames[i] = getString(buffer);
+            }
+            int segmentCount = buffer.getInt();
+            List<Segment> segments = new ArrayList<>(segmentCount);
+            for (int i = 0; i < segmentCount; i++) {
+                CoverageType coverageType = CoverageType.valueOf(getString(buffer));
+                int count = buffer.getInt();
+                long[] prices = new long[count];
+                long[] ids = new long[count];
+                long[] versions = new long[count];
+                int[] providers = new int[count];
+                buffer.asLongBuffer().get(prices);
+                buffer.position(buffer.position() + count * Long.BYTES);
+                buffer.asLongBuffer().get(ids);
+                buffer.position(buffer.position() + count * Long.BYTES);
+                buffer.asLongBuffer().get(versions);
+                buffer.position(buffer.position() + count * Long.BYTES);
+                buffer.asIntBuffer().get(providers);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                segments.add(new Segment(coverageType, prices, ids, versions, providers));
+            }
+            return new QuoteIndexSnapshot(providerNames, segments);
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("Snapshot " + path + " is malformed", e);
+        }
+    }
+
+    private static void putString(MappedByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(MappedByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long checksum(MappedByteBuffer buffer, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, length));
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,49 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.dto.QuoteRequest;
+
+/**
+ * A quote write accepted by the write-behind queue, applied later by
+ * {@link QuoteService#applyMutations}.
+ */
+public record QuoteMutation(
+        Type type,
+        Long quoteId,
+        QuoteRequest request
+) {
+
+    public enum Type {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    public static QuoteMutation create(QuoteRequest request) {
+        return new QuoteMutation(Type.CREATE, null, request);
+    }
+
+    public static QuoteMutation update(Long quoteId, QuoteRequest request) {
+        return new QuoteMutation(Type.UPDATE, quoteId, request);
+    }
+
+    public static QuoteMutation delete(Long quoteId) {
+        return new QuoteMutation(Type.DELETE, quoteId, null);
+    }
+
+    /**
+     * The id of the created, updated or deleted quote, or why the mutation was rejected.
+     */
+    public record Outcome(
+            Long quoteId,
+            String error
+    ) {
+
+        static Outcome applied(Long quoteId) {
+            return new Outcome(quoteId, null);
+        }
+
+        static Outcome rejected(String error) {
+            return new Outcome(null, error);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+@Component
+public class QuoteResponseEncoder {
+
+    private final ObjectWriter writer;
+
+    public QuoteResponseEncoder(ObjectMapper objectMapper) {
+        this.writer = objectMapper.writerFor(new TypeReference<List<QuoteResponse>>() { });
+    }
+
+    public EncodedQuotes encode(List<QuoteResponse> quotes, QuoteDataVersion.Snapshot version) {
+        try {
+            byte[] json = writer.writeValueAsBytes(quotes);
+            return new EncodedQuotes(json, gzip(json), quotes.size(), version);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // encoded once per data change and served many times, so spend the CPU on the best ratio
+    private static byte[] gzip(byte[] json) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, json.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(json);
+        }
+        return out.toByteArray();
+    }
+}
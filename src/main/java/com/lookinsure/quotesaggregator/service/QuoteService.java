@@ -1,88 +1,286 @@
 package com.lookinsure.quotesaggregator.service;
 
+import com.lookinsure.quotesaggregator.config.CacheConfig;
+import com.lookinsure.quotesaggregator.dto.AggregationFilter;
+import com.lookinsure.quotesaggregator.dto.LiveAggregationResponse;
+import com.lookinsure.quotesaggregator.dto.QuoteCursor;
+import com.lookinsure.quotesaggregator.dto.QuoteCursorPage;
 import com.lookinsure.quotesaggregator.dto.QuoteRequest;
 import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.dto.QuoteStats;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
 import com.lookinsure.quotesaggregator.entity.Provider;
 import com.lookinsure.quotesaggregator.entity.Quote;
+import com.lookinsure.quotesaggregator.event.QuoteChangedEvent;
 import com.lookinsure.quotesaggregator.exception.ResourceNotFoundException;
 import com.lookinsure.quotesaggregator.mapper.QuoteMapper;
-import com.lookinsure.quotesaggregator.repository.ProviderRepository;
 import com.lookinsure.quotesaggregator.repository.QuoteRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed("quotes.service")
 @RequiredArgsConstructor
 public class QuoteService {
 
     private final QuoteRepository quoteRepository;
-    private final ProviderRepository providerRepository;
+    private final ProviderRegistry providerRegistry;
     private final QuoteMapper quoteMapper;
+    private final QuoteAggregationIndex aggregationIndex;
+    private final QuoteStatistics quoteStatistics;
+    private final LiveQuoteAggregator liveQuoteAggregator;
+    private final QuoteResponseEncoder quoteResponseEncoder;
+    private final ApplicationEventPublisher eventPublisher;
+    private final QuoteCacheInvalidator cacheInvalidator;
+    private final QuoteDataVersion dataVersion;
 
     @Transactional
-    @CacheEvict(value = "aggregatedQuotes", allEntries = true)
     public QuoteResponse createQuote(QuoteRequest request) {
-        Provider provider = providerRepository.findById(request.providerId())
+        Provider provider = providerRegistry.find(request.providerId())
                 .orElseThrow(() -> new ResourceNotFoundException("Provider not found with ID: " + request.providerId()));
 
         Quote quote = quoteMapper.toEntity(request, provider);
         Quote savedQuote = quoteRepository.save(quote);
 
-        return quoteMapper.toResponse(savedQuote);
+        QuoteResponse response = quoteMapper.toResponse(savedQuote);
+        eventPublisher.publishEvent(QuoteChangedEvent.created(response));
+        return response;
+    }
+
+    @Transactional
+    public List<QuoteResponse> createQuotes(List<QuoteRequest> requests) {
+        Set<Long> providerIds = requests.stream()
+                .map(QuoteRequest::providerId)
+                .collect(Collectors.toSet());
+        Map<Long, Provider> providers = providerRegistry.findAll(providerIds);
+
+        List<Long> missingIds = providerIds.stream()
+                .filter(id -> !providers.containsKey(id))
+                .sorted()
+                .toList();
+        if (!missingIds.isEmpty()) {
+            throw new ResourceNotFoundException("Providers not found with IDs: " + missingIds);
+        }
+
+        List<Quote> quotes = requests.stream()
+                .map(request -> quoteMapper.toEntity(request, providers.get(request.providerId())))
+                .toList();
+
+        List<QuoteResponse> responses = quoteRepository.saveAll(quotes).stream()
+                .map(quoteMapper::toResponse)
+                .toList();
+        eventPublisher.publishEvent(QuoteChangedEvent.created(responses));
+        return responses;
     }
 
     @Transactional(readOnly = true)
     public QuoteResponse getQuoteById(Long id) {
-        Quote quote = quoteRepository.findById(id)
+        return quoteRepository.findResponseById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Quote not found with ID: " + id));
-        return quoteMapper.toResponse(quote);
     }
 
     @Transactional(readOnly = true)
     public Page<QuoteResponse> getAllQuotes(Pageable pageable) {
-        return quoteRepository.findAll(pageable)
-                .map(quoteMapper::toResponse);
+        return quoteRepository.findAllResponses(pageable);
+    }
+
+    @Transactional(readOnly = true)
+    public QuoteCursorPage getQuotesAfter(QuoteCursor cursor, int size) {
+        // one extra row tells whether another page exists without a count query
+        Limit limit = Limit.of(size + 1);
+        List<QuoteResponse> quotes = cursor == null
+                ? quoteRepository.findFirstResponses(limit)
+                : quoteRepository.findResponsesAfter(cursor.price(), cursor.id(), limit);
+
+        if (quotes.size() <= size) {
+            return new QuoteCursorPage(quotes, size, null);
+        }
+        List<QuoteResponse> content = quotes.subList(0, size);
+        return new QuoteCursorPage(content, size, QuoteCursor.of(content.get(size - 1)).encode());
     }
 
     @Transactional
-    @CacheEvict(value = "aggregatedQuotes", allEntries = true)
     public QuoteResponse updateQuote(Long id, QuoteRequest request) {
         Quote existingQuote = quoteRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Quote not found with ID: " + id));
 
-        Provider provider = providerRepository.findById(request.providerId())
+        Provider provider = providerRegistry.find(request.providerId())
                 .orElseThrow(() -> new ResourceNotFoundException("Provider not found with ID: " + request.providerId()));
 
         quoteMapper.updateEntity(existingQuote, request, provider);
 
-        Quote updatedQuote = quoteRepository.save(existingQuote);
-        return quoteMapper.toResponse(updatedQuote);
+        // flushed so the event carries the row version this update produced
+        Quote updatedQuote = quoteRepository.saveAndFlush(existingQuote);
+        QuoteResponse response = quoteMapper.toResponse(updatedQuote);
+        eventPublisher.publishEvent(QuoteChangedEvent.updated(response, updatedQuote.getVersion()));
+        return response;
     }
 
     @Transactional
-    @CacheEvict(value = "aggregatedQuotes", allEntries = true)
     public void deleteQuote(Long id) {
-        if (!quoteRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Quote not found with ID: " + id);
+        Quote quote = quoteRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Quote not found with ID: " + id));
+        quoteRepository.delete(quote);
+        eventPublisher.publishEvent(QuoteChangedEvent.deleted(id, quote.getVersion() + 1));
+    }
+
+    /**
+     * Applies queued mutations in order in one transaction and publishes a single change event for
+     * all of them. A mutation naming a missing quote or provider is rejected on its own; the rest
+     * still commit.
+     */
+    @Transactional
+    public List<QuoteMutation.Outcome> applyMutations(List<QuoteMutation> mutations) {
+        Set<Long> providerIds = mutations.stream()
+                .map(QuoteMutation::request)
+                .filter(Objects::nonNull)
+                .map(QuoteRequest::providerId)
+                .collect(Collectors.toSet());
+        Map<Long, Provider> providers = providerRegistry.findAll(providerIds);
+        Set<Long> quoteIds = mutations.stream()
+                .map(QuoteMutation::quoteId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, Quote> quotes = quoteRepository.findAllById(quoteIds).stream()
+                .collect(Collectors.toMap(Quote::getId, Function.identity()));
+
+        List<PendingChange> pending = new ArrayList<>(mutations.size());
+        List<QuoteMutation.Outcome> outcomes = new ArrayList<>(mutations.size());
+        for (QuoteMutation mutation : mutations) {
+            outcomes.add(applyMutation(mutation, providers, quotes, pending));
         }
-        quoteRepository.deleteById(id);
+        if (!pending.isEmpty()) {
+            // updates of managed entities only get their new row versions when flushed
+            quoteRepository.flush();
+            eventPublisher.publishEvent(new QuoteChangedEvent(pending.stream().map(PendingChange::toChange).toList()));
+        }
+        return outcomes;
+    }
+
+    private QuoteMutation.Outcome applyMutation(QuoteMutation mutation, Map<Long, Provider> providers,
+                                                Map<Long, Quote> quotes,
+                                                List<PendingChange> changes) {
+        Provider provider = null;
+        if (mutation.request() != null) {
+            provider = providers.get(mutation.request().providerId());
+            if (provider == null) {
+                return QuoteMutation.Outcome.rejected("Provider not found with ID: " + mutation.request().providerId());
+            }
+        }
+        if (mutation.type() == QuoteMutation.Type.CREATE) {
+            Quote quote = quoteRepository.save(quoteMapper.toEntity(mutation.request(), provider));
+            changes.add(new PendingChange(QuoteChangedEvent.ChangeType.CREATED, quote, quoteMapper.toResponse(quote)));
+            return QuoteMutation.Outcome.applied(quote.getId());
+        }
+
+        Quote quote = quotes.get(mutation.quoteId());
+        if (quote == null) {
+            return QuoteMutation.Outcome.rejected("Quote not found with ID: " + mutation.quoteId());
+        }
+        if (mutation.type() == QuoteMutation.Type.UPDATE) {
+            // the entity is managed, so the change is flushed with the rest of the batch on commit
+            quoteMapper.updateEntity(quote, mutation.request(), provider);
+            changes.add(new PendingChange(QuoteChangedEvent.ChangeType.UPDATED, quote, quoteMapper.toResponse(quote)));
+        } else {
+            quotes.remove(quote.getId());
+            quoteRepository.delete(quote);
+            changes.add(new PendingChange(QuoteChangedEvent.ChangeType.DELETED, quote, null));
+        }
+        return QuoteMutation.Outcome.applied(quote.getId());
+    }
+
+    /** A mutation's change, turned into a {@link QuoteChangedEvent.QuoteChange} once the batch is flushed. */
+    private record PendingChange(QuoteChangedEvent.ChangeType type, Quote quote, QuoteResponse response) {
+
+        private QuoteChangedEvent.QuoteChange toChange() {
+            long version = type == QuoteChangedEvent.ChangeType.DELETED ? quote.getVersion() + 1 : quote.getVersion();
+            return new QuoteChangedEvent.QuoteChange(type, quote.getId(), version, response);
+        }
+    }
+
+    @Cacheable(value = "encodedAggregatedQuotes", key = "#filter", sync = true)
+    public EncodedQuotes getEncodedAggregatedQuotes(AggregationFilter filter) {
+        return encodeAggregatedQuotes(filter);
+    }
+
+    /**
+     * Re-encodes the aggregate of {@code filter} and replaces its cache entry. For an entry older than
+     * the last change: clearing the cache cannot drop a load that was still running, so such a load
+     * caches what it read before the change.
+     */
+    @CachePut(value = "encodedAggregatedQuotes", key = "#filter")
+    public EncodedQuotes reloadEncodedAggregatedQuotes(AggregationFilter filter) {
+        return encodeAggregatedQuotes(filter);
+    }
+
+    public LiveAggregationResponse getLiveAggregatedQuotes(AggregationFilter filter) {
+        return liveQuoteAggregator.aggregate(filter);
     }
 
     @Transactional(readOnly = true)
-    @Cacheable(value = "aggregatedQuotes")
-    public List<QuoteResponse> getAggregatedQuotes() {
-        List<Quote> sortedQuotes = quoteRepository.findAllByOrderByPriceAsc();
+    public void streamAggregatedQuotes(Consumer<QuoteResponse> consumer) {
+        try (Stream<QuoteResponse> quotes = quoteRepository.streamAllResponsesByOrderByPriceAsc()) {
+            quotes.forEach(consumer);
+        }
+    }
 
-        return sortedQuotes.stream()
-                .map(quoteMapper::toResponse)
-                .toList();
+    public List<QuoteStats> getQuoteStats(String providerName, CoverageType coverageType) {
+        return quoteStatistics.get(providerName, coverageType);
+    }
+
+    public QuoteDataVersion.Snapshot getDataVersion() {
+        return dataVersion.current();
+    }
+
+    /**
+     * Returns the version a read of the aggregated quotes would be served at, without reading
+     * them, or empty while cached entries may be older than the current version
+     * ({@code stale-while-revalidate}); then only the entry itself knows its version.
+     */
+    public Optional<QuoteDataVersion.Snapshot> getAggregatedQuotesVersion() {
+        return cacheInvalidator.servesStale(CacheConfig.ENCODED_AGGREGATED_QUOTES)
+                ? Optional.empty()
+                : Optional.of(dataVersion.current());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onQuoteChanged(QuoteChangedEvent event) {
+        aggregationIndex.apply(event);
+        quoteStatistics.apply(event);
+        invalidateAggregatedQuotes();
+    }
+
+    /**
+     * Invalidates every cached aggregation result after the index has changed. The index has
+     * already bumped the data version along with the change.
+     */
+    public void invalidateAggregatedQuotes() {
+        cacheInvalidator.invalidate(CacheConfig.ENCODED_AGGREGATED_QUOTES, this::encodeAggregatedQuotes);
+    }
+
+    private EncodedQuotes encodeAggregatedQuotes(AggregationFilter filter) {
+        // quotes and version come from the same index state, so the ETag always matches the body
+        return aggregationIndex.query(filter, quoteResponseEncoder::encode);
     }
 
 }
@@ -0,0 +1,261 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.dto.QuoteStats;
+import com.lookinsure.quotesaggregator.dto.VersionedQuote;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.entity.Quote;
+import com.lookinsure.quotesaggregator.event.QuoteChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Price statistics per provider and {@link CoverageType}, kept up to date from the same
+ * {@link QuoteChangedEvent}s as the {@link QuoteAggregationIndex}, so they are read without
+ * touching the database.
+ * <p>
+ * Every quote counts towards four groups: its provider and coverage type, its provider across all
+ * coverage types, its coverage type across all providers, and all quotes. Each group keeps a count
+ * and a price sum, and its prices split into a lower and an upper half (sorted multisets), so the
+ * median sits at the boundary and a change costs O(log n). Reads are lock-free against the figures
+ * published after each change; {@link #rebuild()} recomputes everything from the index. Like the
+ * index, a change only counts if its row version is newer than the one already counted for the
+ * quote.
+ */
+@Component
+@RequiredArgsConstructor
+public class QuoteStatistics {
+
+    private static final Comparator<QuoteStats> ORDER = Comparator
+            .comparing(QuoteStats::providerName, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(QuoteStats::coverageType, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final QuoteAggregationIndex aggregationIndex;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private Tally tally = new Tally();
+    private volatile List<QuoteStats> published = List.of();
+
+    /**
+     * Returns the groups of {@code providerName} and {@code coverageType}; {@code null} matches any.
+     */
+    public List<QuoteStats> get(String providerName, CoverageType coverageType) {
+        return published.stream()
+                .filter(stats -> providerName == null || providerName.equals(stats.providerName()))
+                .filter(stats -> coverageType == null || coverageType == stats.coverageType())
+                .toList();
+    }
+
+    public void apply(QuoteChangedEvent event) {
+        writeLock.lock();
+        try {
+            for (QuoteChangedEvent.QuoteChange change : event.changes()) {
+                if (change.type() == QuoteChangedEvent.ChangeType.DELETED) {
+                    tally.remove(change.quoteId(), change.version());
+                } else {
+                    tally.put(new VersionedQuote(change.quote(), change.version()));
+                }
+            }
+            published = tally.stats();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void rebuild() {
+        writeLock.lock();
+        try {
+            // a change reaching the index meanwhile is offered here again afterwards and skipped as not newer
+            Tally rebuilt = new Tally();
+            aggregationIndex.versionedQuotes().forEach(rebuilt::put);
+            rebuilt.keepDeletions(tally);
+            tally = rebuilt;
+            published = rebuilt.stats();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Statistics of a set of quotes, keyed by quote id so that a newer version of a quote replaces
+     * its previous figures, while an older or repeated version, or removing an unknown id, does
+     * nothing. Removed quotes keep their deletion version as a {@link Tombstones tombstone}, so a late
+     * update cannot count them again.
+     */
+    static final class Tally {
+
+        private final Map<Long, Contribution> quotes = new HashMap<>();
+        private Tombstones tombstones = new Tombstones();
+        private final Map<Key, Group> groups = new HashMap<>();
+        private final Map<Key, QuoteStats> stats = new HashMap<>();
+        private final Set<Key> changed = new HashSet<>();
+
+        boolean put(VersionedQuote quote) {
+            if (!isNewer(quote.id(), quote.version())) {
+                return false;
+            }
+            tombstones.forget(quote.id());
+            discard(quote.id());
+            long price = QuoteAggregationIndex.toMinorUnits(quote.price());
+            Key key = groups.computeIfAbsent(new Key(quote.providerName(), quote.coverageType()), Group::new).key;
+            for (Key group : key.withTotals()) {
+                groups.computeIfAbsent(group, Group::new).add(price);
+                changed.add(group);
+            }
+            quotes.put(quote.id(), new Contribution(key, price, quote.version()));
+            return true;
+        }
+
+        void remove(Long quoteId, long version) {
+            if (isNewer(quoteId, version)) {
+                tombstones.record(quoteId, version);
+                discard(quoteId);
+            }
+        }
+
+        // takes the previous tombstones over rather than copying them, so they keep expiring on time
+        void keepDeletions(Tally previous) {
+            tombstones = previous.tombstones;
+            tombstones.removeIf(quotes::containsKey);
+        }
+
+        private boolean isNewer(Long quoteId, long version) {
+            Contribution current = quotes.get(quoteId);
+            long counted = Math.max(current == null ? -1 : current.version(), tombstones.version(quoteId));
+            return version > counted;
+        }
+
+        private void discard(Long quoteId) {
+            Contribution previous = quotes.remove(quoteId);
+            if (previous == null) {
+                return;
+            }
+            for (Key key : previous.key().withTotals()) {
+                Group group = groups.get(key);
+                group.remove(previous.price());
+                if (group.count() == 0) {
+                    groups.remove(key);
+                }
+                changed.add(key);
+            }
+        }
+
+        List<QuoteStats> stats() {
+            for (Key key : changed) {
+                Group group = groups.get(key);
+                if (group == null) {
+                    stats.remove(key);
+                } else {
+                    stats.put(key, group.stats());
+                }
+            }
+            changed.clear();
+            return stats.values().stream().sorted(ORDER).toList();
+        }
+    }
+
+    private record Key(String providerName, CoverageType coverageType) {
+
+        private List<Key> withTotals() {
+            return List.of(this, new Key(providerName, null), new Key(null, coverageType), new Key(null, null));
+        }
+    }
+
+    private record Contribution(Key key, long price, long version) {}
+
+    /**
+     * Prices in minor units as two sorted multisets: {@code lower} holds the smaller half and, for
+     * an odd count, the median; {@code upper} the rest.
+     */
+    private static final class Group {
+
+        private final Key key;
+        private final TreeMap<Long, Integer> lower = new TreeMap<>();
+        private final TreeMap<Long, Integer> upper = new TreeMap<>();
+        private int lowerCount;
+        private int upperCount;
+        private long sum;
+
+        private Group(Key key) {
+            this.key = key;
+        }
+
+        private int count() {
+            return lowerCount + upperCount;
+        }
+
+        private void add(long price) {
+            if (lowerCount == 0 || price <= lower.lastKey()) {
+                increment(lower, price);
+                lowerCount++;
+            } else {
+                increment(upper, price);
+                upperCount++;
+            }
+            sum += price;
+            balance();
+        }
+
+        private void remove(long price) {
+            // every upper price is >= the lower maximum, so a price up to it is always found in lower
+            if (price <= lower.lastKey()) {
+                decrement(lower, price);
+                lowerCount--;
+            } else {
+                decrement(upper, price);
+                upperCount--;
+            }
+            sum -= price;
+            balance();
+        }
+
+        private void balance() {
+            while (lowerCount > upperCount + 1) {
+                long price = lower.lastKey();
+                decrement(lower, price);
+                increment(upper, price);
+                lowerCount--;
+                upperCount++;
+            }
+            while (upperCount > lowerCount) {
+                long price = upper.firstKey();
+                decrement(upper, price);
+                increment(lower, price);
+                upperCount--;
+                lowerCount++;
+            }
+        }
+
+        private QuoteStats stats() {
+            long max = upperCount == 0 ? lower.lastKey() : upper.lastKey();
+            BigDecimal median = lowerCount > upperCount
+                    ? price(lower.lastKey())
+                    : price(lower.lastKey() + upper.firstKey()).divide(BigDecimal.TWO, Quote.PRICE_SCALE, RoundingMode.HALF_UP);
+            BigDecimal average = price(sum).divide(BigDecimal.valueOf(count()), Quote.PRICE_SCALE, RoundingMode.HALF_UP);
+            return new QuoteStats(key.providerName(), key.coverageType(), count(),
+                    price(lower.firstKey()), price(max), average, median);
+        }
+
+        private static BigDecimal price(long minorUnits) {
+            return BigDecimal.valueOf(minorUnits, Quote.PRICE_SCALE);
+        }
+
+        private static void increment(TreeMap<Long, Integer> prices, long price) {
+            prices.merge(price, 1, Integer::sum);
+        }
+
+        private static void decrement(TreeMap<Long, Integer> prices, long price) {
+            prices.computeIfPresent(price, (key, count) -> count == 1 ? null : count - 1);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.dto.QuoteStats;
+import com.lookinsure.quotesaggregator.dto.VersionedQuote;
+import com.lookinsure.quotesaggregator.event.QuoteChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Verifies the incrementally maintained {@link QuoteStatistics}, and the figures of the
+ * {@link QuoteAggregationIndex} they are derived from, against a full recompute from the database.
+ * A difference is logged and repaired by reloading the index from the database and rebuilding the
+ * statistics from it. A run during which the quotes changed is skipped, as the figures cannot be
+ * compared.
+ * <p>
+ * Only local changes move the data version, so a commit whose listener has not run yet, or a peer's
+ * delta still in flight, can make a healthy index look drifted for a moment. A difference is
+ * therefore only repaired once the next run finds one as well; a rebuild holds the index's write
+ * lock for the whole database load.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class QuoteStatisticsReconciler {
+
+    public enum Result {
+        CONSISTENT,
+        /** Differs from the database; repaired if the next run still finds a difference. */
+        SUSPECTED,
+        REPAIRED,
+        SKIPPED
+    }
+
+    private final QuoteService quoteService;
+    private final QuoteAggregationIndex aggregationIndex;
+    private final QuoteStatistics statistics;
+    private final QuoteDataVersion dataVersion;
+
+    private boolean differedLastRun;
+
+    @Scheduled(fixedDelayString = "${quotes.stats.reconcile-interval:1h}", initialDelayString = "${quotes.stats.reconcile-interval:1h}")
+    public synchronized Result reconcile() {
+        long version = dataVersion.current().version();
+        QuoteStatistics.Tally recomputed = new QuoteStatistics.Tally();
+        quoteService.streamAggregatedQuotes(quote -> recomputed.put(new VersionedQuote(quote, QuoteChangedEvent.INITIAL_VERSION)));
+        List<QuoteStats> expected = recomputed.stats();
+        List<QuoteStats> actual = statistics.get(null, null);
+        QuoteStatistics.Tally indexed = new QuoteStatistics.Tally();
+        aggregationIndex.versionedQuotes().forEach(indexed::put);
+        List<QuoteStats> inIndex = indexed.stats();
+        if (dataVersion.current().version() != version) {
+            log.info("Quotes changed while reconciling quote statistics; skipping this run");
+            return Result.SKIPPED;
+        }
+        if (expected.equals(actual) && expected.equals(inIndex)) {
+            differedLastRun = false;
+            return Result.CONSISTENT;
+        }
+        if (!differedLastRun) {
+            differedLastRun = true;
+            log.info("Quote statistics differ from the database; repairing them if they still differ on the next run");
+            return Result.SUSPECTED;
+        }
+        differedLastRun = false;
+        log.warn("Quote statistics differ from the database; reloading the index and rebuilding them. "
+                        + "Database: {}, maintained: {}, index: {}",
+                expected.stream().filter(stats -> !actual.contains(stats) || !inIndex.contains(stats)).toList(),
+                actual.stream().filter(stats -> !expected.contains(stats)).toList(),
+                inIndex.stream().filter(stats -> !expected.contains(stats)).toList());
+        aggregationIndex.rebuild();
+        statistics.rebuild();
+        quoteService.invalidateAggregatedQuotes();
+        return Result.REPAIRED;
+    }
+}
@@ -0,0 +1,159 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lookinsure.quotesaggregator.config.WriteBehindProperties;
+import com.lookinsure.quotesaggregator.dto.PendingWrite;
+import com.lookinsure.quotesaggregator.exception.WriteQueueFullException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-memory queue of quote mutations, flushed by a single writer thread in grouped
+ * transactions.
+ * <p>
+ * A batch is flushed once it holds {@code batch-size} mutations, or {@code flush-interval} after
+ * its first mutation was queued, whichever comes first. Mutations are applied in the order they
+ * were accepted, and each flush updates the aggregation index and caches once. A queued mutation
+ * lives only in memory: it is flushed on a graceful shutdown but lost if the process dies first.
+ * <p>
+ * Pending writes are tracked until they are flushed, which {@code capacity} bounds. Outcomes are
+ * kept for {@code result-retention}, but at most {@code result-capacity} of them.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "quotes.write-behind.enabled", havingValue = "true")
+public class QuoteWriteBehindQueue {
+
+    // queued last on shutdown, after every accepted mutation
+    private static final Entry STOP = new Entry(null, null);
+
+    private final QuoteService quoteService;
+    private final WriteBehindProperties properties;
+    private final BlockingQueue<Entry> queue;
+    private final Map<String, PendingWrite> pending = new ConcurrentHashMap<>();
+    private final Cache<String, PendingWrite> results;
+
+    private boolean accepting = true;
+    private Thread flusher;
+
+    public QuoteWriteBehindQueue(QuoteService quoteService, WriteBehindProperties properties) {
+        this.quoteService = quoteService;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.getCapacity());
+        this.results = Caffeine.newBuilder()
+                .maximumSize(properties.getResultCapacity())
+                .expireAfterWrite(properties.getResultRetention())
+                .build();
+    }
+
+    @PostConstruct
+    void start() {
+        flusher = Thread.ofVirtual().name("quote-write-behind").start(this::flushUntilStopped);
+    }
+
+    public PendingWrite submit(QuoteMutation mutation) {
+        PendingWrite write = PendingWrite.pending(UUID.randomUUID().toString());
+        // recorded first, so the flusher can't report an outcome that this would then overwrite
+        pending.put(write.id(), write);
+        synchronized (this) {
+            if (accepting && queue.offer(new Entry(write.id(), mutation))) {
+                return write;
+            }
+        }
+        pending.remove(write.id());
+        throw new WriteQueueFullException("Write queue is full, retry later");
+    }
+
+    public Optional<PendingWrite> status(String pendingId) {
+        // the outcome is recorded before the pending entry goes, so one of the two is always found
+        PendingWrite write = pending.get(pendingId);
+        return Optional.ofNullable(write != null ? write : results.getIfPresent(pendingId));
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        synchronized (this) {
+            accepting = false;
+        }
+        queue.put(STOP);
+        flusher.join();
+    }
+
+    private void flushUntilStopped() {
+        int batchSize = properties.getBatchSize();
+        long flushInterval = properties.getFlushInterval().toNanos();
+        List<Entry> batch = new ArrayList<>(batchSize);
+        try {
+            boolean stopped = false;
+            while (!stopped) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + flushInterval;
+                while (batch.size() < batchSize && batch.getLast() != STOP) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    Entry next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                stopped = batch.getLast() == STOP;
+                if (stopped) {
+                    batch.removeLast();
+                }
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Write-behind flusher interrupted; {} queued quote mutations were not written",
+                    batch.size() + queue.size());
+        }
+    }
+
+    private void flush(List<Entry> batch) {
+        List<QuoteMutation> mutations = batch.stream().map(Entry::mutation).toList();
+        try {
+            List<QuoteMutation.Outcome> outcomes = quoteService.applyMutations(mutations);
+            for (int i = 0; i < batch.size(); i++) {
+                String pendingId = batch.get(i).pendingId();
+                QuoteMutation.Outcome outcome = outcomes.get(i);
+                complete(outcome.error() == null
+                        ? PendingWrite.committed(pendingId, outcome.quoteId())
+                        : PendingWrite.failed(pendingId, outcome.error()));
+            }
+        } catch (Throwable e) {
+            // this is the only writer thread, so not even an Error may end it; later batches still get written
+            log.error("Could not write a batch of {} quote mutations", batch.size(), e);
+            batch.forEach(entry -> complete(PendingWrite.failed(entry.pendingId(), "Batch could not be committed")));
+        }
+    }
+
+    private void complete(PendingWrite outcome) {
+        results.put(outcome.id(), outcome);
+        pending.remove(outcome.id());
+    }
+
+    private record Entry(
+            String pendingId,
+            QuoteMutation mutation
+    ) {}
+}
@@ -0,0 +1,61 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+/**
+ * Deletion versions of recently deleted quotes, so that a change older than the deletion which
+ * arrives late (a local listener that lost the race, or a peer's delayed delta) cannot bring the
+ * quote back. A tombstone is only needed until such changes have arrived, so it expires after
+ * {@link #RETENTION}; memory is bounded by the deletes of that window.
+ */
+final class Tombstones {
+
+    static final Duration RETENTION = Duration.ofMinutes(10);
+
+    private final Cache<Long, Long> versions;
+
+    Tombstones() {
+        this(Ticker.systemTicker());
+    }
+
+    Tombstones(Ticker ticker) {
+        this.versions = Caffeine.newBuilder()
+                .expireAfterWrite(RETENTION)
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * Returns the version the quote was deleted at, or -1 if it has no live tombstone.
+     */
+    long version(Long quoteId) {
+        Long version = versions.getIfPresent(quoteId);
+        return version == null ? -1 : version;
+    }
+
+    void record(Long quoteId, long version) {
+        versions.asMap().merge(quoteId, version, Math::max);
+    }
+
+    void forget(Long quoteId) {
+        versions.invalidate(quoteId);
+    }
+
+    void removeIf(Predicate<Long> quoteIds) {
+        versions.asMap().keySet().removeIf(quoteIds);
+    }
+
+    void clear() {
+        versions.invalidateAll();
+    }
+
+    long size() {
+        versions.cleanUp();
+        return versions.estimatedSize();
+    }
+}
@@ -0,0 +1,31 @@
+package com.lookinsure.quotesaggregator.source;
+
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Pricing adapter for a single {@code Provider}. Implementations are registered as beans and
+ * matched to providers by name; they are called concurrently and must be thread-safe.
+ */
+public interface QuoteSource {
+
+    String providerName();
+
+    /**
+     * Fetches current quotes, blocking until the provider answers. A {@code null} coverage type
+     * asks for every coverage type the provider prices. Returned quotes carry no id.
+     */
+    List<QuoteResponse> fetchQuotes(CoverageType coverageType);
+
+    /**
+     * Deadline for a single aggregation call to this source; the aggregation budget applies when
+     * empty or longer.
+     */
+    default Optional<Duration> timeout() {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,34 @@
+package com.lookinsure.quotesaggregator.source;
+
+import com.lookinsure.quotesaggregator.config.QuoteSourceProperties;
+import com.lookinsure.quotesaggregator.service.QuoteAggregationIndex;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The quote sources to aggregate, one per provider: {@link QuoteSource} beans first, then a
+ * {@link SimulatedQuoteSource} for each configured simulation whose provider has no adapter.
+ */
+@Component
+public class QuoteSourceRegistry {
+
+    private final List<QuoteSource> sources;
+
+    public QuoteSourceRegistry(ObjectProvider<QuoteSource> adapters,
+                               QuoteSourceProperties properties,
+                               QuoteAggregationIndex aggregationIndex) {
+        Map<String, QuoteSource> byProvider = new LinkedHashMap<>();
+        adapters.orderedStream().forEach(source -> byProvider.put(source.providerName(), source));
+        properties.getSimulated().forEach(simulation -> byProvider.putIfAbsent(
+                simulation.getProvider(), new SimulatedQuoteSource(simulation, aggregationIndex)));
+        this.sources = List.copyOf(byProvider.values());
+    }
+
+    public List<QuoteSource> getSources() {
+        return sources;
+    }
+}
@@ -0,0 +1,60 @@
+package com.lookinsure.quotesaggregator.source;
+
+import com.lookinsure.quotesaggregator.config.QuoteSourceProperties;
+import com.lookinsure.quotesaggregator.dto.AggregationFilter;
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.exception.QuoteSourceException;
+import com.lookinsure.quotesaggregator.service.QuoteAggregationIndex;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local stub adapter that answers with the quotes stored for its provider after a simulated
+ * network delay, failing a configurable fraction of calls.
+ */
+@RequiredArgsConstructor
+public class SimulatedQuoteSource implements QuoteSource {
+
+    private final QuoteSourceProperties.Simulation simulation;
+    private final QuoteAggregationIndex aggregationIndex;
+
+    @Override
+    public String providerName() {
+        return simulation.getProvider();
+    }
+
+    @Override
+    public List<QuoteResponse> fetchQuotes(CoverageType coverageType) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long jitterMillis = simulation.getJitter().toMillis();
+        sleep(simulation.getLatency().plusMillis(jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0));
+
+        if (random.nextDouble() < simulation.getFailureRate()) {
+            throw new QuoteSourceException("Simulated failure from provider: " + providerName());
+        }
+
+        return aggregationIndex.query(new AggregationFilter(coverageType, null, null, null)).stream()
+                .filter(quote -> providerName().equals(quote.providerName()))
+                .map(quote -> new QuoteResponse(null, quote.coverageType(), quote.price(), quote.providerName()))
+                .toList();
+    }
+
+    @Override
+    public Optional<Duration> timeout() {
+        return Optional.ofNullable(simulation.getTimeout());
+    }
+
+    private void sleep(Duration latency) {
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QuoteSourceException("Interrupted while waiting for provider: " + providerName());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.lookinsure.quotesaggregator.admission;
+
+import com.lookinsure.quotesaggregator.config.AdmissionControlProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    private final AdmissionControlProperties.Budget budget = new AdmissionControlProperties.Budget();
+
+    AdaptiveConcurrencyLimitTest() {
+        budget.setInitialLimit(20);
+        budget.setMinLimit(5);
+        budget.setMaxLimit(100);
+    }
+
+    @Test
+    void tryAcquire_AdmitsUpToShareOfLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(budget);
+
+        for (int i = 0; i < 15; i++) {
+            assertTrue(limit.tryAcquire(0.75));
+        }
+        assertFalse(limit.tryAcquire(0.75));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limit.tryAcquire(1.0));
+        }
+        assertFalse(limit.tryAcquire(1.0));
+
+        limit.release();
+        assertTrue(limit.tryAcquire(1.0));
+        assertEquals(20, limit.getInFlight());
+    }
+
+    @Test
+    void onSample_GrowsWhileLatencyHoldsUnderLoad() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(budget);
+
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(10 * MILLIS, limit.getLimit());
+        }
+
+        assertEquals(100, limit.getLimit());
+    }
+
+    @Test
+    void onSample_ShrinksWhenLatencyRises() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(budget);
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(10 * MILLIS, limit.getLimit());
+        }
+        int grown = limit.getLimit();
+
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(100 * MILLIS, limit.getLimit());
+        }
+
+        assertTrue(limit.getLimit() < grown / 2, "limit " + limit.getLimit() + " after growing to " + grown);
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(100 * MILLIS, limit.getLimit());
+        }
+        assertTrue(limit.getLimit() >= budget.getMinLimit());
+    }
+
+    @Test
+    void onSample_IgnoresLatencyWhileMostlyIdle() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(budget);
+
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(i % 2 == 0 ? 10 * MILLIS : 500 * MILLIS, 3);
+        }
+
+        assertEquals(20, limit.getLimit());
+    }
+}
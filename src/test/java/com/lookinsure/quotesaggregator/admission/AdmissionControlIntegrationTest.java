@@ -0,0 +1,91 @@
+package com.lookinsure.quotesaggregator.admission;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {
+        "quotes.admission.enabled=true",
+        "quotes.admission.cached-read-reserve=0.5",
+        "quotes.admission.read.initial-limit=4",
+        "quotes.admission.read.min-limit=4",
+        "quotes.admission.read.max-limit=4",
+        "quotes.admission.write.initial-limit=1",
+        "quotes.admission.write.min-limit=1",
+        "quotes.admission.write.max-limit=1"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AdmissionControlIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AdmissionControlInterceptor interceptor;
+
+    private final List<AdaptiveConcurrencyLimit> held = new ArrayList<>();
+
+    @AfterEach
+    void releaseHeldSlots() {
+        held.forEach(AdaptiveConcurrencyLimit::release);
+    }
+
+    @Test
+    void databaseReadsAreShedFirstWhileCachedReadsAreStillServed() throws Exception {
+        hold(interceptor.getReads(), 2);
+
+        mockMvc.perform(get("/quotes"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.status").value(429))
+                .andExpect(jsonPath("$.message").value("Too many read requests in flight; retry later"));
+        mockMvc.perform(get("/quotes/aggregate")).andExpect(status().isOk());
+        mockMvc.perform(get("/providers")).andExpect(status().isOk());
+
+        hold(interceptor.getReads(), 2);
+        mockMvc.perform(get("/quotes/aggregate")).andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void writesHaveTheirOwnBudget() throws Exception {
+        hold(interceptor.getWrites(), 1);
+
+        mockMvc.perform(post("/quotes")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"coverageType\":\"CAR\",\"price\":10,\"providerId\":1}"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(jsonPath("$.message").value("Too many write requests in flight; retry later"));
+        mockMvc.perform(get("/quotes")).andExpect(status().isOk());
+    }
+
+    @Test
+    void slotsAreReleasedAfterEachRequest() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            mockMvc.perform(get("/quotes")).andExpect(status().isOk());
+            mockMvc.perform(get("/quotes/999999")).andExpect(status().isNotFound());
+        }
+
+        assertEquals(0, interceptor.getReads().getInFlight());
+    }
+
+    private void hold(AdaptiveConcurrencyLimit limit, int slots) {
+        for (int i = 0; i < slots; i++) {
+            assertEquals(true, limit.tryAcquire(1.0));
+            held.add(limit);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.lookinsure.quotesaggregator.benchmark;
+
+import com.lookinsure.quotesaggregator.LookinsureQuotesAggregatorApplication;
+import com.lookinsure.quotesaggregator.dto.QuoteRequest;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.entity.Provider;
+import com.lookinsure.quotesaggregator.repository.ProviderRepository;
+import com.lookinsure.quotesaggregator.service.QuoteService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Offers the same request mix (cached aggregate reads, paged reads and writes) at a fixed arrival
+ * rate, regardless of how fast the application answers, with admission control off and then on.
+ * The rates are 1x and 2x the throughput measured by a closed-loop pass against the first
+ * application. Latency is measured from each request's scheduled start, so time spent waiting for
+ * a connection or a Tomcat thread is included; p50/p99 are for successful requests only.
+ * <p>
+ * Excluded from the default build; run with {@code ./mvnw test -Pbenchmark -Dtest=AdmissionControlLoadTest}.
+ * The length of each open-loop pass and the closed-loop concurrency can be changed with
+ * {@code -Dloadtest.duration} (seconds) and {@code -Dloadtest.concurrency}.
+ */
+@Tag("benchmark")
+class AdmissionControlLoadTest {
+
+    private static final int QUOTES = Integer.getInteger("loadtest.quotes", 20_000);
+    private static final int DURATION_SECONDS = Integer.getInteger("loadtest.duration", 20);
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 200);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final int PROVIDERS = 10;
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    @Test
+    void openLoopOverloadWithAndWithoutAdmissionControl() throws Exception {
+        Map<String, Result> results = new LinkedHashMap<>();
+        double saturation;
+        try (Application application = Application.start(false)) {
+            saturation = application.closedLoop();
+            results.put("off, 1x", application.openLoop(saturation));
+            results.put("off, 2x", application.openLoop(2 * saturation));
+        }
+        try (Application application = Application.start(true)) {
+            application.closedLoop();
+            results.put("on, 1x", application.openLoop(saturation));
+            results.put("on, 2x", application.openLoop(2 * saturation));
+        }
+
+        System.out.printf("%n--- Admission control: open loop for %ds at 1x and 2x of %.0f req/s ---%n",
+                DURATION_SECONDS, saturation);
+        System.out.printf("%-10s %12s %12s %12s %10s %10s %10s%n",
+                "admission", "ok req/s", "p50 ms", "p99 ms", "shed %", "timeouts", "5xx");
+        results.forEach((mode, result) -> result.print(mode));
+
+        results.values().forEach(result -> assertEquals(0, result.serverErrors()));
+    }
+
+    private record Application(ConfigurableApplicationContext context, String baseUrl,
+                               List<Long> quoteIds, List<Long> providerIds) implements AutoCloseable {
+
+        static Application start(boolean admissionControl) {
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(LookinsureQuotesAggregatorApplication.class)
+                    .profiles("test")
+                    .properties(
+                            "server.port=0",
+                            "quotes.admission.enabled=" + admissionControl,
+                            "spring.jpa.properties.hibernate.generate_statistics=false",
+                            "spring.datasource.url=jdbc:h2:mem:admission-loadtest-" + admissionControl
+                                    + ";LAZY_QUERY_EXECUTION=TRUE")
+                    .run();
+            List<Long> providerIds = new ArrayList<>();
+            List<Long> quoteIds = seed(context, providerIds);
+            String baseUrl = "http://127.0.0.1:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            return new Application(context, baseUrl, quoteIds, providerIds);
+        }
+
+        /**
+         * Warms the application up and returns the throughput it sustains with {@code CONCURRENCY}
+         * clients that each wait for a response before sending the next request.
+         */
+        double closedLoop() {
+            AtomicInteger completed = new AtomicInteger();
+            long start = System.nanoTime();
+            long end = start + Duration.ofSeconds(DURATION_SECONDS).toNanos();
+            try (HttpClient httpClient = newHttpClient();
+                 ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int client = 0; client < CONCURRENCY; client++) {
+                    Random random = new Random(client);
+                    clients.submit(() -> {
+                        while (System.nanoTime() < end) {
+                            try {
+                                httpClient.send(nextRequest(random), HttpResponse.BodyHandlers.discarding());
+                                completed.incrementAndGet();
+                            } catch (Exception ignored) {
+                                // counted by the open-loop passes
+                            }
+                        }
+                        return null;
+                    });
+                }
+            }
+            return completed.get() * 1_000_000_000.0 / (System.nanoTime() - start);
+        }
+
+        Result openLoop(double ratePerSecond) {
+            int requests = (int) (ratePerSecond * DURATION_SECONDS);
+            long interval = (long) (1_000_000_000 / ratePerSecond);
+            ConcurrentLinkedQueue<Long> samples = new ConcurrentLinkedQueue<>();
+            AtomicInteger shed = new AtomicInteger();
+            AtomicInteger timeouts = new AtomicInteger();
+            AtomicInteger serverErrors = new AtomicInteger();
+            Random random = new Random(42);
+
+            long start = System.nanoTime();
+            try (HttpClient httpClient = newHttpClient();
+                 ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < requests; i++) {
+                    long scheduled = start + i * interval;
+                    LockSupport.parkNanos(scheduled - System.nanoTime());
+                    HttpRequest request = nextRequest(random);
+                    senders.submit(() -> {
+                        try {
+                            int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                            if (status == 429) {
+                                shed.incrementAndGet();
+                            } else if (status >= 500) {
+                                serverErrors.incrementAndGet();
+                            } else {
+                                samples.add(System.nanoTime() - scheduled);
+                            }
+                        } catch (HttpTimeoutException e) {
+                            timeouts.incrementAndGet();
+                        } catch (Exception e) {
+                            serverErrors.incrementAndGet();
+                        }
+                        return null;
+                    });
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+
+            long[] sorted = samples.stream().mapToLong(Long::longValue).sorted().toArray();
+            return new Result(sorted.length * 1_000_000_000.0 / elapsed, percentile(sorted, 50),
+                    percentile(sorted, 99), 100.0 * shed.get() / requests, timeouts.get(), serverErrors.get());
+        }
+
+        // mostly cached aggregate reads, then database-bound pages and a share of writes
+        private HttpRequest nextRequest(Random random) {
+            int pick = random.nextInt(10);
+            if (pick < 5) {
+                return get("/quotes/aggregate?limit=10&coverageType="
+                        + CoverageType.values()[random.nextInt(CoverageType.values().length)]);
+            }
+            if (pick < 9) {
+                return get("/quotes?size=20&sort=price&page=" + random.nextInt(QUOTES / 20));
+            }
+            String body = "{\"coverageType\":\"%s\",\"price\":%d.%02d,\"providerId\":%d}".formatted(
+                    CoverageType.values()[random.nextInt(CoverageType.values().length)],
+                    random.nextInt(5000) + 1, random.nextInt(100), providerIds.get(random.nextInt(PROVIDERS)));
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/quotes"))
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+
+        private HttpRequest get(String path) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT).GET().build();
+        }
+
+        @Override
+        public void close() {
+            context.close();
+        }
+    }
+
+    private static HttpClient newHttpClient() {
+        return HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    private static List<Long> seed(ConfigurableApplicationContext context, List<Long> providerIds) {
+        ProviderRepository providerRepository = context.getBean(ProviderRepository.class);
+        QuoteService quoteService = context.getBean(QuoteService.class);
+
+        for (int i = 0; i < PROVIDERS; i++) {
+            providerIds.add(providerRepository.save(new Provider(null, "Load Test Provider " + i)).getId());
+        }
+
+        Random random = new Random(42);
+        CoverageType[] coverageTypes = CoverageType.values();
+        List<Long> quoteIds = new ArrayList<>(QUOTES);
+        List<QuoteRequest> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < QUOTES; i++) {
+            batch.add(new QuoteRequest(
+                    coverageTypes[random.nextInt(coverageTypes.length)],
+                    BigDecimal.valueOf(random.nextInt(500_000) + 1, 2),
+                    providerIds.get(random.nextInt(PROVIDERS))));
+            if (batch.size() == SEED_BATCH_SIZE || i == QUOTES - 1) {
+                quoteService.createQuotes(batch).forEach(quote -> quoteIds.add(quote.id()));
+                batch = new ArrayList<>(SEED_BATCH_SIZE);
+            }
+        }
+        return quoteIds;
+    }
+
+    private static double percentile(long[] sortedSamples, int percentile) {
+        if (sortedSamples.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sortedSamples.length) - 1;
+        return sortedSamples[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private record Result(double throughput, double p50, double p99, double shedPercent, int timeouts,
+                          int serverErrors) {
+
+        private void print(String mode) {
+            System.out.printf("%-10s %12.0f %12.2f %12.2f %10.1f %10d %10d%n",
+                    mode, throughput, p50, p99, shedPercent, timeouts, serverErrors);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.lookinsure.quotesaggregator.benchmark;
+
+import com.lookinsure.quotesaggregator.dto.QuoteCursor;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.entity.Provider;
+import com.lookinsure.quotesaggregator.repository.ProviderRepository;
+import com.lookinsure.quotesaggregator.repository.QuoteRepository;
+import com.lookinsure.quotesaggregator.service.QuoteService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the aggregation and paging query shapes against a large quotes table, first with the
+ * indexes declared on {@code Quote} and then with those indexes dropped.
+ * <p>
+ * Excluded from the default build; run with {@code ./mvnw test -Pbenchmark}. The table size and
+ * iteration count can be changed with {@code -Dbenchmark.rows} and {@code -Dbenchmark.iterations}.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:benchmarkdb;LAZY_QUERY_EXECUTION=TRUE;OPTIMIZE_REUSE_RESULTS=FALSE")
+@ActiveProfiles("test")
+class QuoteQueryBenchmarkTest {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 1_000_000);
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 20);
+    private static final int PROVIDERS = 10;
+    private static final int INSERT_BATCH_SIZE = 10_000;
+
+    // H2 only reads an index in order when ORDER BY starts with its leading column
+    private static final String CHEAPEST_CAR =
+            "select id from quotes where coverage_type = 'CAR' order by coverage_type, price, id limit 5";
+
+    private static final List<String> INDEXES = List.of(
+            "create index idx_quotes_price_id on quotes (price, id)",
+            "create index idx_quotes_coverage_type_price_id on quotes (coverage_type, price, id)");
+
+    @Autowired
+    private QuoteService quoteService;
+
+    @Autowired
+    private QuoteRepository quoteRepository;
+
+    @Autowired
+    private ProviderRepository providerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("delete from quotes");
+        providerRepository.deleteAll();
+    }
+
+    @Test
+    void aggregationAndPagingLatency_WithAndWithoutIndexes() {
+        seed();
+        runScenarios();
+
+        Map<String, long[]> indexed = runScenarios();
+        String indexedPlan = explain(CHEAPEST_CAR);
+
+        jdbcTemplate.execute("drop index idx_quotes_price_id");
+        jdbcTemplate.execute("drop index idx_quotes_coverage_type_price_id");
+        Map<String, long[]> unindexed = runScenarios();
+        INDEXES.forEach(jdbcTemplate::execute);
+
+        System.out.printf("%n--- Quote query benchmark: %,d rows, %d iterations ---%n", ROWS, ITERATIONS);
+        System.out.printf("%-28s %14s %14s %14s %14s%n",
+                "scenario", "p50 before ms", "p99 before ms", "p50 after ms", "p99 after ms");
+        indexed.forEach((scenario, after) -> {
+            long[] before = unindexed.get(scenario);
+            System.out.printf("%-28s %14.2f %14.2f %14.2f %14.2f%n", scenario,
+                    percentile(before, 50), percentile(before, 99),
+                    percentile(after, 50), percentile(after, 99));
+        });
+        System.out.println("Coverage top-K plan with indexes: " + indexedPlan);
+
+        assertTrue(indexedPlan.contains("index sorted"));
+    }
+
+    private Map<String, long[]> runScenarios() {
+        Map<String, long[]> results = new LinkedHashMap<>();
+        results.put("aggregate first 100 rows", measure(() -> transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<?> quotes = quoteRepository.streamAllResponsesByOrderByPriceAsc()) {
+                quotes.limit(100).forEach(quote -> { });
+            }
+        })));
+        results.put("aggregate full stream", measure(() -> quoteService.streamAggregatedQuotes(quote -> { })));
+        results.put("page 0 by price", measure(() ->
+                quoteService.getAllQuotes(PageRequest.of(0, 20, Sort.by("price", "id")))));
+        results.put("page 1000 by price", measure(() ->
+                quoteService.getAllQuotes(PageRequest.of(1000, 20, Sort.by("price", "id")))));
+        QuoteCursor page1000Cursor = QuoteCursor.of(quoteService.getAllQuotes(
+                PageRequest.of(1000 * 20 - 1, 1, Sort.by("price", "id"))).getContent().get(0));
+        results.put("seek page 1000 by price", measure(() -> quoteService.getQuotesAfter(page1000Cursor, 20)));
+        results.put("cheapest 5 CAR", measure(() -> jdbcTemplate.queryForList(CHEAPEST_CAR)));
+        return results;
+    }
+
+    private void seed() {
+        List<Long> providerIds = new ArrayList<>();
+        for (int i = 0; i < PROVIDERS; i++) {
+            providerIds.add(providerRepository.save(new Provider(null, "Benchmark Provider " + i)).getId());
+        }
+
+        Random random = new Random(42);
+        CoverageType[] coverageTypes = CoverageType.values();
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int i = 0; i < ROWS; i++) {
+            batch.add(new Object[]{
+                    coverageTypes[random.nextInt(coverageTypes.length)].name(),
+                    BigDecimal.valueOf(random.nextInt(500_000) + 1, 2),
+                    providerIds.get(random.nextInt(PROVIDERS))});
+            if (batch.size() == INSERT_BATCH_SIZE || i == ROWS - 1) {
+                jdbcTemplate.batchUpdate("insert into quotes (id, coverage_type, price, provider_id, version) values (next value for quotes_seq, ?, ?, ?, 0)", batch);
+                batch.clear();
+            }
+        }
+        jdbcTemplate.execute("analyze");
+    }
+
+    private static long[] measure(Runnable scenario) {
+        for (int i = 0; i < Math.max(1, ITERATIONS / 5); i++) {
+            scenario.run();
+        }
+        long[] samples = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            scenario.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples;
+    }
+
+    private static double percentile(long[] sortedSamples, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedSamples.length) - 1;
+        return sortedSamples[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private String explain(String sql) {
+        return String.join(" ", jdbcTemplate.queryForList("explain " + sql, String.class)).replaceAll("\\s+", " ");
+    }
+}
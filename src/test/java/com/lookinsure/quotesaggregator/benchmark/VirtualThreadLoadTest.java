@@ -0,0 +1,163 @@
+package com.lookinsure.quotesaggregator.benchmark;
+
+import com.lookinsure.quotesaggregator.LookinsureQuotesAggregatorApplication;
+import com.lookinsure.quotesaggregator.dto.QuoteRequest;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.entity.Provider;
+import com.lookinsure.quotesaggregator.repository.ProviderRepository;
+import com.lookinsure.quotesaggregator.service.QuoteService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives the same read-heavy request mix against the application twice, once on the Tomcat
+ * platform-thread pool and once with {@code spring.threads.virtual.enabled=true}, and prints
+ * throughput and latency percentiles for both. Each mode gets one unmeasured warm-up pass.
+ * <p>
+ * Excluded from the default build; run with {@code ./mvnw test -Pbenchmark -Dtest=VirtualThreadLoadTest}.
+ * Concurrency, request count and Tomcat pool size can be changed with {@code -Dloadtest.concurrency},
+ * {@code -Dloadtest.requests} and {@code -Dloadtest.platform-threads}.
+ */
+@Tag("benchmark")
+class VirtualThreadLoadTest {
+
+    private static final int QUOTES = Integer.getInteger("loadtest.quotes", 20_000);
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 500);
+    private static final int REQUESTS_PER_CLIENT = Integer.getInteger("loadtest.requests", 40);
+    private static final int PLATFORM_THREADS = Integer.getInteger("loadtest.platform-threads", 50);
+    private static final int PROVIDERS = 10;
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    @Test
+    void platformThreadsVersusVirtualThreads() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        System.out.printf("%n--- Load test: %d concurrent clients x %d requests, %d Tomcat threads ---%n",
+                CONCURRENCY, REQUESTS_PER_CLIENT, PLATFORM_THREADS);
+        System.out.printf("%-18s %12s %12s %12s %12s%n", "mode", "req/s", "p50 ms", "p99 ms", "failures");
+        platform.print("platform threads");
+        virtual.print("virtual threads");
+
+        assertEquals(0, platform.failures());
+        assertEquals(0, virtual.failures());
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(LookinsureQuotesAggregatorApplication.class)
+                .profiles("test")
+                .properties(
+                        "server.port=0",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "server.tomcat.threads.max=" + PLATFORM_THREADS,
+                        "spring.jpa.properties.hibernate.generate_statistics=false",
+                        "spring.datasource.url=jdbc:h2:mem:loadtest;LAZY_QUERY_EXECUTION=TRUE")
+                .run()) {
+            List<Long> quoteIds = seed(context);
+            String baseUrl = "http://127.0.0.1:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            drive(baseUrl, quoteIds);
+            return drive(baseUrl, quoteIds);
+        }
+    }
+
+    private static List<Long> seed(ConfigurableApplicationContext context) {
+        ProviderRepository providerRepository = context.getBean(ProviderRepository.class);
+        QuoteService quoteService = context.getBean(QuoteService.class);
+
+        List<Long> providerIds = new ArrayList<>();
+        for (int i = 0; i < PROVIDERS; i++) {
+            providerIds.add(providerRepository.save(new Provider(null, "Load Test Provider " + i)).getId());
+        }
+
+        Random random = new Random(42);
+        CoverageType[] coverageTypes = CoverageType.values();
+        List<Long> quoteIds = new ArrayList<>(QUOTES);
+        List<QuoteRequest> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < QUOTES; i++) {
+            batch.add(new QuoteRequest(
+                    coverageTypes[random.nextInt(coverageTypes.length)],
+                    BigDecimal.valueOf(random.nextInt(500_000) + 1, 2),
+                    providerIds.get(random.nextInt(PROVIDERS))));
+            if (batch.size() == SEED_BATCH_SIZE || i == QUOTES - 1) {
+                quoteService.createQuotes(batch).forEach(quote -> quoteIds.add(quote.id()));
+                batch = new ArrayList<>(SEED_BATCH_SIZE);
+            }
+        }
+        return quoteIds;
+    }
+
+    private static Result drive(String baseUrl, List<Long> quoteIds) {
+        ConcurrentLinkedQueue<Long> samples = new ConcurrentLinkedQueue<>();
+        AtomicInteger failures = new AtomicInteger();
+
+        long start = System.nanoTime();
+        try (HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+             ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int client = 0; client < CONCURRENCY; client++) {
+                Random random = new Random(client);
+                clients.submit(() -> {
+                    for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                        URI uri = URI.create(baseUrl + nextPath(random, quoteIds));
+                        long requestStart = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = httpClient.send(
+                                    HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                failures.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                        samples.add(System.nanoTime() - requestStart);
+                    }
+                    return null;
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long[] sorted = samples.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new Result(sorted.length * 1_000_000_000.0 / elapsed,
+                percentile(sorted, 50), percentile(sorted, 99), failures.get());
+    }
+
+    // mostly database-bound reads: random pages and single quotes, plus the cached aggregate
+    private static String nextPath(Random random, List<Long> quoteIds) {
+        return switch (random.nextInt(3)) {
+            case 0 -> "/quotes?size=20&sort=price&page=" + random.nextInt(QUOTES / 20);
+            case 1 -> "/quotes/" + quoteIds.get(random.nextInt(quoteIds.size()));
+            default -> "/quotes/aggregate?limit=10&coverageType="
+                    + CoverageType.values()[random.nextInt(CoverageType.values().length)];
+        };
+    }
+
+    private static double percentile(long[] sortedSamples, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedSamples.length) - 1;
+        return sortedSamples[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private record Result(double throughput, double p50, double p99, int failures) {
+
+        private void print(String mode) {
+            System.out.printf("%-18s %12.0f %12.2f %12.2f %12d%n", mode, throughput, p50, p99, failures);
+        }
+    }
+}
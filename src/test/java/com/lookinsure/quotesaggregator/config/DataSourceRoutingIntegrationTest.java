@@ -0,0 +1,88 @@
+package com.lookinsure.quotesaggregator.config;
+
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.entity.Provider;
+import com.lookinsure.quotesaggregator.repository.ProviderRepository;
+import com.lookinsure.quotesaggregator.repository.QuoteRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = {
+        "quotes.datasource.routing.enabled=true",
+        "spring.datasource.url=jdbc:h2:mem:routingdb;LAZY_QUERY_EXECUTION=TRUE"
+})
+@ActiveProfiles("test")
+class DataSourceRoutingIntegrationTest {
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private HikariDataSource primaryDataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private HikariDataSource replicaDataSource;
+
+    @Autowired
+    private ProviderRepository providerRepository;
+
+    @Autowired
+    private QuoteRepository quoteRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void readOnlyTransaction_UsesReplicaPool() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        readOnly.executeWithoutResult(status -> {
+            quoteRepository.count();
+            assertEquals(1, activeConnections(replicaDataSource));
+            assertEquals(0, activeConnections(primaryDataSource));
+        });
+    }
+
+    @Test
+    void readWriteTransaction_UsesPrimaryPool() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            providerRepository.saveAndFlush(new Provider(null, "Routing Provider"));
+            assertEquals(1, activeConnections(primaryDataSource));
+            assertEquals(0, activeConnections(replicaDataSource));
+            status.setRollbackOnly();
+        });
+    }
+
+    @Test
+    void indexRebuildQuery_ReadsFromPrimary() {
+        long primaryUses = connectionUses("primary");
+        long replicaUses = connectionUses("replica");
+
+        quoteRepository.findAllVersionedByCoverageType(CoverageType.CAR);
+
+        assertEquals(primaryUses + 1, connectionUses("primary"));
+        assertEquals(replicaUses, connectionUses("replica"));
+    }
+
+    private long connectionUses(String pool) {
+        return meterRegistry.get("hikaricp.connections.usage").tag("pool", pool).timer().count();
+    }
+
+    private static int activeConnections(HikariDataSource dataSource) {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return pool == null ? 0 : pool.getActiveConnections();
+    }
+}
@@ -0,0 +1,42 @@
+package com.lookinsure.quotesaggregator.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@ActiveProfiles("test")
+class MetricsEndpointIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void prometheusScrape_ExposesLatencyHistogramsCacheAndPoolMetrics() throws Exception {
+        mockMvc.perform(get("/quotes/aggregate")).andExpect(status().isOk());
+        mockMvc.perform(get("/quotes")).andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket{application=\"lookinsure-quotes-aggregator\"")))
+                .andExpect(content().string(containsString("uri=\"/quotes/aggregate\"")))
+                .andExpect(content().string(containsString("quotes_service_seconds_bucket{")))
+                .andExpect(content().string(containsString("method=\"getEncodedAggregatedQuotes\"")))
+                .andExpect(content().string(containsString("spring_data_repository_invocations_seconds_bucket{")))
+                .andExpect(content().string(containsString("cache_gets_total{application=\"lookinsure-quotes-aggregator\",cache=\"encodedAggregatedQuotes\"")))
+                .andExpect(content().string(containsString("cache_evictions_total{")))
+                .andExpect(content().string(containsString("hikaricp_connections_active{")))
+                .andExpect(content().string(containsString("quotes_index_size{")));
+    }
+}
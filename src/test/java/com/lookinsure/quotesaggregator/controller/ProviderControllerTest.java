@@ -0,0 +1,84 @@
+package com.lookinsure.quotesaggregator.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lookinsure.quotesaggregator.dto.ProviderRequest;
+import com.lookinsure.quotesaggregator.dto.ProviderResponse;
+import com.lookinsure.quotesaggregator.exception.DuplicateProviderException;
+import com.lookinsure.quotesaggregator.exception.ResourceNotFoundException;
+import com.lookinsure.quotesaggregator.service.ProviderService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ProviderController.class)
+class ProviderControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private ProviderService providerService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void createProvider_Success() throws Exception {
+        when(providerService.createProvider(new ProviderRequest("Alpha")))
+                .thenReturn(new ProviderResponse(4L, "Alpha"));
+
+        mockMvc.perform(post("/providers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ProviderRequest("Alpha"))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(4))
+                .andExpect(jsonPath("$.name").value("Alpha"));
+    }
+
+    @Test
+    void createProvider_BlankNameIsRejected() throws Exception {
+        mockMvc.perform(post("/providers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\" \"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.details.name").value("Provider name is required"));
+
+        verify(providerService, never()).createProvider(any());
+    }
+
+    @Test
+    void createProvider_DuplicateNameIsConflict() throws Exception {
+        when(providerService.createProvider(any()))
+                .thenThrow(new DuplicateProviderException("Provider already exists with name: Alpha"));
+
+        mockMvc.perform(post("/providers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ProviderRequest("Alpha"))))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value("Provider already exists with name: Alpha"));
+    }
+
+    @Test
+    void getProviders_ListsAndFindsById() throws Exception {
+        when(providerService.getAllProviders()).thenReturn(List.of(new ProviderResponse(1L, "Alpha")));
+        when(providerService.getProviderById(9L)).thenThrow(new ResourceNotFoundException("Provider not found with ID: 9"));
+
+        mockMvc.perform(get("/providers"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Alpha"));
+        mockMvc.perform(get("/providers/9"))
+                .andExpect(status().isNotFound());
+    }
+}
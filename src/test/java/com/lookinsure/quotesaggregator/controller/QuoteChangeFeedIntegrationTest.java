@@ -0,0 +1,99 @@
+package com.lookinsure.quotesaggregator.controller;
+
+import com.lookinsure.quotesaggregator.dto.QuoteRequest;
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.entity.Provider;
+import com.lookinsure.quotesaggregator.repository.ProviderRepository;
+import com.lookinsure.quotesaggregator.repository.QuoteRepository;
+import com.lookinsure.quotesaggregator.service.QuoteService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class QuoteChangeFeedIntegrationTest {
+
+    private static final Pattern CHANGE_ID = Pattern.compile("id:(\\S+)\\nevent:change\\n");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private QuoteService quoteService;
+
+    @Autowired
+    private ProviderRepository providerRepository;
+
+    @Autowired
+    private QuoteRepository quoteRepository;
+
+    private Long providerId;
+
+    @BeforeEach
+    void setup() {
+        tearDown();
+        providerId = providerRepository.save(new Provider(null, "Test Provider")).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        quoteRepository.deleteAll();
+        providerRepository.deleteAll();
+    }
+
+    @Test
+    void streamChanges_SendsFilteredCommittedChangesAndResumesFromLastEventId() throws Exception {
+        MockHttpServletResponse live = open(get("/quotes/changes").param("coverageType", "CAR"));
+        await().atMost(Duration.ofSeconds(5)).until(() -> live.getContentAsString().contains("event:subscribed"));
+
+        QuoteResponse car = quoteService.createQuote(new QuoteRequest(CoverageType.CAR, BigDecimal.TEN, providerId));
+        QuoteResponse pet = quoteService.createQuote(new QuoteRequest(CoverageType.PET, BigDecimal.ONE, providerId));
+        quoteService.updateQuote(car.id(), new QuoteRequest(CoverageType.CAR, BigDecimal.TWO, providerId));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> live.getContentAsString().contains("\"type\":\"UPDATED\""));
+        String stream = live.getContentAsString();
+        assertTrue(stream.contains("\"type\":\"CREATED\",\"quoteId\":" + car.id()));
+        assertFalse(stream.contains("\"quoteId\":" + pet.id()));
+
+        Matcher firstChange = CHANGE_ID.matcher(stream);
+        assertTrue(firstChange.find());
+        MockHttpServletResponse resumed = open(get("/quotes/changes").header("Last-Event-ID", firstChange.group(1)));
+        await().atMost(Duration.ofSeconds(5)).until(() -> resumed.getContentAsString().contains("\"type\":\"UPDATED\""));
+        String replay = resumed.getContentAsString();
+        assertFalse(replay.contains("\"type\":\"CREATED\",\"quoteId\":" + car.id()));
+        assertTrue(replay.contains("\"type\":\"CREATED\",\"quoteId\":" + pet.id()));
+    }
+
+    @Test
+    void streamChanges_UnknownPositionGetsReset() throws Exception {
+        MockHttpServletResponse response = open(get("/quotes/changes").param("lastEventId", "earlier-boot-42"));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> response.getContentAsString().contains("event:reset"));
+        assertEquals("text/event-stream", response.getContentType().split(";")[0]);
+    }
+
+    private MockHttpServletResponse open(org.springframework.test.web.servlet.RequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+        return result.getResponse();
+    }
+}
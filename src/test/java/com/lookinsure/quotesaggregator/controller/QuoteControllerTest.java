@@ -1,43 +1,91 @@
 package com.lookinsure.quotesaggregator.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lookinsure.quotesaggregator.config.IdempotencyConfig;
+import com.lookinsure.quotesaggregator.dto.AggregationFilter;
+import com.lookinsure.quotesaggregator.dto.LiveAggregationResponse;
+import com.lookinsure.quotesaggregator.dto.QuoteBatchRequest;
+import com.lookinsure.quotesaggregator.dto.QuoteCursor;
+import com.lookinsure.quotesaggregator.dto.QuoteCursorPage;
+import com.lookinsure.quotesaggregator.dto.QuoteCursorRequest;
 import com.lookinsure.quotesaggregator.dto.QuoteRequest;
 import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.dto.QuoteStats;
 import com.lookinsure.quotesaggregator.entity.CoverageType;
 import com.lookinsure.quotesaggregator.exception.ResourceNotFoundException;
+import com.lookinsure.quotesaggregator.idempotency.IdempotentWrites;
+import com.lookinsure.quotesaggregator.idempotency.InMemoryIdempotencyStore;
+import com.lookinsure.quotesaggregator.service.EncodedQuotes;
+import com.lookinsure.quotesaggregator.service.QuoteChangeFeed;
+import com.lookinsure.quotesaggregator.service.QuoteDataVersion;
+import com.lookinsure.quotesaggregator.service.QuoteResponseEncoder;
 import com.lookinsure.quotesaggregator.service.QuoteService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(QuoteController.class)
+@Import({IdempotencyConfig.class, InMemoryIdempotencyStore.class, IdempotentWrites.class})
 class QuoteControllerTest {
 
+    private static final QuoteDataVersion.Snapshot VERSION =
+            new QuoteDataVersion.Snapshot(7, "\"boot-7\"", Instant.parse("2025-01-01T10:00:00Z"));
+
     @Autowired
     private MockMvc mockMvc;
 
     @MockitoBean
     private QuoteService quoteService;
 
+    @MockitoBean
+    private QuoteChangeFeed changeFeed;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Test
+    void getQuoteStats_FiltersByProviderAndCoverageType() throws Exception {
+        QuoteStats stats = new QuoteStats("Alpha", CoverageType.CAR, 3, new BigDecimal("100.00"),
+                new BigDecimal("300.00"), new BigDecimal("200.00"), new BigDecimal("150.00"));
+        when(quoteService.getQuoteStats("Alpha", CoverageType.CAR)).thenReturn(List.of(stats));
+
+        mockMvc.perform(get("/quotes/stats")
+                        .param("providerName", "Alpha")
+                        .param("coverageType", "CAR"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].count").value(3))
+                .andExpect(jsonPath("$[0].medianPrice").value(150.00));
+    }
+
     @Test
     void createQuote_Success() throws Exception {
         QuoteRequest request = new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(100), 1L);
@@ -64,6 +112,105 @@ class QuoteControllerTest {
                 .andExpect(jsonPath("$.error").value("Validation Failed"));
     }
 
+    @Test
+    void createQuotes_Success() throws Exception {
+        QuoteBatchRequest request = new QuoteBatchRequest(List.of(
+                new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(100), 1L),
+                new QuoteRequest(CoverageType.PET, BigDecimal.valueOf(50), 2L)));
+        List<QuoteResponse> response = List.of(
+                new QuoteResponse(1L, CoverageType.CAR, BigDecimal.valueOf(100), "Provider 1"),
+                new QuoteResponse(2L, CoverageType.PET, BigDecimal.valueOf(50), "Provider 2"));
+
+        when(quoteService.createQuotes(request.quotes())).thenReturn(response);
+
+        mockMvc.perform(post("/quotes/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].providerName").value("Provider 2"));
+    }
+
+    @Test
+    void createQuotes_ValidationFailure() throws Exception {
+        QuoteBatchRequest request = new QuoteBatchRequest(List.of(
+                new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(100), 1L),
+                new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(-10), 1L)));
+
+        mockMvc.perform(post("/quotes/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Validation Failed"))
+                .andExpect(jsonPath("$.details['quotes[1].price']").exists());
+
+        verify(quoteService, never()).createQuotes(any());
+    }
+
+    @Test
+    void uploadQuotes_CreatesQuotesInChunks() throws Exception {
+        int total = QuoteBatchRequest.MAX_SIZE + 1;
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < total; i++) {
+            body.append(objectMapper.writeValueAsString(
+                    new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(100 + i), 1L))).append('\n');
+        }
+
+        when(quoteService.createQuotes(any())).thenAnswer(invocation -> {
+            List<QuoteRequest> chunk = invocation.getArgument(0);
+            return chunk.stream()
+                    .map(request -> new QuoteResponse(1L, request.coverageType(), request.price(), "Provider"))
+                    .toList();
+        });
+
+        mockMvc.perform(post("/quotes/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body.toString()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.created").value(total));
+
+        verify(quoteService, times(2)).createQuotes(any());
+    }
+
+    @Test
+    void uploadQuotes_ValidationFailure() throws Exception {
+        String body = objectMapper.writeValueAsString(new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(100), 1L))
+                + "\n" + objectMapper.writeValueAsString(new QuoteRequest(CoverageType.CAR, null, 1L)) + "\n";
+
+        mockMvc.perform(post("/quotes/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Validation Failed"))
+                .andExpect(jsonPath("$.details['quotes[1].price']").exists())
+                .andExpect(jsonPath("$.created").value(0));
+
+        verify(quoteService, never()).createQuotes(any());
+    }
+
+    @Test
+    void uploadQuotes_MalformedLineReportsLineAndCommittedCount() throws Exception {
+        String valid = objectMapper.writeValueAsString(new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(100), 1L));
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < QuoteBatchRequest.MAX_SIZE; i++) {
+            body.append(valid).append('\n');
+        }
+        body.append("{\"coverageType\": \"CAR\", \"price\": \n");
+        when(quoteService.createQuotes(any())).thenAnswer(invocation -> invocation.<List<QuoteRequest>>getArgument(0)
+                .stream().map(request -> new QuoteResponse(1L, request.coverageType(), request.price(), "Provider"))
+                .toList());
+
+        mockMvc.perform(post("/quotes/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body.toString()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Validation Failed"))
+                .andExpect(jsonPath("$.details['quotes[" + QuoteBatchRequest.MAX_SIZE + "]']").exists())
+                .andExpect(jsonPath("$.created").value(QuoteBatchRequest.MAX_SIZE));
+
+        verify(quoteService, times(1)).createQuotes(any());
+    }
+
     @Test
     void getQuoteById_Success() throws Exception {
         QuoteResponse response = new QuoteResponse(1L, CoverageType.HEALTH, BigDecimal.valueOf(200), "Provider");
@@ -97,6 +244,45 @@ class QuoteControllerTest {
                 .andExpect(jsonPath("$.content[0].providerName").value("Provider 1"));
     }
 
+    @Test
+    void getQuotesAfter_DecodesCursorAndReturnsNextCursor() throws Exception {
+        QuoteCursor cursor = new QuoteCursor(new BigDecimal("19.99"), 7L);
+        QuoteResponse q1 = new QuoteResponse(8L, CoverageType.CAR, BigDecimal.valueOf(25), "Provider 1");
+
+        when(quoteService.getQuotesAfter(cursor, 1)).thenReturn(new QuoteCursorPage(List.of(q1), 1, "next"));
+
+        mockMvc.perform(get("/quotes/seek")
+                        .param("cursor", cursor.encode())
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(8))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    void getQuotesAfter_FirstPageUsesDefaultSize() throws Exception {
+        when(quoteService.getQuotesAfter(null, QuoteCursorRequest.DEFAULT_SIZE))
+                .thenReturn(new QuoteCursorPage(List.of(), QuoteCursorRequest.DEFAULT_SIZE, null));
+
+        mockMvc.perform(get("/quotes/seek"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void getQuotesAfter_InvalidCursor() throws Exception {
+        mockMvc.perform(get("/quotes/seek").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Bad Request"));
+    }
+
+    @Test
+    void getQuotesAfter_SizeTooLarge() throws Exception {
+        mockMvc.perform(get("/quotes/seek").param("size", String.valueOf(QuoteCursorRequest.MAX_SIZE + 1)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.details.size").exists());
+    }
+
     @Test
     void updateQuote_Success() throws Exception {
         QuoteRequest request = new QuoteRequest(CoverageType.PET, BigDecimal.valueOf(50), 1L);
@@ -111,6 +297,65 @@ class QuoteControllerTest {
                 .andExpect(jsonPath("$.price").value(50));
     }
 
+    @Test
+    void createQuote_ReplaysStoredResponseForRepeatedIdempotencyKey() throws Exception {
+        QuoteRequest request = new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(100), 1L);
+        QuoteResponse response = new QuoteResponse(1L, CoverageType.CAR, BigDecimal.valueOf(100), "Provider");
+        when(quoteService.createQuote(request)).thenReturn(response);
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            mockMvc.perform(post("/quotes")
+                            .header(IdempotentWrites.HEADER, "create-replay")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isCreated())
+                    .andExpect(jsonPath("$.id").value(1))
+                    .andExpect(jsonPath("$.providerName").value("Provider"));
+        }
+
+        verify(quoteService, times(1)).createQuote(any());
+    }
+
+    @Test
+    void createQuote_RejectsIdempotencyKeyReusedForDifferentRequest() throws Exception {
+        QuoteRequest request = new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(100), 1L);
+        when(quoteService.createQuote(request))
+                .thenReturn(new QuoteResponse(1L, CoverageType.CAR, BigDecimal.valueOf(100), "Provider"));
+        mockMvc.perform(post("/quotes")
+                        .header(IdempotentWrites.HEADER, "create-mismatch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(put("/quotes/1")
+                        .header(IdempotentWrites.HEADER, "create-mismatch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.status").value(422));
+        verify(quoteService, never()).updateQuote(any(), any());
+    }
+
+    @Test
+    void updateQuote_FailedRequestDoesNotKeepIdempotencyKey() throws Exception {
+        QuoteRequest request = new QuoteRequest(CoverageType.PET, BigDecimal.valueOf(50), 1L);
+        doThrow(new ResourceNotFoundException("Quote not found with ID: 1"))
+                .doReturn(new QuoteResponse(1L, CoverageType.PET, BigDecimal.valueOf(50), "Provider"))
+                .when(quoteService).updateQuote(eq(1L), any());
+
+        mockMvc.perform(put("/quotes/1")
+                        .header(IdempotentWrites.HEADER, "update-retry")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(put("/quotes/1")
+                        .header(IdempotentWrites.HEADER, "update-retry")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.price").value(50));
+    }
+
     @Test
     void deleteQuote_Success() throws Exception {
         mockMvc.perform(delete("/quotes/1"))
@@ -122,7 +367,7 @@ class QuoteControllerTest {
         QuoteResponse q1 = new QuoteResponse(1L, CoverageType.CAR, BigDecimal.valueOf(10), "Provider 1");
         QuoteResponse q2 = new QuoteResponse(2L, CoverageType.CAR, BigDecimal.valueOf(20), "Provider 2");
 
-        when(quoteService.getAggregatedQuotes()).thenReturn(List.of(q1, q2));
+        when(quoteService.getEncodedAggregatedQuotes(AggregationFilter.unfiltered())).thenReturn(encode(List.of(q1, q2)));
 
         mockMvc.perform(get("/quotes/aggregate"))
                 .andExpect(status().isOk())
@@ -130,4 +375,176 @@ class QuoteControllerTest {
                 .andExpect(jsonPath("$[1].price").value(20));
     }
 
-}
\ No newline at end of file
+    @Test
+    void getAggregatedQuotes_ReturnsVersionValidators() throws Exception {
+        when(quoteService.getEncodedAggregatedQuotes(AggregationFilter.unfiltered())).thenReturn(encode(List.of()));
+
+        mockMvc.perform(get("/quotes/aggregate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", VERSION.etag()))
+                .andExpect(header().dateValue("Last-Modified", VERSION.lastModified().toEpochMilli()));
+    }
+
+    @Test
+    void getAggregatedQuotes_NotModifiedWhenETagMatches() throws Exception {
+        when(quoteService.getEncodedAggregatedQuotes(AggregationFilter.unfiltered())).thenReturn(encode(List.of()));
+
+        mockMvc.perform(get("/quotes/aggregate").header("If-None-Match", VERSION.etag()))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", VERSION.etag()))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void getAggregatedQuotes_ETagOfOtherContentCodingDoesNotMatch() throws Exception {
+        when(quoteService.getEncodedAggregatedQuotes(AggregationFilter.unfiltered())).thenReturn(encode(List.of()));
+
+        mockMvc.perform(get("/quotes/aggregate").header("Accept-Encoding", "gzip").header("If-None-Match", VERSION.etag()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"boot-7-gzip\""));
+        mockMvc.perform(get("/quotes/aggregate").header("Accept-Encoding", "gzip").header("If-None-Match", "\"boot-7-gzip\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void getAggregatedQuotes_NotModifiedAtCurrentVersionSkipsTheCache() throws Exception {
+        when(quoteService.getAggregatedQuotesVersion()).thenReturn(Optional.of(VERSION));
+
+        mockMvc.perform(get("/quotes/aggregate").header("If-None-Match", VERSION.etag()))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", VERSION.etag()));
+        verify(quoteService, never()).getEncodedAggregatedQuotes(any());
+    }
+
+    @Test
+    void getAggregatedQuotes_FullResponseWhenETagIsStale() throws Exception {
+        when(quoteService.getEncodedAggregatedQuotes(AggregationFilter.unfiltered())).thenReturn(encode(List.of()));
+
+        mockMvc.perform(get("/quotes/aggregate").header("If-None-Match", "\"boot-6\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", VERSION.etag()));
+    }
+
+    @Test
+    void getAggregatedQuotes_StaleEntryKeepsItsOwnVersion() throws Exception {
+        QuoteDataVersion.Snapshot previous = new QuoteDataVersion.Snapshot(6, "\"boot-6\"", VERSION.lastModified());
+        when(quoteService.getEncodedAggregatedQuotes(AggregationFilter.unfiltered())).thenReturn(encode(List.of(), previous));
+
+        mockMvc.perform(get("/quotes/aggregate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", previous.etag()));
+    }
+
+    @Test
+    void getAggregatedQuotes_ServesGzipWhenAccepted() throws Exception {
+        QuoteResponse q1 = new QuoteResponse(1L, CoverageType.CAR, BigDecimal.valueOf(10), "Provider 1");
+        when(quoteService.getEncodedAggregatedQuotes(AggregationFilter.unfiltered())).thenReturn(encode(List.of(q1)));
+
+        MvcResult result = mockMvc.perform(get("/quotes/aggregate").header("Accept-Encoding", "br, gzip;q=0.8"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("ETag", "\"boot-7-gzip\""))
+                .andExpect(header().string("Vary", "Accept-Encoding"))
+                .andReturn();
+
+        try (GZIPInputStream gzip = new GZIPInputStream(
+                new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            assertEquals(objectMapper.writeValueAsString(List.of(q1)), new String(gzip.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void getAggregatedQuotes_ServesIdentityWhenGzipRefused() throws Exception {
+        when(quoteService.getEncodedAggregatedQuotes(AggregationFilter.unfiltered())).thenReturn(encode(List.of()));
+
+        mockMvc.perform(get("/quotes/aggregate").header("Accept-Encoding", "gzip;q=0"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().json("[]"));
+    }
+
+    @Test
+    void getAggregatedQuotes_WithFilter() throws Exception {
+        QuoteResponse q1 = new QuoteResponse(1L, CoverageType.CAR, BigDecimal.valueOf(10), "Provider 1");
+        AggregationFilter filter = new AggregationFilter(
+                CoverageType.CAR, new BigDecimal("5"), new BigDecimal("50"), 5);
+
+        when(quoteService.getEncodedAggregatedQuotes(filter)).thenReturn(encode(List.of(q1)));
+
+        mockMvc.perform(get("/quotes/aggregate")
+                        .param("coverageType", "CAR")
+                        .param("minPrice", "5")
+                        .param("maxPrice", "50")
+                        .param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].coverageType").value("CAR"));
+    }
+
+    @Test
+    void getAggregatedQuotes_InvalidFilter() throws Exception {
+        mockMvc.perform(get("/quotes/aggregate")
+                        .param("minPrice", "50")
+                        .param("maxPrice", "5")
+                        .param("limit", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Validation Failed"))
+                .andExpect(jsonPath("$.details.limit").exists())
+                .andExpect(jsonPath("$.details.priceRangeValid").exists());
+    }
+
+    @Test
+    void getAggregatedQuotes_UnknownCoverageType() throws Exception {
+        mockMvc.perform(get("/quotes/aggregate").param("coverageType", "BOAT"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.details.coverageType").exists());
+    }
+
+    @Test
+    void getLiveAggregatedQuotes_ReportsPartialResult() throws Exception {
+        QuoteResponse q1 = new QuoteResponse(null, CoverageType.CAR, BigDecimal.valueOf(10), "Provider 1");
+        AggregationFilter filter = new AggregationFilter(CoverageType.CAR, null, null, 3);
+
+        when(quoteService.getLiveAggregatedQuotes(filter)).thenReturn(new LiveAggregationResponse(
+                List.of(q1), true, List.of("Provider 1"), List.of("Provider 2"), List.of()));
+
+        mockMvc.perform(get("/quotes/aggregate/live")
+                        .param("coverageType", "CAR")
+                        .param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.partial").value(true))
+                .andExpect(jsonPath("$.quotes[0].providerName").value("Provider 1"))
+                .andExpect(jsonPath("$.timedOutProviders[0]").value("Provider 2"));
+    }
+
+    @Test
+    void streamAggregatedQuotes_WritesNdjson() throws Exception {
+        QuoteResponse q1 = new QuoteResponse(1L, CoverageType.CAR, BigDecimal.valueOf(10), "Provider 1");
+        QuoteResponse q2 = new QuoteResponse(2L, CoverageType.PET, BigDecimal.valueOf(20), "Provider 2");
+
+        doAnswer(invocation -> {
+            Consumer<QuoteResponse> consumer = invocation.getArgument(0);
+            consumer.accept(q1);
+            consumer.accept(q2);
+            return null;
+        }).when(quoteService).streamAggregatedQuotes(any());
+
+        MvcResult result = mockMvc.perform(get("/quotes/aggregate/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        objectMapper.writeValueAsString(q1) + "\n" + objectMapper.writeValueAsString(q2) + "\n"));
+    }
+
+    private EncodedQuotes encode(List<QuoteResponse> quotes) {
+        return encode(quotes, VERSION);
+    }
+
+    private EncodedQuotes encode(List<QuoteResponse> quotes, QuoteDataVersion.Snapshot version) {
+        return new QuoteResponseEncoder(objectMapper).encode(quotes, version);
+    }
+}
@@ -0,0 +1,164 @@
+package com.lookinsure.quotesaggregator.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lookinsure.quotesaggregator.dto.PendingWrite;
+import com.lookinsure.quotesaggregator.dto.QuoteRequest;
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.entity.Provider;
+import com.lookinsure.quotesaggregator.repository.ProviderRepository;
+import com.lookinsure.quotesaggregator.repository.QuoteRepository;
+import com.lookinsure.quotesaggregator.service.QuoteAggregationIndex;
+import com.lookinsure.quotesaggregator.service.QuoteService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {
+        "quotes.write-behind.enabled=true",
+        "quotes.write-behind.batch-size=100",
+        "quotes.write-behind.flush-interval=1s"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class WriteBehindIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private QuoteService quoteService;
+
+    @Autowired
+    private ProviderRepository providerRepository;
+
+    @Autowired
+    private QuoteRepository quoteRepository;
+
+    @MockitoSpyBean
+    private QuoteAggregationIndex aggregationIndex;
+
+    private Long providerId;
+
+    @BeforeEach
+    void setup() {
+        tearDown();
+        providerId = providerRepository.save(new Provider(null, "Test Provider")).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        quoteRepository.deleteAll();
+        providerRepository.deleteAll();
+        aggregationIndex.rebuild();
+        reset(aggregationIndex);
+    }
+
+    @Test
+    void createQuote_AcknowledgesWithPendingIdThenCommits() throws Exception {
+        MvcResult result = mockMvc.perform(post("/quotes")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request(100))))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status").value("PENDING"))
+                .andReturn();
+        PendingWrite pending = read(result);
+        assertTrue(result.getResponse().getHeader("Location").endsWith("/quotes/pending/" + pending.id()));
+
+        PendingWrite committed = awaitOutcome(pending.id());
+
+        assertEquals(PendingWrite.Status.COMMITTED, committed.status());
+        mockMvc.perform(get("/quotes/{id}", committed.quoteId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.price").value(100));
+    }
+
+    @Test
+    void burstOfUpdates_IsWrittenInOneFlushAndAppliedToAggregationOnce() throws Exception {
+        QuoteResponse quote = quoteService.createQuote(request(100));
+        QuoteResponse other = quoteService.createQuote(request(200));
+        reset(aggregationIndex);
+
+        List<String> pendingIds = new ArrayList<>();
+        for (int price = 1; price <= 20; price++) {
+            pendingIds.add(submit(put("/quotes/{id}", quote.id()), request(price)));
+        }
+        pendingIds.add(submit(delete("/quotes/{id}", other.id()), null));
+
+        for (String pendingId : pendingIds) {
+            assertEquals(PendingWrite.Status.COMMITTED, awaitOutcome(pendingId).status());
+        }
+        verify(aggregationIndex, times(1)).apply(any());
+        assertEquals(0, BigDecimal.valueOf(20).compareTo(quoteRepository.findById(quote.id()).orElseThrow().getPrice()));
+        assertFalse(quoteRepository.existsById(other.id()));
+        mockMvc.perform(get("/quotes/aggregate"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].price").value(20));
+    }
+
+    @Test
+    void missingQuote_IsRejectedWithoutFailingTheRestOfTheBatch() throws Exception {
+        QuoteResponse quote = quoteService.createQuote(request(100));
+
+        String missing = submit(put("/quotes/{id}", 999_999L), request(10));
+        String valid = submit(put("/quotes/{id}", quote.id()), request(50));
+
+        PendingWrite rejected = awaitOutcome(missing);
+        assertEquals(PendingWrite.Status.FAILED, rejected.status());
+        assertEquals("Quote not found with ID: 999999", rejected.error());
+        assertEquals(PendingWrite.Status.COMMITTED, awaitOutcome(valid).status());
+    }
+
+    @Test
+    void getPendingWrite_UnknownIdIsNotFound() throws Exception {
+        mockMvc.perform(get("/quotes/pending/{id}", "unknown"))
+                .andExpect(status().isNotFound());
+    }
+
+    private String submit(MockHttpServletRequestBuilder request, QuoteRequest body) throws Exception {
+        if (body != null) {
+            request.contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(body));
+        }
+        return read(mockMvc.perform(request).andExpect(status().isAccepted()).andReturn()).id();
+    }
+
+    private PendingWrite awaitOutcome(String pendingId) {
+        return await().atMost(Duration.ofSeconds(10)).until(() -> read(mockMvc.perform(get("/quotes/pending/{id}", pendingId))
+                        .andExpect(status().isOk())
+                        .andReturn()),
+                pending -> pending.status() != PendingWrite.Status.PENDING);
+    }
+
+    private PendingWrite read(MvcResult result) throws Exception {
+        return objectMapper.readValue(result.getResponse().getContentAsByteArray(), PendingWrite.class);
+    }
+
+    private QuoteRequest request(long price) {
+        return new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(price), providerId);
+    }
+}
@@ -0,0 +1,147 @@
+package com.lookinsure.quotesaggregator.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lookinsure.quotesaggregator.dto.QuoteRequest;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.entity.Provider;
+import com.lookinsure.quotesaggregator.repository.IdempotencyKeyRepository;
+import com.lookinsure.quotesaggregator.repository.ProviderRepository;
+import com.lookinsure.quotesaggregator.repository.QuoteRepository;
+import com.lookinsure.quotesaggregator.service.QuoteDataVersion;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "quotes.idempotency.store=database")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class DatabaseIdempotencyStoreIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DatabaseIdempotencyStore store;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private QuoteRepository quoteRepository;
+
+    @Autowired
+    private ProviderRepository providerRepository;
+
+    @Autowired
+    private QuoteDataVersion dataVersion;
+
+    @Test
+    void retriedCreateIsReplayedWithoutWritingOrInvalidating() throws Exception {
+        Long providerId = providerRepository.save(new Provider(null, "Idempotency Test Provider")).getId();
+        String request = objectMapper.writeValueAsString(
+                new QuoteRequest(CoverageType.CAR, new BigDecimal("123.45"), providerId));
+        long quotesBefore = quoteRepository.count();
+
+        String created = mockMvc.perform(post("/quotes")
+                        .header(IdempotentWrites.HEADER, "provider-retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(request))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist(IdempotentWrites.REPLAYED_HEADER))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        QuoteDataVersion.Snapshot versionAfterCreate = dataVersion.current();
+
+        mockMvc.perform(post("/quotes")
+                        .header(IdempotentWrites.HEADER, "provider-retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(request))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(IdempotentWrites.REPLAYED_HEADER, "true"))
+                .andExpect(content().json(created, true));
+
+        assertEquals(quotesBefore + 1, quoteRepository.count());
+        assertEquals(versionAfterCreate, dataVersion.current());
+    }
+
+    @Test
+    void claim_HeldKeyIsReportedInProgressUntilReleased() {
+        assertEquals(Optional.empty(), store.claim("claim-release", "fingerprint", "holder"));
+
+        Optional<IdempotencyRecord> held = store.claim("claim-release", "fingerprint", "retry");
+        assertTrue(held.isPresent() && held.get().inProgress());
+
+        store.release("claim-release", "holder");
+        assertEquals(Optional.empty(), store.claim("claim-release", "fingerprint", "retry"));
+    }
+
+    @Test
+    void claim_StaleInProgressKeyIsTakenOverOnce() {
+        Instant stale = Instant.now().minus(Duration.ofMinutes(5));
+        idempotencyKeyRepository.insertClaim("stale", "crashed", "crashed-token", stale);
+
+        assertEquals(Optional.empty(), store.claim("stale", "retry", "retry-token"));
+        assertEquals("retry", idempotencyKeyRepository.findClaim("stale").orElseThrow().getFingerprint());
+
+        Optional<IdempotencyRecord> held = store.claim("stale", "retry", "another-token");
+        assertTrue(held.isPresent() && held.get().inProgress());
+    }
+
+    @Test
+    void completeAndRelease_ClaimTakenOverIsLeftToItsNewHolder() {
+        Instant stale = Instant.now().minus(Duration.ofMinutes(5));
+        idempotencyKeyRepository.insertClaim("taken-over", "fingerprint", "crashed-token", stale);
+        assertEquals(Optional.empty(), store.claim("taken-over", "fingerprint", "retry-token"));
+
+        // the request that was taken over finishes late
+        store.complete("taken-over", "crashed-token",
+                new IdempotencyRecord("fingerprint", new IdempotencyRecord.StoredResponse(500, null, null)));
+        store.release("taken-over", "crashed-token");
+
+        Optional<IdempotencyRecord> held = store.claim("taken-over", "fingerprint", "another-token");
+        assertTrue(held.isPresent() && held.get().inProgress());
+
+        store.complete("taken-over", "retry-token",
+                new IdempotencyRecord("fingerprint", new IdempotencyRecord.StoredResponse(201, "/quotes/1", null)));
+        assertEquals(201, store.claim("taken-over", "fingerprint", "another-token").orElseThrow().response().status());
+    }
+
+    @Test
+    void claim_CompletedKeyIsNotTakenOverAfterTimeout() {
+        idempotencyKeyRepository.insertClaim("completed", "fingerprint", "token",
+                Instant.now().minus(Duration.ofMinutes(5)));
+        idempotencyKeyRepository.complete("completed", "token", 201, "/quotes/1", null);
+
+        IdempotencyRecord record = store.claim("completed", "fingerprint", "retry-token").orElseThrow();
+        assertEquals(201, record.response().status());
+    }
+
+    @Test
+    void claim_ExpiredKeyIsClaimedAgainAndPurged() {
+        Instant expired = Instant.now().minus(Duration.ofDays(2));
+        idempotencyKeyRepository.insertClaim("expired", "old", "old-token", expired);
+        idempotencyKeyRepository.insertClaim("purged", "old", "old-token", expired);
+
+        assertEquals(Optional.empty(), store.claim("expired", "new", "new-token"));
+        store.purgeExpired();
+
+        assertEquals("new", idempotencyKeyRepository.findClaim("expired").orElseThrow().getFingerprint());
+        assertTrue(idempotencyKeyRepository.findClaim("purged").isEmpty());
+    }
+}
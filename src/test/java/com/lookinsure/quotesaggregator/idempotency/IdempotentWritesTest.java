@@ -0,0 +1,146 @@
+package com.lookinsure.quotesaggregator.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lookinsure.quotesaggregator.config.IdempotencyProperties;
+import com.lookinsure.quotesaggregator.exception.IdempotencyKeyInUseException;
+import com.lookinsure.quotesaggregator.exception.InvalidIdempotencyKeyException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotentWritesTest {
+
+    private static final Map<String, Object> BODY = Map.of("price", 10);
+
+    private final InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(new IdempotencyProperties());
+    private final IdempotentWrites writes = new IdempotentWrites(store, new ObjectMapper());
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    void execute_ReplaysStatusLocationAndBody() {
+        ResponseEntity<?> first = writes.execute("key", "POST /quotes", BODY, this::accepted);
+        ResponseEntity<?> replayed = writes.execute("key", "POST /quotes", BODY, this::accepted);
+
+        assertEquals(1, executions.get());
+        assertNull(first.getHeaders().getFirst(IdempotentWrites.REPLAYED_HEADER));
+        assertEquals(HttpStatus.ACCEPTED, replayed.getStatusCode());
+        assertEquals("true", replayed.getHeaders().getFirst(IdempotentWrites.REPLAYED_HEADER));
+        assertEquals(URI.create("/quotes/pending/1"), replayed.getHeaders().getLocation());
+        assertEquals("{\"id\":\"1\",\"status\":\"PENDING\"}",
+                new String((byte[]) replayed.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void execute_WithoutKeyAlwaysWrites() {
+        writes.execute(null, "POST /quotes", BODY, this::accepted);
+        writes.execute(null, "POST /quotes", BODY, this::accepted);
+
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void execute_RetryWhileFirstRequestRunsIsRejected() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ResponseEntity<?>> first = executor.submit(() -> writes.execute("key", "POST /quotes", BODY, () -> {
+                started.countDown();
+                await(release);
+                return accepted();
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            assertThrows(IdempotencyKeyInUseException.class,
+                    () -> writes.execute("key", "POST /quotes", BODY, this::accepted));
+            release.countDown();
+            assertEquals(HttpStatus.ACCEPTED, first.get(5, TimeUnit.SECONDS).getStatusCode());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_FailedWriteGivesItsKeyUp() {
+        assertThrows(IllegalStateException.class, () -> writes.execute("key", "POST /quotes", BODY, () -> {
+            throw new IllegalStateException("database unavailable");
+        }));
+
+        assertEquals(HttpStatus.ACCEPTED, writes.execute("key", "POST /quotes", BODY, this::accepted).getStatusCode());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_ResponseThatCannotBeRecordedIsStillReturned() {
+        InMemoryIdempotencyStore failingStore = new InMemoryIdempotencyStore(new IdempotencyProperties()) {
+            @Override
+            public void complete(String key, String token, IdempotencyRecord record) {
+                throw new IllegalStateException("store unavailable");
+            }
+        };
+        IdempotentWrites failingWrites = new IdempotentWrites(failingStore, new ObjectMapper());
+
+        ResponseEntity<?> first = failingWrites.execute("key", "POST /quotes", BODY, this::accepted);
+        ResponseEntity<?> retried = failingWrites.execute("key", "POST /quotes", BODY, this::accepted);
+
+        assertEquals(HttpStatus.ACCEPTED, first.getStatusCode());
+        assertEquals(HttpStatus.ACCEPTED, retried.getStatusCode());
+        assertNull(retried.getHeaders().getFirst(IdempotentWrites.REPLAYED_HEADER));
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void execute_ClaimLeftInProgressPastTimeoutIsTakenOver() {
+        IdempotencyProperties properties = new IdempotencyProperties();
+        properties.setInProgressTimeout(Duration.ZERO);
+        InMemoryIdempotencyStore expiringStore = new InMemoryIdempotencyStore(properties);
+        // a request that claimed the key and never completed or released it
+        assertEquals(Optional.empty(), expiringStore.claim("key", "crashed", "crashed-token"));
+
+        ResponseEntity<?> response = new IdempotentWrites(expiringStore, new ObjectMapper())
+                .execute("key", "POST /quotes", BODY, this::accepted);
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_RejectsOverlongKey() {
+        assertThrows(InvalidIdempotencyKeyException.class,
+                () -> writes.execute("k".repeat(256), "POST /quotes", BODY, this::accepted));
+        assertEquals(0, executions.get());
+    }
+
+    private ResponseEntity<?> accepted() {
+        executions.incrementAndGet();
+        return ResponseEntity.accepted()
+                .location(URI.create("/quotes/pending/1"))
+                .body(new Pending("1", "PENDING"));
+    }
+
+    private record Pending(String id, String status) {}
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.lookinsure.quotesaggregator.idempotency;
+
+import com.lookinsure.quotesaggregator.config.IdempotencyProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryIdempotencyStoreTest {
+
+    private static final IdempotencyRecord.StoredResponse CREATED =
+            new IdempotencyRecord.StoredResponse(201, "/quotes/1", null);
+
+    @Test
+    void claim_PendingKeyIsNotEvictedByCompletedOnes() {
+        IdempotencyProperties properties = new IdempotencyProperties();
+        properties.setMaximumSize(1);
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(properties);
+        assertEquals(Optional.empty(), store.claim("held", "fingerprint", "token"));
+
+        for (int i = 0; i < 100; i++) {
+            store.claim("done-" + i, "fingerprint", "token");
+            store.complete("done-" + i, "token", new IdempotencyRecord("fingerprint", CREATED));
+        }
+
+        Optional<IdempotencyRecord> held = store.claim("held", "fingerprint", "token");
+        assertTrue(held.isPresent() && held.get().inProgress());
+    }
+
+    @Test
+    void claim_CompletedKeyIsReplayedAndReleasedKeyClaimedAgain() {
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(new IdempotencyProperties());
+        store.claim("completed", "fingerprint", "token");
+        store.complete("completed", "token", new IdempotencyRecord("fingerprint", CREATED));
+        store.claim("released", "fingerprint", "token");
+        store.release("released", "token");
+
+        assertEquals(CREATED, store.claim("completed", "fingerprint", "token").orElseThrow().response());
+        assertEquals(Optional.empty(), store.claim("released", "fingerprint", "token"));
+    }
+
+    @Test
+    void completeAndRelease_ClaimTakenOverIsLeftToItsNewHolder() {
+        IdempotencyProperties properties = new IdempotencyProperties();
+        properties.setInProgressTimeout(Duration.ZERO);
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(properties);
+        store.claim("completed", "fingerprint", "stale");
+        store.claim("released", "fingerprint", "stale");
+        assertEquals(Optional.empty(), store.claim("completed", "fingerprint", "current"));
+        assertEquals(Optional.empty(), store.claim("released", "fingerprint", "current"));
+
+        store.complete("completed", "stale", new IdempotencyRecord("fingerprint", CREATED));
+        store.release("released", "stale");
+        store.complete("released", "current", new IdempotencyRecord("fingerprint", CREATED));
+
+        // with no in-progress timeout a claim takes over at once, unless a response was recorded
+        assertEquals(Optional.empty(), store.claim("completed", "fingerprint", "next"));
+        assertEquals(CREATED, store.claim("released", "fingerprint", "next").orElseThrow().response());
+    }
+}
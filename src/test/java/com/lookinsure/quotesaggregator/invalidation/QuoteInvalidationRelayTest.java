@@ -0,0 +1,164 @@
+package com.lookinsure.quotesaggregator.invalidation;
+
+import com.lookinsure.quotesaggregator.dto.AggregationFilter;
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.dto.VersionedQuote;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.event.QuoteChangedEvent;
+import com.lookinsure.quotesaggregator.repository.QuoteRepository;
+import com.lookinsure.quotesaggregator.service.QuoteAggregationIndex;
+import com.lookinsure.quotesaggregator.service.QuoteChangeFeed;
+import com.lookinsure.quotesaggregator.service.QuoteDataVersion;
+import com.lookinsure.quotesaggregator.service.QuoteService;
+import com.lookinsure.quotesaggregator.service.QuoteStatistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class QuoteInvalidationRelayTest {
+
+    @Mock
+    private QuoteRepository peerRepository;
+
+    @Mock
+    private QuoteService originService;
+
+    @Mock
+    private QuoteService peerService;
+
+    @Mock
+    private QuoteChangeFeed peerFeed;
+
+    private final LoopbackQuoteInvalidationBus bus = new LoopbackQuoteInvalidationBus();
+
+    private QuoteInvalidationRelay origin;
+    private QuoteAggregationIndex peerIndex;
+    private QuoteInvalidationRelay peer;
+
+    @BeforeEach
+    void setup() {
+        origin = relay(new QuoteAggregationIndex(mock(QuoteRepository.class), new QuoteDataVersion()), originService,
+                mock(QuoteChangeFeed.class));
+        peerIndex = new QuoteAggregationIndex(peerRepository, new QuoteDataVersion());
+        peer = relay(peerIndex, peerService, peerFeed);
+    }
+
+    @Test
+    void broadcast_PeerAppliesDeltaAndEvictsWithoutTouchingDatabase() {
+        origin.broadcast(QuoteChangedEvent.created(quote(1L, 100)));
+        origin.broadcast(QuoteChangedEvent.updated(quote(1L, 50), 1));
+
+        List<QuoteResponse> quotes = peerIndex.query(AggregationFilter.unfiltered());
+        assertEquals(List.of(1L), quotes.stream().map(QuoteResponse::id).toList());
+        assertEquals(0, BigDecimal.valueOf(50).compareTo(quotes.get(0).price()));
+        verify(peerService, times(2)).invalidateAggregatedQuotes();
+        verify(peerFeed, times(2)).append(any());
+        verifyNoInteractions(peerRepository);
+        verify(originService, never()).invalidateAggregatedQuotes();
+    }
+
+    @Test
+    void onInvalidation_IgnoresRepeatedAndOutOfDateMessages() {
+        peer.onInvalidation(message(1, QuoteChangedEvent.created(quote(1L, 100))));
+        peer.onInvalidation(message(2, QuoteChangedEvent.deleted(1L, 1)));
+        peer.onInvalidation(message(1, QuoteChangedEvent.created(quote(1L, 100))));
+        peer.onInvalidation(message(2, QuoteChangedEvent.deleted(1L, 1)));
+
+        assertEquals(0, peerIndex.size());
+        verify(peerService, times(2)).invalidateAggregatedQuotes();
+        verifyNoInteractions(peerRepository);
+    }
+
+    @Test
+    void onInvalidation_SkipsDeltaOvertakenByNewerWriteFromAnotherNode() {
+        peer.onInvalidation(message("node-a", 1, QuoteChangedEvent.created(quote(1L, 100))));
+        peer.onInvalidation(message("node-b", 1, QuoteChangedEvent.updated(quote(1L, 30), 2)));
+        peer.onInvalidation(message("node-a", 2, QuoteChangedEvent.updated(quote(1L, 70), 1)));
+
+        List<QuoteResponse> quotes = peerIndex.query(AggregationFilter.unfiltered());
+        assertEquals(0, BigDecimal.valueOf(30).compareTo(quotes.get(0).price()));
+        verify(peerService, times(2)).invalidateAggregatedQuotes();
+        verify(peerFeed, times(2)).append(any());
+        verifyNoInteractions(peerRepository);
+    }
+
+    @Test
+    void onInvalidation_BurstOfGapsCoalescesIntoAtMostTwoRebuilds() throws Exception {
+        CountDownLatch firstRebuildStarted = new CountDownLatch(1);
+        CountDownLatch releaseRebuild = new CountDownLatch(1);
+        AtomicInteger lookups = new AtomicInteger();
+        when(peerRepository.findAllVersionedByCoverageType(any())).thenAnswer(invocation -> {
+            if (lookups.incrementAndGet() == 1) {
+                firstRebuildStarted.countDown();
+                releaseRebuild.await();
+            }
+            return List.of();
+        });
+
+        peer.onInvalidation(message(1, QuoteChangedEvent.created(quote(1L, 100))));
+        peer.onInvalidation(message(3, QuoteChangedEvent.created(quote(3L, 100))));
+        assertTrue(firstRebuildStarted.await(5, TimeUnit.SECONDS));
+        for (long sequence = 5; sequence <= 15; sequence += 2) {
+            peer.onInvalidation(message(sequence, QuoteChangedEvent.created(quote(sequence, 100))));
+        }
+        releaseRebuild.countDown();
+
+        int coverageTypes = CoverageType.values().length;
+        verify(peerRepository, timeout(5000).times(2 * coverageTypes)).findAllVersionedByCoverageType(any());
+        Thread.sleep(200);
+        verify(peerRepository, times(2 * coverageTypes)).findAllVersionedByCoverageType(any());
+    }
+
+    @Test
+    void onInvalidation_FirstMessageMidStreamTriggersRebuild() throws Exception {
+        when(peerRepository.findAllVersionedByCoverageType(any())).thenReturn(List.of(new VersionedQuote(quote(7L, 10), 0)));
+        CountDownLatch reset = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            reset.countDown();
+            return null;
+        }).when(peerFeed).reset();
+
+        peer.onInvalidation(message(42, QuoteChangedEvent.created(quote(42L, 100))));
+
+        // the resync thread resets the feed after its rebuild, so waiting for it covers both
+        assertTrue(reset.await(5, TimeUnit.SECONDS));
+        verify(peerRepository, times(CoverageType.values().length)).findAllVersionedByCoverageType(any());
+        verify(peerFeed, never()).append(any());
+    }
+
+    private QuoteInvalidationRelay relay(QuoteAggregationIndex index, QuoteService service, QuoteChangeFeed feed) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("quoteInvalidationBus", bus);
+        ObjectProvider<QuoteInvalidationBus> provider = beans.getBeanProvider(QuoteInvalidationBus.class);
+        QuoteInvalidationRelay relay = new QuoteInvalidationRelay(provider, index, new QuoteStatistics(index), service, feed);
+        relay.subscribe();
+        return relay;
+    }
+
+    private static QuoteInvalidation message(long sequence, QuoteChangedEvent event) {
+        return message("remote-node", sequence, event);
+    }
+
+    private static QuoteInvalidation message(String originNodeId, long sequence, QuoteChangedEvent event) {
+        return new QuoteInvalidation(originNodeId, sequence, event.changes());
+    }
+
+    private static QuoteResponse quote(Long id, long price) {
+        return new QuoteResponse(id, CoverageType.CAR, BigDecimal.valueOf(price), "Provider");
+    }
+}
@@ -0,0 +1,214 @@
+package com.lookinsure.quotesaggregator.repository;
+
+import com.lookinsure.quotesaggregator.dto.QuoteCursor;
+import com.lookinsure.quotesaggregator.dto.QuoteCursorPage;
+import com.lookinsure.quotesaggregator.dto.QuoteRequest;
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.dto.QuoteStats;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.entity.Provider;
+import com.lookinsure.quotesaggregator.entity.Quote;
+import com.lookinsure.quotesaggregator.service.ProviderRegistry;
+import com.lookinsure.quotesaggregator.service.QuoteAggregationIndex;
+import com.lookinsure.quotesaggregator.service.QuoteService;
+import com.lookinsure.quotesaggregator.service.QuoteStatistics;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class QuoteQueryCountIntegrationTest {
+
+    private static final int PROVIDERS = 5;
+    private static final int QUOTES_PER_PROVIDER = 4;
+
+    @Autowired
+    private QuoteService quoteService;
+
+    @Autowired
+    private QuoteAggregationIndex aggregationIndex;
+
+    @Autowired
+    private QuoteRepository quoteRepository;
+
+    @Autowired
+    private ProviderRepository providerRepository;
+
+    @Autowired
+    private ProviderRegistry providerRegistry;
+
+    @Autowired
+    private QuoteStatistics quoteStatistics;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setup() {
+        tearDown();
+        IntStream.range(0, PROVIDERS).forEach(i -> {
+            Provider provider = providerRepository.save(new Provider(null, "Provider " + i));
+            IntStream.range(0, QUOTES_PER_PROVIDER).forEach(j -> quoteRepository.save(
+                    new Quote(null, CoverageType.values()[j % CoverageType.values().length],
+                            BigDecimal.valueOf(100L * j + i), provider, null)));
+        });
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        quoteRepository.deleteAll();
+        providerRepository.deleteAll();
+    }
+
+    @Test
+    void aggregationRebuild_IssuesOneStatementPerCoverageType() {
+        aggregationIndex.rebuild();
+
+        assertEquals(CoverageType.values().length, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(PROVIDERS * QUOTES_PER_PROVIDER, aggregationIndex.size());
+    }
+
+    @Test
+    void getAllQuotes_IssuesContentAndCountStatementsOnly() {
+        Page<QuoteResponse> page = quoteService.getAllQuotes(PageRequest.of(1, 5, Sort.by("price")));
+
+        assertEquals(5, page.getContent().size());
+        assertEquals(PROVIDERS * QUOTES_PER_PROVIDER, page.getTotalElements());
+        assertTrue(page.getContent().stream().allMatch(q -> q.providerName().startsWith("Provider ")));
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void getQuoteById_IssuesSingleStatement() {
+        Long id = quoteRepository.findAll().get(0).getId();
+        statistics.clear();
+
+        QuoteResponse response = quoteService.getQuoteById(id);
+
+        assertNotNull(response.providerName());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void createQuotes_BatchesInsertsAndResolvesProvidersInOneStatement() {
+        List<QuoteRequest> requests = providerRepository.findAll().stream()
+                .flatMap(provider -> IntStream.range(0, 20).mapToObj(i ->
+                        new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(1000 + i), provider.getId())))
+                .toList();
+        statistics.clear();
+
+        List<QuoteResponse> created = quoteService.createQuotes(requests);
+
+        assertEquals(PROVIDERS * 20, created.size());
+        assertTrue(created.stream().allMatch(q -> q.id() != null && q.providerName().startsWith("Provider ")));
+        // one registry refresh for the new providers, one batched insert statement and a few pooled sequence calls
+        assertTrue(statistics.getPrepareStatementCount() <= 6,
+                "expected batched inserts, got " + statistics.getPrepareStatementCount() + " statements");
+        assertEquals(PROVIDERS * 20, statistics.getEntityInsertCount());
+    }
+
+    @Test
+    void createAndUpdateQuote_ResolveProvidersWithoutLoadingThem() {
+        List<Provider> providers = providerRepository.findAll();
+        providerRegistry.refresh();
+        statistics.clear();
+
+        QuoteResponse created = quoteService.createQuote(
+                new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(1000), providers.get(0).getId()));
+        QuoteResponse updated = quoteService.updateQuote(created.id(),
+                new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(900), providers.get(1).getId()));
+
+        assertEquals(providers.get(0).getName(), created.providerName());
+        assertEquals(providers.get(1).getName(), updated.providerName());
+        // insert (plus a pooled sequence call at most), then the quote lookup and update
+        assertTrue(statistics.getPrepareStatementCount() <= 4,
+                "expected no provider lookups, got " + statistics.getPrepareStatementCount() + " statements");
+        assertEquals(0, statistics.getEntityStatistics(Provider.class.getName()).getLoadCount());
+        assertEquals(1, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void getQuoteStats_IssuesNoStatementsAfterWrites() {
+        aggregationIndex.rebuild();
+        quoteStatistics.rebuild();
+        Provider provider = providerRepository.findAll().get(0);
+        quoteService.createQuote(new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(5000), provider.getId()));
+        statistics.clear();
+
+        List<QuoteStats> stats = quoteService.getQuoteStats(provider.getName(), null);
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(PROVIDERS * QUOTES_PER_PROVIDER + 1, quoteService.getQuoteStats(null, null).get(0).count());
+        assertEquals(QUOTES_PER_PROVIDER + 1, stats.get(0).count());
+        assertEquals(0, BigDecimal.valueOf(5000).compareTo(stats.get(0).maxPrice()));
+    }
+
+    @Test
+    void getQuotesAfter_WalksAllQuotesInOrderWithOneStatementPerPage() {
+        // ties on price must be ordered by id and never skipped or repeated across pages
+        Provider provider = providerRepository.findAll().get(0);
+        IntStream.range(0, 3).forEach(i -> quoteRepository.save(
+                new Quote(null, CoverageType.PET, BigDecimal.valueOf(100), provider, null)));
+        statistics.clear();
+
+        List<QuoteResponse> walked = new ArrayList<>();
+        int pages = 0;
+        QuoteCursorPage page = quoteService.getQuotesAfter(null, 3);
+        while (true) {
+            pages++;
+            walked.addAll(page.content());
+            if (page.nextCursor() == null) {
+                break;
+            }
+            page = quoteService.getQuotesAfter(QuoteCursor.decode(page.nextCursor()), 3);
+        }
+
+        assertEquals(pages, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(quoteRepository.findAllResponsesByOrderByPriceAsc(), walked);
+    }
+
+    @Test
+    void aggregatedQuotes_AreSortedByPriceThenId() {
+        List<QuoteResponse> quotes = quoteRepository.findAllResponsesByOrderByPriceAsc();
+
+        for (int i = 1; i < quotes.size(); i++) {
+            assertTrue(quotes.get(i - 1).price().compareTo(quotes.get(i).price()) <= 0);
+        }
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void streamAggregatedQuotes_IssuesSingleStatementInPriceOrder() {
+        List<QuoteResponse> streamed = new ArrayList<>();
+
+        quoteService.streamAggregatedQuotes(streamed::add);
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(quoteRepository.findAllResponsesByOrderByPriceAsc(), streamed);
+    }
+}
@@ -0,0 +1,53 @@
+package com.lookinsure.quotesaggregator.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FanOutTest {
+
+    @Test
+    void invokeAll_ReturnsResultsInTaskOrder() {
+        CountDownLatch secondDone = new CountDownLatch(1);
+        List<Callable<String>> tasks = List.of(
+                () -> {
+                    secondDone.await();
+                    return "first";
+                },
+                () -> {
+                    secondDone.countDown();
+                    return "second";
+                });
+
+        assertEquals(List.of("first", "second"), FanOut.invokeAll(tasks));
+    }
+
+    @Test
+    void invokeAll_FirstFailureCancelsSlowerTasks() throws Exception {
+        CountDownLatch never = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        List<Callable<String>> tasks = List.of(
+                () -> {
+                    try {
+                        never.await();
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                        throw e;
+                    }
+                    return "slow";
+                },
+                () -> {
+                    throw new IllegalArgumentException("lookup failed");
+                });
+
+        IllegalArgumentException failure = assertThrows(IllegalArgumentException.class, () -> FanOut.invokeAll(tasks));
+
+        assertEquals("lookup failed", failure.getMessage());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,188 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.config.QuoteSourceProperties;
+import com.lookinsure.quotesaggregator.dto.AggregationFilter;
+import com.lookinsure.quotesaggregator.dto.LiveAggregationResponse;
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.exception.QuoteSourceException;
+import com.lookinsure.quotesaggregator.source.QuoteSource;
+import com.lookinsure.quotesaggregator.source.QuoteSourceRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LiveQuoteAggregatorTest {
+
+    private static final Duration BUDGET = Duration.ofMillis(300);
+    private static final Duration SLOW = Duration.ofSeconds(2);
+
+    @Mock
+    private QuoteSourceRegistry sourceRegistry;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private LiveQuoteAggregator aggregator;
+
+    @BeforeEach
+    void setup() {
+        QuoteSourceProperties properties = new QuoteSourceProperties();
+        properties.setBudget(BUDGET);
+        properties.setHedgeDelay(Duration.ofMillis(50));
+        aggregator = new LiveQuoteAggregator(sourceRegistry, properties, executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void aggregate_MergesSourcesByPriceAndAppliesFilter() {
+        when(sourceRegistry.getSources()).thenReturn(List.of(
+                source("A", attempt -> List.of(quote("A", CoverageType.CAR, 300), quote("A", CoverageType.PET, 50))),
+                source("B", attempt -> List.of(quote("B", CoverageType.CAR, 100), quote("B", CoverageType.CAR, 200)))));
+
+        LiveAggregationResponse response = aggregator.aggregate(
+                new AggregationFilter(CoverageType.CAR, null, BigDecimal.valueOf(250), 5));
+
+        assertFalse(response.partial());
+        assertEquals(List.of("A", "B"), response.respondedProviders());
+        assertEquals(List.of(100L, 200L), response.quotes().stream().map(q -> q.price().longValue()).toList());
+    }
+
+    @Test
+    void aggregate_ReturnsPartialResultWithinBudgetWhenSourceIsSlow() {
+        when(sourceRegistry.getSources()).thenReturn(List.of(
+                source("Fast", attempt -> List.of(quote("Fast", CoverageType.CAR, 100))),
+                source("Slow", attempt -> {
+                    sleep(SLOW);
+                    return List.of(quote("Slow", CoverageType.CAR, 1));
+                })));
+
+        long start = System.nanoTime();
+        LiveAggregationResponse response = aggregator.aggregate(AggregationFilter.unfiltered());
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertTrue(response.partial());
+        assertEquals(List.of("Fast"), response.respondedProviders());
+        assertEquals(List.of("Slow"), response.timedOutProviders());
+        assertEquals(List.of("Fast"), response.quotes().stream().map(QuoteResponse::providerName).toList());
+        assertTrue(elapsed.compareTo(BUDGET.plusMillis(200)) < 0, "took " + elapsed);
+    }
+
+    @Test
+    void aggregate_HonoursPerSourceTimeout() {
+        QuoteSource delayed = new StubSource("Delayed", attempt -> {
+            sleep(Duration.ofMillis(150));
+            return List.of(quote("Delayed", CoverageType.CAR, 1));
+        }, Duration.ofMillis(100));
+        when(sourceRegistry.getSources()).thenReturn(List.of(delayed));
+
+        LiveAggregationResponse response = aggregator.aggregate(AggregationFilter.unfiltered());
+
+        assertEquals(List.of("Delayed"), response.timedOutProviders());
+        assertTrue(response.quotes().isEmpty());
+    }
+
+    @Test
+    void aggregate_HedgesSlowFirstAttempt() {
+        AtomicInteger attempts = new AtomicInteger();
+        when(sourceRegistry.getSources()).thenReturn(List.of(source("Tail", attempt -> {
+            attempts.incrementAndGet();
+            if (attempt == 1) {
+                sleep(SLOW);
+            }
+            return List.of(quote("Tail", CoverageType.CAR, 100));
+        })));
+
+        LiveAggregationResponse response = aggregator.aggregate(AggregationFilter.unfiltered());
+
+        assertFalse(response.partial());
+        assertEquals(List.of("Tail"), response.respondedProviders());
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void aggregate_RetriesFailedAttemptAndReportsPersistentFailure() {
+        when(sourceRegistry.getSources()).thenReturn(List.of(
+                source("Flaky", attempt -> {
+                    if (attempt == 1) {
+                        throw new QuoteSourceException("connection reset");
+                    }
+                    return List.of(quote("Flaky", CoverageType.PET, 10));
+                }),
+                source("Down", attempt -> {
+                    throw new QuoteSourceException("unavailable");
+                })));
+
+        LiveAggregationResponse response = aggregator.aggregate(AggregationFilter.unfiltered());
+
+        assertTrue(response.partial());
+        assertEquals(List.of("Flaky"), response.respondedProviders());
+        assertEquals(List.of("Down"), response.failedProviders());
+        assertTrue(response.timedOutProviders().isEmpty());
+    }
+
+    private static QuoteSource source(String providerName, IntFunction<List<QuoteResponse>> attempts) {
+        return new StubSource(providerName, attempts, null);
+    }
+
+    private static QuoteResponse quote(String providerName, CoverageType coverageType, long price) {
+        return new QuoteResponse(null, coverageType, BigDecimal.valueOf(price), providerName);
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QuoteSourceException("interrupted");
+        }
+    }
+
+    private static final class StubSource implements QuoteSource {
+
+        private final String providerName;
+        private final IntFunction<List<QuoteResponse>> attempts;
+        private final Duration timeout;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private StubSource(String providerName, IntFunction<List<QuoteResponse>> attempts, Duration timeout) {
+            this.providerName = providerName;
+            this.attempts = attempts;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public String providerName() {
+            return providerName;
+        }
+
+        @Override
+        public List<QuoteResponse> fetchQuotes(CoverageType coverageType) {
+            return attempts.apply(calls.incrementAndGet());
+        }
+
+        @Override
+        public Optional<Duration> timeout() {
+            return Optional.ofNullable(timeout);
+        }
+    }
+}
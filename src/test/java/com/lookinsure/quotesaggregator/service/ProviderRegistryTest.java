@@ -0,0 +1,137 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.config.ProviderRegistryProperties;
+import com.lookinsure.quotesaggregator.entity.Provider;
+import com.lookinsure.quotesaggregator.repository.ProviderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProviderRegistryTest {
+
+    @Mock
+    private ProviderRepository providerRepository;
+
+    private final ProviderRegistryProperties properties = new ProviderRegistryProperties();
+    private ProviderRegistry providerRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties.setMissRefreshInterval(Duration.ZERO);
+        providerRegistry = new ProviderRegistry(providerRepository, properties);
+    }
+
+    @Test
+    void find_ResolvesKnownProvidersWithoutDatabase() {
+        when(providerRepository.findAll(any(Sort.class)))
+                .thenReturn(List.of(new Provider(3L, "Alpha"), new Provider(8L, "Beta")));
+        providerRegistry.refresh();
+
+        assertEquals("Beta", providerRegistry.find(8L).orElseThrow().getName());
+        assertEquals(Set.of(3L, 8L), providerRegistry.findAll(Set.of(3L, 8L)).keySet());
+        assertEquals(List.of("Alpha", "Beta"), providerRegistry.getAll().stream().map(Provider::getName).toList());
+        verify(providerRepository, times(1)).findAll(any(Sort.class));
+    }
+
+    @Test
+    void find_UnknownIdRefreshesOnceBeforeReportingMissing() {
+        when(providerRepository.findAll(any(Sort.class)))
+                .thenReturn(List.of(new Provider(1L, "Alpha")))
+                .thenReturn(List.of(new Provider(1L, "Alpha"), new Provider(2L, "Beta")));
+        providerRegistry.refresh();
+
+        assertEquals(Optional.of("Beta"), providerRegistry.find(2L).map(Provider::getName));
+        assertEquals(Optional.empty(), providerRegistry.find(99L));
+        assertEquals(Map.of(), providerRegistry.findAll(Set.of(98L)));
+        verify(providerRepository, times(4)).findAll(any(Sort.class));
+        assertEquals(4, providerRegistry.version());
+    }
+
+    @Test
+    void find_UnknownIdsWithinIntervalReloadOnce() {
+        properties.setMissRefreshInterval(Duration.ofHours(1));
+        when(providerRepository.findAll(any(Sort.class))).thenReturn(List.of(new Provider(1L, "Alpha")));
+        providerRegistry.refresh();
+
+        assertEquals(Optional.empty(), providerRegistry.find(99L));
+        assertEquals(Optional.empty(), providerRegistry.find(98L));
+        assertEquals(Set.of(1L), providerRegistry.findAll(Set.of(1L, 97L)).keySet());
+        assertTrue(providerRegistry.find(1L).isPresent());
+        verify(providerRepository, times(2)).findAll(any(Sort.class));
+    }
+
+    @Test
+    void find_ConcurrentMissesShareTheRefreshInFlight() throws Exception {
+        properties.setMissRefreshInterval(Duration.ofHours(1));
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        when(providerRepository.findAll(any(Sort.class))).thenAnswer(invocation -> {
+            if (loads.incrementAndGet() == 1) {
+                return List.of(new Provider(1L, "Alpha"));
+            }
+            loading.countDown();
+            releaseLoad.await();
+            return List.of(new Provider(1L, "Alpha"), new Provider(2L, "Beta"));
+        });
+        providerRegistry.refresh();
+
+        AtomicReference<Optional<Provider>> first = new AtomicReference<>();
+        AtomicReference<Optional<Provider>> second = new AtomicReference<>();
+        Thread refreshing = Thread.ofPlatform().start(() -> first.set(providerRegistry.find(2L)));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        Thread waiting = Thread.ofPlatform().start(() -> second.set(providerRegistry.find(2L)));
+        while (waiting.getState() != Thread.State.WAITING && waiting.isAlive()) {
+            Thread.onSpinWait();
+        }
+        releaseLoad.countDown();
+        refreshing.join(5000);
+        waiting.join(5000);
+
+        assertEquals(Optional.of("Beta"), first.get().map(Provider::getName));
+        assertEquals(Optional.of("Beta"), second.get().map(Provider::getName));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void refresh_OlderLoadFinishingLastIsDiscarded() throws Exception {
+        CountDownLatch firstLoading = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        when(providerRepository.findAll(any(Sort.class))).thenAnswer(invocation -> {
+            if (loads.incrementAndGet() == 1) {
+                firstLoading.countDown();
+                releaseFirst.await();
+                return List.of(new Provider(1L, "Alpha"));
+            }
+            return List.of(new Provider(1L, "Alpha"), new Provider(2L, "Beta"));
+        });
+
+        Thread older = Thread.ofPlatform().start(providerRegistry::refresh);
+        assertTrue(firstLoading.await(5, TimeUnit.SECONDS));
+        providerRegistry.refresh();
+        releaseFirst.countDown();
+        older.join(5000);
+
+        assertEquals(2, providerRegistry.version());
+        assertEquals(2, providerRegistry.getAll().size());
+    }
+}
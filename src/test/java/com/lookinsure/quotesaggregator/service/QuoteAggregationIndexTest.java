@@ -0,0 +1,281 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.dto.AggregationFilter;
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.dto.VersionedQuote;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.event.QuoteChangedEvent;
+import com.lookinsure.quotesaggregator.repository.QuoteRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class QuoteAggregationIndexTest {
+
+    @Mock
+    private QuoteRepository quoteRepository;
+
+    @Spy
+    private QuoteDataVersion dataVersion = new QuoteDataVersion();
+
+    @InjectMocks
+    private QuoteAggregationIndex aggregationIndex;
+
+    @Test
+    void apply_KeepsQuotesSortedByPriceThenId() {
+        aggregationIndex.apply(QuoteChangedEvent.created(response(3L, 300)));
+        aggregationIndex.apply(QuoteChangedEvent.created(response(2L, 100)));
+        aggregationIndex.apply(QuoteChangedEvent.created(response(1L, 100)));
+
+        assertEquals(List.of(1L, 2L, 3L), ids(aggregationIndex.query(AggregationFilter.unfiltered())));
+    }
+
+    @Test
+    void apply_UpdateMovesQuoteToNewPricePosition() {
+        aggregationIndex.apply(QuoteChangedEvent.created(response(1L, 100)));
+        aggregationIndex.apply(QuoteChangedEvent.created(response(2L, 200)));
+
+        aggregationIndex.apply(QuoteChangedEvent.updated(response(1L, 300), 1));
+
+        List<QuoteResponse> snapshot = aggregationIndex.query(AggregationFilter.unfiltered());
+        assertEquals(List.of(2L, 1L), ids(snapshot));
+        assertEquals(0, BigDecimal.valueOf(300).compareTo(snapshot.get(1).price()));
+        assertEquals(2, aggregationIndex.size());
+    }
+
+    @Test
+    void apply_DeleteRemovesQuote() {
+        aggregationIndex.apply(QuoteChangedEvent.created(response(1L, 100)));
+        aggregationIndex.apply(QuoteChangedEvent.created(response(2L, 200)));
+
+        aggregationIndex.apply(QuoteChangedEvent.deleted(1L, 1));
+        aggregationIndex.apply(QuoteChangedEvent.deleted(99L, 1));
+
+        assertEquals(List.of(2L), ids(aggregationIndex.query(AggregationFilter.unfiltered())));
+    }
+
+    @Test
+    void query_ReturnsVersionOfTheStateItRead() {
+        QuoteDataVersion.Snapshot initial = aggregationIndex.query(AggregationFilter.unfiltered(), (quotes, version) -> version);
+
+        aggregationIndex.apply(QuoteChangedEvent.created(response(1L, 100)));
+        dataVersion.bump();
+
+        aggregationIndex.query(AggregationFilter.unfiltered(), (quotes, version) -> {
+            assertEquals(List.of(1L), ids(quotes));
+            assertEquals(initial.version() + 1, version.version());
+            return null;
+        });
+        assertEquals(initial.version() + 2, dataVersion.current().version());
+    }
+
+    @Test
+    void rebuild_ReplacesContentsFromDatabase() {
+        aggregationIndex.apply(QuoteChangedEvent.created(response(99L, 1)));
+
+        when(quoteRepository.findAllVersionedByCoverageType(any())).thenReturn(List.of());
+        when(quoteRepository.findAllVersionedByCoverageType(CoverageType.CAR)).thenReturn(List.of(versioned(response(1L, 10))));
+        when(quoteRepository.findAllVersionedByCoverageType(CoverageType.PET))
+                .thenReturn(List.of(versioned(response(2L, CoverageType.PET, 5))));
+
+        aggregationIndex.rebuild();
+
+        assertEquals(List.of(2L, 1L), ids(aggregationIndex.query(AggregationFilter.unfiltered())));
+        assertEquals(List.of(1L), ids(aggregationIndex.query(filter(CoverageType.CAR, null, null, null))));
+        for (CoverageType coverageType : CoverageType.values()) {
+            verify(quoteRepository).findAllVersionedByCoverageType(coverageType);
+        }
+        verify(dataVersion, times(2)).bump();
+    }
+
+    @Test
+    void rebuild_FailedLookupKeepsPreviousContents() {
+        aggregationIndex.apply(QuoteChangedEvent.created(response(99L, 1)));
+
+        when(quoteRepository.findAllVersionedByCoverageType(any())).thenReturn(List.of());
+        when(quoteRepository.findAllVersionedByCoverageType(CoverageType.HEALTH))
+                .thenThrow(new IllegalStateException("database unavailable"));
+
+        assertThrows(IllegalStateException.class, () -> aggregationIndex.rebuild());
+        assertEquals(List.of(99L), ids(aggregationIndex.query(AggregationFilter.unfiltered())));
+        verify(dataVersion, times(1)).bump();
+    }
+
+    @Test
+    void apply_UpdateMovesQuoteBetweenCoverageTypes() {
+        aggregationIndex.apply(QuoteChangedEvent.created(response(1L, CoverageType.CAR, 100)));
+
+        aggregationIndex.apply(QuoteChangedEvent.updated(response(1L, CoverageType.PET, 100), 1));
+
+        assertTrue(aggregationIndex.query(filter(CoverageType.CAR, null, null, null)).isEmpty());
+        assertEquals(List.of(1L), ids(aggregationIndex.query(filter(CoverageType.PET, null, null, null))));
+    }
+
+    @Test
+    void query_FiltersByCoverageTypeAndPriceBand() {
+        aggregationIndex.apply(QuoteChangedEvent.created(response(1L, CoverageType.CAR, 100)));
+        aggregationIndex.apply(QuoteChangedEvent.created(response(2L, CoverageType.PET, 150)));
+        aggregationIndex.apply(QuoteChangedEvent.created(response(3L, CoverageType.CAR, 200)));
+        aggregationIndex.apply(QuoteChangedEvent.created(response(4L, CoverageType.CAR, 300)));
+
+        assertEquals(List.of(1L, 3L, 4L), ids(aggregationIndex.query(filter(CoverageType.CAR, null, null, null))));
+        assertEquals(List.of(2L, 3L), ids(aggregationIndex.query(filter(null, 150, 200, null))));
+        assertEquals(List.of(3L), ids(aggregationIndex.query(filter(CoverageType.CAR, 101, 299, null))));
+    }
+
+    @Test
+    void query_LimitReturnsCheapestQuotes() {
+        for (long id = 1; id <= 10; id++) {
+            aggregationIndex.apply(QuoteChangedEvent.created(response(id, CoverageType.CAR, 1000 - id)));
+        }
+
+        assertEquals(List.of(10L, 9L, 8L), ids(aggregationIndex.query(filter(CoverageType.CAR, null, null, 3))));
+        assertEquals(List.of(5L, 4L), ids(aggregationIndex.query(filter(null, 995, null, 2))));
+    }
+
+    @Test
+    void query_MaterialisesPricesAtStoredScaleAndRoundsBandInward() {
+        aggregationIndex.apply(QuoteChangedEvent.created(List.of(
+                new QuoteResponse(1L, CoverageType.CAR, new BigDecimal("1.005"), "Alpha"),
+                new QuoteResponse(2L, CoverageType.CAR, new BigDecimal("2"), "Beta"))));
+
+        List<QuoteResponse> quotes = aggregationIndex.query(AggregationFilter.unfiltered());
+        assertEquals(List.of(new BigDecimal("1.01"), new BigDecimal("2.00")),
+                quotes.stream().map(QuoteResponse::price).toList());
+        assertEquals(List.of("Alpha", "Beta"), quotes.stream().map(QuoteResponse::providerName).toList());
+
+        assertEquals(List.of(2L), ids(aggregationIndex.query(
+                new AggregationFilter(null, new BigDecimal("1.011"), new BigDecimal("1E30"), null))));
+        assertEquals(List.of(1L), ids(aggregationIndex.query(
+                new AggregationFilter(null, null, new BigDecimal("1.999"), null))));
+    }
+
+    @Test
+    void apply_BatchMergesChangesAcrossCoverageTypesInOneStep() {
+        aggregationIndex.apply(QuoteChangedEvent.created(List.of(
+                response(1L, CoverageType.CAR, 100),
+                response(2L, CoverageType.PET, 50),
+                response(3L, CoverageType.HEALTH, 75))));
+
+        aggregationIndex.apply(new QuoteChangedEvent(List.of(
+                new QuoteChangedEvent.QuoteChange(QuoteChangedEvent.ChangeType.DELETED, 1L, 1, null),
+                new QuoteChangedEvent.QuoteChange(QuoteChangedEvent.ChangeType.CREATED, 4L, 0, response(4L, CoverageType.CAR, 60)),
+                new QuoteChangedEvent.QuoteChange(QuoteChangedEvent.ChangeType.DELETED, 4L, 1, null),
+                new QuoteChangedEvent.QuoteChange(QuoteChangedEvent.ChangeType.UPDATED, 2L, 1, response(2L, CoverageType.PET, 80)))));
+
+        assertEquals(List.of(3L, 2L), ids(aggregationIndex.query(AggregationFilter.unfiltered())));
+        assertEquals(2, aggregationIndex.size());
+    }
+
+    @Test
+    void apply_SkipsChangesNotNewerThanTheQuoteHeld() {
+        aggregationIndex.apply(QuoteChangedEvent.created(response(1L, 100)));
+        aggregationIndex.apply(QuoteChangedEvent.updated(response(1L, 300), 2));
+
+        assertTrue(aggregationIndex.apply(QuoteChangedEvent.updated(response(1L, 200), 1)).isEmpty());
+        assertTrue(aggregationIndex.apply(QuoteChangedEvent.updated(response(1L, 200), 2)).isEmpty());
+
+        List<QuoteResponse> quotes = aggregationIndex.query(AggregationFilter.unfiltered());
+        assertEquals(0, BigDecimal.valueOf(300).compareTo(quotes.get(0).price()));
+        verify(dataVersion, times(2)).bump();
+    }
+
+    @Test
+    void apply_LateUpdateDoesNotBringBackDeletedQuote() {
+        aggregationIndex.apply(QuoteChangedEvent.created(response(1L, 100)));
+        aggregationIndex.apply(QuoteChangedEvent.deleted(1L, 2));
+
+        List<QuoteChangedEvent.QuoteChange> applied = aggregationIndex.apply(QuoteChangedEvent.updated(response(1L, 200), 1));
+
+        assertTrue(applied.isEmpty());
+        assertEquals(0, aggregationIndex.size());
+    }
+
+    @Test
+    void rebuild_KeepsRowVersionsSoOlderDeltasAreSkipped() {
+        when(quoteRepository.findAllVersionedByCoverageType(any())).thenReturn(List.of());
+        when(quoteRepository.findAllVersionedByCoverageType(CoverageType.CAR))
+                .thenReturn(List.of(new VersionedQuote(response(1L, 10), 3)));
+        aggregationIndex.rebuild();
+
+        aggregationIndex.apply(QuoteChangedEvent.updated(response(1L, 20), 2));
+        aggregationIndex.apply(QuoteChangedEvent.updated(response(1L, 40), 4));
+
+        assertEquals(0, BigDecimal.valueOf(40).compareTo(aggregationIndex.query(AggregationFilter.unfiltered()).get(0).price()));
+        assertEquals(List.of(4L), aggregationIndex.versionedQuotes().stream().map(VersionedQuote::version).toList());
+    }
+
+    @Test
+    void apply_RandomChangesMatchAFullySortedModel() {
+        Random random = new Random(42);
+        Map<Long, QuoteResponse> model = new HashMap<>();
+        Map<Long, Long> versions = new HashMap<>();
+        CoverageType[] coverageTypes = CoverageType.values();
+
+        for (int round = 0; round < 500; round++) {
+            List<QuoteChangedEvent.QuoteChange> changes = new ArrayList<>();
+            for (int i = random.nextInt(4) + 1; i > 0; i--) {
+                long id = random.nextInt(60) + 1;
+                long version = versions.merge(id, 1L, Long::sum);
+                if (model.containsKey(id) && random.nextInt(4) == 0) {
+                    model.remove(id);
+                    changes.add(new QuoteChangedEvent.QuoteChange(QuoteChangedEvent.ChangeType.DELETED, id, version, null));
+                } else {
+                    // few distinct prices, so ties are ordered by id
+                    QuoteResponse quote = response(id, coverageTypes[random.nextInt(coverageTypes.length)], random.nextInt(20));
+                    model.put(id, quote);
+                    changes.add(new QuoteChangedEvent.QuoteChange(QuoteChangedEvent.ChangeType.UPDATED, id, version, quote));
+                }
+            }
+            aggregationIndex.apply(new QuoteChangedEvent(changes));
+
+            List<Long> expected = model.values().stream()
+                    .sorted(Comparator.comparing(QuoteResponse::price).thenComparing(QuoteResponse::id))
+                    .map(QuoteResponse::id)
+                    .toList();
+            assertEquals(expected, ids(aggregationIndex.query(AggregationFilter.unfiltered())), "after round " + round);
+        }
+        assertEquals(model.size(), aggregationIndex.versionedQuotes().size());
+        aggregationIndex.versionedQuotes().forEach(quote ->
+                assertEquals(versions.get(quote.id()), quote.version()));
+    }
+
+    private static AggregationFilter filter(CoverageType coverageType, Integer minPrice, Integer maxPrice, Integer limit) {
+        return new AggregationFilter(coverageType,
+                minPrice == null ? null : BigDecimal.valueOf(minPrice),
+                maxPrice == null ? null : BigDecimal.valueOf(maxPrice),
+                limit);
+    }
+
+    private static QuoteResponse response(Long id, long price) {
+        return response(id, CoverageType.CAR, price);
+    }
+
+    private static QuoteResponse response(Long id, CoverageType coverageType, long price) {
+        return new QuoteResponse(id, coverageType, BigDecimal.valueOf(price), "Provider");
+    }
+
+    private static VersionedQuote versioned(QuoteResponse quote) {
+        return new VersionedQuote(quote, QuoteChangedEvent.INITIAL_VERSION);
+    }
+
+    private static List<Long> ids(List<QuoteResponse> quotes) {
+        return quotes.stream().map(QuoteResponse::id).toList();
+    }
+}
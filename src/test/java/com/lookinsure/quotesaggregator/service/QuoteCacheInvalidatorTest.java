@@ -0,0 +1,115 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.config.QuoteCacheProperties;
+import com.lookinsure.quotesaggregator.dto.AggregationFilter;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuoteCacheInvalidatorTest {
+
+    private static final AggregationFilter CARS = new AggregationFilter(CoverageType.CAR, null, null, null);
+
+    private final CaffeineCacheManager cacheManager = new CaffeineCacheManager("cleared", "revalidated");
+    private final QuoteCacheProperties properties = new QuoteCacheProperties();
+    private final QuoteCacheInvalidator invalidator = new QuoteCacheInvalidator(cacheManager, properties);
+
+    @BeforeEach
+    void setup() {
+        QuoteCacheProperties.Spec spec = new QuoteCacheProperties.Spec();
+        spec.setStaleWhileRevalidate(true);
+        properties.getSpecs().put("revalidated", spec);
+    }
+
+    @Test
+    void invalidate_DropsEntriesByDefault() {
+        Cache cache = cacheManager.getCache("cleared");
+        cache.put(CARS, "previous");
+
+        invalidator.invalidate("cleared", filter -> fail("entries are reloaded by the next reader"));
+
+        assertNull(cache.get(CARS));
+    }
+
+    @Test
+    void invalidate_StaleWhileRevalidateServesPreviousEntryUntilReloaded() throws Exception {
+        Cache cache = cacheManager.getCache("revalidated");
+        cache.put(CARS, "previous");
+        CountDownLatch reloading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        invalidator.invalidate("revalidated", filter -> {
+            reloading.countDown();
+            block(release);
+            return "current";
+        });
+
+        assertTrue(reloading.await(5, TimeUnit.SECONDS));
+        assertEquals("previous", cache.get(CARS, () -> fail("a stale entry is served, not reloaded")));
+        release.countDown();
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertEquals("current", cache.get(CARS).get()));
+    }
+
+    @Test
+    void invalidate_BurstDuringRevalidationCoalescesIntoOneMorePass() throws Exception {
+        Cache cache = cacheManager.getCache("revalidated");
+        cache.put(CARS, 0);
+        AggregationFilter unfiltered = AggregationFilter.unfiltered();
+        cache.put(unfiltered, 0);
+        CountDownLatch firstPassStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 10; i++) {
+            invalidator.invalidate("revalidated", filter -> {
+                int load = loads.incrementAndGet();
+                if (load == 1) {
+                    firstPassStarted.countDown();
+                    block(release);
+                }
+                return load;
+            });
+            if (i == 0) {
+                assertTrue(firstPassStarted.await(5, TimeUnit.SECONDS));
+            }
+        }
+        release.countDown();
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertEquals(4, loads.get()));
+        Thread.sleep(200);
+        assertEquals(4, loads.get());
+        assertEquals(Set.of(3, 4), Set.of(cache.get(CARS).get(), cache.get(unfiltered).get()));
+    }
+
+    @Test
+    void invalidate_FailedReloadEvictsEntry() {
+        Cache cache = cacheManager.getCache("revalidated");
+        cache.put(CARS, "previous");
+
+        invalidator.invalidate("revalidated", filter -> {
+            throw new IllegalStateException("index unavailable");
+        });
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertNull(cache.get(CARS)));
+    }
+
+    private static void block(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,25 +1,64 @@
 package com.lookinsure.quotesaggregator.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.lookinsure.quotesaggregator.dto.AggregationFilter;
 import com.lookinsure.quotesaggregator.dto.QuoteRequest;
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.dto.VersionedQuote;
 import com.lookinsure.quotesaggregator.entity.CoverageType;
 import com.lookinsure.quotesaggregator.entity.Provider;
+import com.lookinsure.quotesaggregator.event.QuoteChangedEvent;
 import com.lookinsure.quotesaggregator.repository.ProviderRepository;
 import com.lookinsure.quotesaggregator.repository.QuoteRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@SpringBootTest
+@SpringBootTest(properties = {
+        "quotes.cache.specs.encodedAggregatedQuotes.maximum-weight=10",
+        "quotes.cache.specs.encodedAggregatedQuotes.expire-after-write=10m",
+        "quotes.cache.specs.encodedAggregatedQuotes.refresh-after-write=1m"
+})
+@AutoConfigureMockMvc
 @ActiveProfiles("test")
+@Import(QuoteCachingIntegrationTest.FakeTickerConfig.class)
 class QuoteCachingIntegrationTest {
 
     @Autowired
@@ -31,9 +70,27 @@ class QuoteCachingIntegrationTest {
     @Autowired
     private CacheManager cacheManager;
 
+    @Autowired
+    private FakeTicker ticker;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MockMvc mockMvc;
+
     @MockitoSpyBean
     private QuoteRepository quoteRepository;
 
+    @MockitoSpyBean
+    private QuoteAggregationIndex aggregationIndex;
+
+    @MockitoSpyBean
+    private QuoteResponseEncoder quoteResponseEncoder;
+
     @BeforeEach
     void setup() {
         tearDown();
@@ -42,30 +99,337 @@ class QuoteCachingIntegrationTest {
 
     @AfterEach
     void tearDown() {
-        reset(quoteRepository);
         quoteRepository.deleteAll();
         providerRepository.deleteAll();
+        aggregationIndex.rebuild();
         cacheManager.getCacheNames()
                 .forEach(cacheName -> cacheManager.getCache(cacheName).clear());
+        nativeCache().cleanUp();
+        reset(quoteRepository, aggregationIndex, quoteResponseEncoder);
     }
 
     @Test
-    void testAggregationCache_Hit_And_Evict() {
-        // First Call hit the database
-        quoteService.getAggregatedQuotes();
-        verify(quoteRepository, times(1)).findAllByOrderByPriceAsc();
+    void testAggregationCache_Hit_And_Evict() throws Exception {
+        long hitsBefore = nativeCache().stats().hitCount();
+
+        // First Call reads the index
+        aggregated(AggregationFilter.unfiltered());
+        verify(aggregationIndex, times(1)).query(any(), any());
 
         // Second Call hit the cache
-        quoteService.getAggregatedQuotes();
-        verify(quoteRepository, times(1)).findAllByOrderByPriceAsc();
+        aggregated(AggregationFilter.unfiltered());
+        verify(aggregationIndex, times(1)).query(any(), any());
+        assertEquals(hitsBefore + 1, nativeCache().stats().hitCount());
 
         // Trigger Eviction: Add a new Quote
         Provider p = providerRepository.findAll().get(0);
-        QuoteRequest request = new QuoteRequest(CoverageType.CAR, BigDecimal.TEN, p.getId());
-        quoteService.createQuote(request);
+        QuoteRequest request = new QuoteRequest(CoverageType.CAR, new BigDecimal("10.00"), p.getId());
+        QuoteResponse created = quoteService.createQuote(request);
+
+        // Third Call reads the updated index without rescanning the table
+        List<QuoteResponse> aggregated = aggregated(AggregationFilter.unfiltered());
+        verify(aggregationIndex, times(2)).query(any(), any());
+        verify(quoteRepository, never()).findAllVersionedByCoverageType(any());
+        assertEquals(List.of(created), aggregated);
+    }
+
+    @Test
+    void testAggregationIndex_TracksUpdateAndDelete() throws Exception {
+        Provider p = providerRepository.findAll().get(0);
+        QuoteResponse cheap = quoteService.createQuote(new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(100), p.getId()));
+        QuoteResponse dear = quoteService.createQuote(new QuoteRequest(CoverageType.PET, BigDecimal.valueOf(200), p.getId()));
+
+        quoteService.updateQuote(cheap.id(), new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(300), p.getId()));
+        assertEquals(List.of(dear.id(), cheap.id()),
+                aggregated(AggregationFilter.unfiltered()).stream().map(QuoteResponse::id).toList());
+
+        quoteService.deleteQuote(dear.id());
+        assertEquals(List.of(cheap.id()),
+                aggregated(AggregationFilter.unfiltered()).stream().map(QuoteResponse::id).toList());
+
+        verify(quoteRepository, never()).findAllVersionedByCoverageType(any());
+    }
+
+    @Test
+    void testAggregationCache_BatchInvalidatesOnce() throws Exception {
+        aggregated(AggregationFilter.unfiltered());
+        verify(aggregationIndex, times(1)).query(any(), any());
+
+        Long providerId = providerRepository.findAll().get(0).getId();
+        List<QuoteRequest> requests = IntStream.range(0, 10)
+                .mapToObj(i -> new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(10 - i), providerId))
+                .toList();
+        quoteService.createQuotes(requests);
+
+        verify(aggregationIndex, times(1)).apply(any());
+        List<QuoteResponse> aggregated = aggregated(AggregationFilter.unfiltered());
+        verify(aggregationIndex, times(2)).query(any(), any());
+        assertEquals(10, aggregated.size());
+        assertEquals(0, BigDecimal.ONE.compareTo(aggregated.get(0).price()));
+    }
+
+    @Test
+    void testEncodedCache_EncodesOncePerDataChange() throws Exception {
+        Long providerId = providerRepository.findAll().get(0).getId();
+        QuoteResponse created = quoteService.createQuote(new QuoteRequest(CoverageType.CAR, new BigDecimal("10.00"), providerId));
+
+        EncodedQuotes first = quoteService.getEncodedAggregatedQuotes(AggregationFilter.unfiltered());
+        EncodedQuotes second = quoteService.getEncodedAggregatedQuotes(AggregationFilter.unfiltered());
+        assertSame(first, second);
+        assertEquals(objectMapper.writeValueAsString(List.of(created)), new String(first.json(), StandardCharsets.UTF_8));
+
+        quoteService.deleteQuote(created.id());
+
+        EncodedQuotes afterDelete = quoteService.getEncodedAggregatedQuotes(AggregationFilter.unfiltered());
+        assertEquals("[]", new String(afterDelete.json(), StandardCharsets.UTF_8));
+        verify(aggregationIndex, times(2)).query(eq(AggregationFilter.unfiltered()), any());
+    }
+
+    @Test
+    void testEncodedCache_ConcurrentReadersShareOneLoadPerInvalidation() throws Exception {
+        Long providerId = providerRepository.findAll().get(0).getId();
+        int readers = 16;
+
+        for (int round = 1; round <= 3; round++) {
+            quoteService.createQuote(new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(round), providerId));
+
+            CountDownLatch loading = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            doAnswer(invocation -> {
+                loading.countDown();
+                release.await();
+                return invocation.callRealMethod();
+            }).when(aggregationIndex).query(any(), any());
+
+            CountDownLatch arrived = new CountDownLatch(readers);
+            List<Future<EncodedQuotes>> results;
+            // platform threads: a reader held inside the load would pin the only carrier on a small machine
+            try (ExecutorService executor = Executors.newFixedThreadPool(readers)) {
+                try {
+                    results = IntStream.range(0, readers)
+                            .mapToObj(i -> executor.submit(() -> {
+                                arrived.countDown();
+                                return quoteService.getEncodedAggregatedQuotes(AggregationFilter.unfiltered());
+                            }))
+                            .toList();
+                    assertTrue(arrived.await(5, TimeUnit.SECONDS));
+                    assertTrue(loading.await(5, TimeUnit.SECONDS));
+                    // give every reader time to miss the cache while the first load is held
+                    Thread.sleep(200);
+                } finally {
+                    release.countDown();
+                }
+            }
+
+            for (Future<EncodedQuotes> result : results) {
+                assertEquals(round, result.get().count());
+            }
+            verify(aggregationIndex, times(round)).query(any(), any());
+        }
+    }
+
+    @Test
+    void testDataVersion_BumpedOncePerCommittedChange() {
+        long before = quoteService.getDataVersion().version();
+        Long providerId = providerRepository.findAll().get(0).getId();
+
+        QuoteResponse created = quoteService.createQuote(new QuoteRequest(CoverageType.CAR, new BigDecimal("10.00"), providerId));
+        quoteService.createQuotes(List.of(
+                new QuoteRequest(CoverageType.PET, BigDecimal.ONE, providerId),
+                new QuoteRequest(CoverageType.PET, BigDecimal.TWO, providerId)));
+        quoteService.deleteQuote(created.id());
+
+        assertEquals(before + 3, quoteService.getDataVersion().version());
+    }
+
+    @Test
+    void testAggregationCache_SeparateEntryPerFilter() throws Exception {
+        AggregationFilter cheapestCar = new AggregationFilter(CoverageType.CAR, null, null, 5);
+        AggregationFilter band = new AggregationFilter(null, BigDecimal.ONE, BigDecimal.TEN, null);
+
+        aggregated(cheapestCar);
+        aggregated(band);
+        aggregated(new AggregationFilter(CoverageType.CAR, null, null, 5));
+        aggregated(band);
+
+        verify(aggregationIndex, times(1)).query(eq(cheapestCar), any());
+        verify(aggregationIndex, times(1)).query(eq(band), any());
+        assertNotNull(cacheManager.getCache("encodedAggregatedQuotes").get(cheapestCar));
+        assertNotNull(cacheManager.getCache("encodedAggregatedQuotes").get(band));
+    }
+
+    @Test
+    void testAggregationCache_EvictsBySizeWhenWeightExceeded() throws Exception {
+        Provider p = providerRepository.findAll().get(0);
+        for (int i = 1; i <= 4; i++) {
+            quoteService.createQuote(new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(i), p.getId()));
+        }
+        long evictionsBefore = nativeCache().stats().evictionCount();
+
+        // Each entry holds 4 quotes (weight 5), so three entries exceed the maximum weight of 10
+        for (int limit = 10; limit < 13; limit++) {
+            aggregated(new AggregationFilter(null, null, null, limit));
+        }
+        nativeCache().cleanUp();
+
+        assertTrue(nativeCache().stats().evictionCount() > evictionsBefore);
+        assertTrue(nativeCache().estimatedSize() < 3);
+        assertTrue(meterRegistry.get("cache.evictions").tag("cache", "encodedAggregatedQuotes")
+                .functionCounter().count() > 0);
+    }
+
+    @Test
+    void testAggregationCache_ExpiresAfterWrite() throws Exception {
+        aggregated(AggregationFilter.unfiltered());
+        verify(aggregationIndex, times(1)).query(any(), any());
+
+        ticker.advance(Duration.ofMinutes(11));
+
+        aggregated(AggregationFilter.unfiltered());
+        verify(aggregationIndex, times(2)).query(any(), any());
+    }
+
+    @Test
+    void testAggregationCache_RefreshesAheadServingStaleValue() throws Exception {
+        assertTrue(aggregated(AggregationFilter.unfiltered()).isEmpty());
+
+        // Change the index without going through the write paths, so nothing is evicted
+        QuoteResponse added = new QuoteResponse(42L, CoverageType.PET, new BigDecimal("10.00"), "Test Provider");
+        aggregationIndex.apply(QuoteChangedEvent.created(added));
+        ticker.advance(Duration.ofMinutes(2));
+
+        CountDownLatch reloadGate = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            reloadGate.await();
+            return invocation.callRealMethod();
+        }).when(aggregationIndex).query(any(), any());
+
+        // The stale entry is returned while the reload runs in the background
+        assertTrue(aggregated(AggregationFilter.unfiltered()).isEmpty());
+        reloadGate.countDown();
+        await().atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> assertEquals(List.of(added),
+                        decode((EncodedQuotes) nativeCache().getIfPresent(AggregationFilter.unfiltered()))));
+        verify(aggregationIndex, times(2)).query(any(), any());
+
+        assertEquals(List.of(added), aggregated(AggregationFilter.unfiltered()));
+        assertTrue(meterRegistry.get("cache.gets").tag("cache", "encodedAggregatedQuotes").tag("result", "hit")
+                .functionCounter().count() > 0);
+    }
+
+    @Test
+    void testAggregationCache_RefreshKeepsEntryWhenNothingChanged() throws Exception {
+        EncodedQuotes loaded = quoteService.getEncodedAggregatedQuotes(AggregationFilter.unfiltered());
+        ticker.advance(Duration.ofMinutes(2));
+
+        assertSame(loaded, quoteService.getEncodedAggregatedQuotes(AggregationFilter.unfiltered()));
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> nativeCache().policy().refreshes().isEmpty());
+
+        assertSame(loaded, nativeCache().getIfPresent(AggregationFilter.unfiltered()));
+        verify(aggregationIndex, times(1)).query(any(), any());
+        verify(quoteResponseEncoder, times(1)).encode(any(), any());
+    }
+
+    @Test
+    void conditionalGet_UpToDateAfterWriteIsAnsweredWithoutLoadingTheCache() throws Exception {
+        Long providerId = providerRepository.findAll().get(0).getId();
+        quoteService.createQuote(new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(100), providerId));
+        QuoteDataVersion.Snapshot version = quoteService.getDataVersion();
+
+        mockMvc.perform(get("/quotes/aggregate").header("If-None-Match", version.etag()))
+                .andExpect(status().isNotModified());
+
+        verify(aggregationIndex, never()).query(any(), any());
+        assertEquals(0, nativeCache().estimatedSize());
+    }
+
+    @Test
+    void getAggregate_EntryLoadedAcrossAnInvalidationIsReplaced() throws Exception {
+        Long providerId = providerRepository.findAll().get(0).getId();
+        quoteService.createQuote(new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(100), providerId));
+
+        CountDownLatch encoding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger encodes = new AtomicInteger();
+        doAnswer(invocation -> {
+            // the first load has already read the index when it is held here
+            if (encodes.incrementAndGet() == 1) {
+                encoding.countDown();
+                release.await();
+            }
+            return invocation.callRealMethod();
+        }).when(quoteResponseEncoder).encode(any(), any());
+
+        EncodedQuotes stale;
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            Future<EncodedQuotes> load = executor.submit(
+                    () -> quoteService.getEncodedAggregatedQuotes(AggregationFilter.unfiltered()));
+            assertTrue(encoding.await(5, TimeUnit.SECONDS));
+            quoteService.createQuote(new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(50), providerId));
+            release.countDown();
+            stale = load.get(5, TimeUnit.SECONDS);
+        }
+        QuoteDataVersion.Snapshot current = quoteService.getDataVersion();
+        assertTrue(stale.version().version() < current.version());
+        assertSame(stale, nativeCache().getIfPresent(AggregationFilter.unfiltered()));
+
+        mockMvc.perform(get("/quotes/aggregate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", current.etag()));
+
+        EncodedQuotes cached = (EncodedQuotes) nativeCache().getIfPresent(AggregationFilter.unfiltered());
+        assertEquals(current, cached.version());
+        assertEquals(2, cached.count());
+    }
+
+    @Test
+    void writes_IndexHoldsTheRowVersionsTheDatabaseAssigned() {
+        Long providerId = providerRepository.findAll().get(0).getId();
+        QuoteResponse quote = quoteService.createQuote(new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(100), providerId));
+        quoteService.updateQuote(quote.id(), new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(90), providerId));
+        quoteService.updateQuote(quote.id(), new QuoteRequest(CoverageType.PET, BigDecimal.valueOf(80), providerId));
+
+        long rowVersion = quoteRepository.findById(quote.id()).orElseThrow().getVersion();
+        assertEquals(QuoteChangedEvent.INITIAL_VERSION + 2, rowVersion);
+        assertEquals(List.of(rowVersion), aggregationIndex.versionedQuotes().stream().map(VersionedQuote::version).toList());
+
+        aggregationIndex.rebuild();
+        assertEquals(List.of(rowVersion), aggregationIndex.versionedQuotes().stream().map(VersionedQuote::version).toList());
+    }
+
+    private List<QuoteResponse> aggregated(AggregationFilter filter) throws IOException {
+        return decode(quoteService.getEncodedAggregatedQuotes(filter));
+    }
+
+    private List<QuoteResponse> decode(EncodedQuotes quotes) throws IOException {
+        return objectMapper.readValue(quotes.json(), new TypeReference<>() { });
+    }
+
+    private Cache<Object, Object> nativeCache() {
+        return ((CaffeineCache) cacheManager.getCache("encodedAggregatedQuotes")).getNativeCache();
+    }
+
+    @TestConfiguration
+    static class FakeTickerConfig {
+
+        @Bean
+        FakeTicker fakeTicker() {
+            return new FakeTicker();
+        }
+    }
+
+    static class FakeTicker implements Ticker {
+
+        private final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
 
-        // Third Call hit the database
-        quoteService.getAggregatedQuotes();
-        verify(quoteRepository, times(2)).findAllByOrderByPriceAsc();
+        void advance(Duration duration) {
+            nanos.addAndGet(duration.toNanos());
+        }
     }
 }
@@ -0,0 +1,110 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.config.QuoteFeedProperties;
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.event.QuoteChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuoteChangeFeedTest {
+
+    private final QuoteFeedProperties properties = new QuoteFeedProperties();
+
+    @Test
+    void subscribe_WithoutPositionStartsAtCurrentSequenceThenReceivesLiveChanges() throws Exception {
+        QuoteChangeFeed feed = feed(100);
+        feed.onQuoteChanged(QuoteChangedEvent.created(quote(1L, CoverageType.CAR)));
+
+        QuoteChangeFeed.Subscription subscription = feed.subscribe(null, null);
+        feed.onQuoteChanged(QuoteChangedEvent.updated(quote(1L, CoverageType.CAR), 1));
+        feed.onQuoteChanged(QuoteChangedEvent.deleted(1L, 2));
+
+        assertEquals(QuoteChangeFeed.Item.marker(QuoteChangeFeed.SUBSCRIBED, 1), subscription.poll(0));
+        QuoteChangeFeed.Item updated = subscription.poll(0);
+        assertEquals(2, updated.sequence());
+        assertEquals(QuoteChangedEvent.ChangeType.UPDATED, updated.event().type());
+        assertEquals(QuoteChangedEvent.ChangeType.DELETED, subscription.poll(0).event().type());
+        assertNull(subscription.poll(0));
+    }
+
+    @Test
+    void subscribe_ResumesWithChangesAfterLastEventId() throws Exception {
+        QuoteChangeFeed feed = feed(100);
+        feed.onQuoteChanged(QuoteChangedEvent.created(List.of(
+                quote(1L, CoverageType.CAR), quote(2L, CoverageType.CAR), quote(3L, CoverageType.CAR))));
+
+        QuoteChangeFeed.Subscription subscription = feed.subscribe(feed.eventId(1), null);
+
+        assertEquals(List.of(2L, 3L), drain(subscription).stream().map(item -> item.event().quoteId()).toList());
+    }
+
+    @Test
+    void subscribe_ResetsWhenPositionIsNotRetainedOrFromAnotherBoot() throws Exception {
+        QuoteChangeFeed feed = feed(3);
+        for (long id = 1; id <= 5; id++) {
+            feed.onQuoteChanged(QuoteChangedEvent.created(quote(id, CoverageType.CAR)));
+        }
+        QuoteChangeFeed.Item reset = QuoteChangeFeed.Item.marker(QuoteChangeFeed.RESET, 5);
+
+        assertEquals(List.of(reset), drain(feed.subscribe(feed.eventId(1), null)));
+        assertEquals(List.of(reset), drain(feed.subscribe("earlier-boot-4", null)));
+        assertEquals(List.of(reset), drain(feed.subscribe(feed.eventId(6), null)));
+        assertEquals(List.of(3L, 4L, 5L),
+                drain(feed.subscribe(feed.eventId(2), null)).stream().map(item -> item.event().quoteId()).toList());
+    }
+
+    @Test
+    void subscribe_FiltersByCoverageTypeButDeliversDeletionsAndResets() throws Exception {
+        QuoteChangeFeed feed = feed(100);
+        QuoteChangeFeed.Subscription subscription = feed.subscribe(feed.eventId(0), Set.of(CoverageType.PET));
+
+        feed.onQuoteChanged(QuoteChangedEvent.created(List.of(quote(1L, CoverageType.CAR), quote(2L, CoverageType.PET))));
+        feed.onQuoteChanged(QuoteChangedEvent.deleted(1L, 2));
+        feed.reset();
+
+        List<QuoteChangeFeed.Item> items = drain(subscription);
+        assertEquals(List.of(2L, 3L, 4L), items.stream().map(QuoteChangeFeed.Item::sequence).toList());
+        assertEquals(CoverageType.PET, items.get(0).event().quote().coverageType());
+        assertEquals(QuoteChangeFeed.RESET, items.get(2).name());
+    }
+
+    @Test
+    void append_DisconnectsSubscriberThatFallsBehindAfterBufferedChanges() throws Exception {
+        properties.setSubscriberBuffer(2);
+        QuoteChangeFeed feed = feed(100);
+        QuoteChangeFeed.Subscription subscription = feed.subscribe(feed.eventId(0), null);
+
+        for (long id = 1; id <= 3; id++) {
+            feed.onQuoteChanged(QuoteChangedEvent.created(quote(id, CoverageType.CAR)));
+        }
+
+        assertTrue(subscription.isClosed());
+        assertEquals(List.of(1L, 2L), drain(subscription).stream().map(QuoteChangeFeed.Item::sequence).toList());
+        feed.onQuoteChanged(QuoteChangedEvent.created(quote(4L, CoverageType.CAR)));
+        assertNull(subscription.poll(0));
+    }
+
+    private QuoteChangeFeed feed(int capacity) {
+        properties.setCapacity(capacity);
+        return new QuoteChangeFeed(properties);
+    }
+
+    private static List<QuoteChangeFeed.Item> drain(QuoteChangeFeed.Subscription subscription) throws InterruptedException {
+        List<QuoteChangeFeed.Item> items = new ArrayList<>();
+        for (QuoteChangeFeed.Item item = subscription.poll(0); item != null; item = subscription.poll(0)) {
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static QuoteResponse quote(Long id, CoverageType coverageType) {
+        return new QuoteResponse(id, coverageType, BigDecimal.TEN, "Provider");
+    }
+}
@@ -0,0 +1,142 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.config.QuoteSnapshotProperties;
+import com.lookinsure.quotesaggregator.dto.AggregationFilter;
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.dto.VersionedQuote;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.event.QuoteChangedEvent;
+import com.lookinsure.quotesaggregator.repository.QuoteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class QuoteIndexLoaderTest {
+
+    @Mock
+    private QuoteRepository quoteRepository;
+
+    @Mock
+    private QuoteService quoteService;
+
+    @TempDir
+    private Path directory;
+
+    private final QuoteSnapshotProperties properties = new QuoteSnapshotProperties();
+    private final QuoteDataVersion dataVersion = new QuoteDataVersion();
+
+    @BeforeEach
+    void setup() {
+        properties.setEnabled(true);
+        properties.setPath(directory.resolve("index.snapshot"));
+    }
+
+    @Test
+    void load_ServesSnapshotWhileDatabaseRebuildRunsInBackground() throws Exception {
+        QuoteAggregationIndex previousIndex = index();
+        previousIndex.apply(QuoteChangedEvent.created(List.of(
+                quote(1L, CoverageType.CAR, "250.50", "Alpha"),
+                quote(2L, CoverageType.PET, "99.99", "Beta"))));
+        previousIndex.apply(QuoteChangedEvent.updated(quote(2L, CoverageType.PET, "99.99", "Beta"), 4));
+        loader(previousIndex).saveSnapshot();
+
+        CountDownLatch databaseSlow = new CountDownLatch(1);
+        when(quoteRepository.findAllVersionedByCoverageType(any())).thenReturn(List.of());
+        when(quoteRepository.findAllVersionedByCoverageType(CoverageType.CAR)).thenAnswer(invocation -> {
+            databaseSlow.await();
+            return List.of(new VersionedQuote(quote(3L, CoverageType.CAR, "10.00", "Alpha"), 0));
+        });
+        QuoteAggregationIndex index = index();
+
+        loader(index).load();
+
+        assertEquals(List.of(quote(2L, CoverageType.PET, "99.99", "Beta"), quote(1L, CoverageType.CAR, "250.50", "Alpha")),
+                index.query(AggregationFilter.unfiltered()));
+        assertEquals(List.of(4L, 0L), index.versionedQuotes().stream()
+                .sorted(Comparator.comparing(VersionedQuote::id).reversed())
+                .map(VersionedQuote::version)
+                .toList());
+
+        databaseSlow.countDown();
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                assertEquals(List.of(3L), index.query(AggregationFilter.unfiltered()).stream().map(QuoteResponse::id).toList()));
+        verify(quoteService, timeout(5000).times(2)).invalidateAggregatedQuotes();
+    }
+
+    @Test
+    void load_RebuildsFromDatabaseWhenSnapshotIsCorrupt() throws Exception {
+        QuoteAggregationIndex previousIndex = index();
+        previousIndex.apply(QuoteChangedEvent.created(quote(1L, CoverageType.CAR, "100.00", "Alpha")));
+        loader(previousIndex).saveSnapshot();
+        byte[] bytes = Files.readAllBytes(properties.getPath());
+        bytes[bytes.length / 2] ^= 0x7f;
+        Files.write(properties.getPath(), bytes);
+
+        when(quoteRepository.findAllVersionedByCoverageType(any())).thenReturn(List.of());
+        QuoteAggregationIndex index = index();
+
+        loader(index).load();
+
+        assertEquals(0, index.size());
+        verify(quoteRepository, times(CoverageType.values().length)).findAllVersionedByCoverageType(any());
+        verify(quoteService).invalidateAggregatedQuotes();
+    }
+
+    @Test
+    void saveSnapshot_OnlyWritesWhenDataChanged() throws Exception {
+        QuoteAggregationIndex index = index();
+        QuoteIndexLoader loader = loader(index);
+        loader.saveSnapshot();
+        Files.delete(properties.getPath());
+
+        loader.saveSnapshot();
+        assertFalse(Files.exists(properties.getPath()));
+
+        index.apply(QuoteChangedEvent.created(quote(1L, CoverageType.CAR, "100.00", "Alpha")));
+        dataVersion.bump();
+        loader.saveSnapshot();
+        assertEquals(1, QuoteIndexSnapshot.readFrom(properties.getPath()).segments().get(0).ids().length);
+    }
+
+    @Test
+    void disabledSnapshots_RebuildSynchronouslyAndWriteNothing() {
+        properties.setEnabled(false);
+        when(quoteRepository.findAllVersionedByCoverageType(any())).thenReturn(List.of());
+        QuoteIndexLoader loader = loader(index());
+
+        loader.load();
+        loader.saveSnapshot();
+
+        verify(quoteRepository, times(CoverageType.values().length)).findAllVersionedByCoverageType(any());
+        assertFalse(Files.exists(properties.getPath()));
+    }
+
+    private QuoteAggregationIndex index() {
+        return new QuoteAggregationIndex(quoteRepository, dataVersion);
+    }
+
+    private QuoteIndexLoader loader(QuoteAggregationIndex index) {
+        return new QuoteIndexLoader(index, new QuoteStatistics(index), quoteService, dataVersion, properties);
+    }
+
+    private static QuoteResponse quote(Long id, CoverageType coverageType, String price, String providerName) {
+        return new QuoteResponse(id, coverageType, new BigDecimal(price), providerName);
+    }
+}
@@ -1,19 +1,24 @@
 package com.lookinsure.quotesaggregator.service;
 
+import com.lookinsure.quotesaggregator.dto.QuoteCursor;
+import com.lookinsure.quotesaggregator.dto.QuoteCursorPage;
 import com.lookinsure.quotesaggregator.dto.QuoteRequest;
 import com.lookinsure.quotesaggregator.dto.QuoteResponse;
 import com.lookinsure.quotesaggregator.entity.CoverageType;
 import com.lookinsure.quotesaggregator.entity.Provider;
 import com.lookinsure.quotesaggregator.entity.Quote;
+import com.lookinsure.quotesaggregator.event.QuoteChangedEvent;
 import com.lookinsure.quotesaggregator.exception.ResourceNotFoundException;
 import com.lookinsure.quotesaggregator.mapper.QuoteMapper;
-import com.lookinsure.quotesaggregator.repository.ProviderRepository;
 import com.lookinsure.quotesaggregator.repository.QuoteRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -21,10 +26,13 @@ import org.springframework.data.domain.Pageable;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,11 +42,26 @@ class QuoteServiceTest {
     private QuoteRepository quoteRepository;
 
     @Mock
-    private ProviderRepository providerRepository;
+    private ProviderRegistry providerRegistry;
 
     @Mock
     private QuoteMapper quoteMapper;
 
+    @Mock
+    private QuoteAggregationIndex aggregationIndex;
+
+    @Mock
+    private QuoteStatistics quoteStatistics;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private QuoteCacheInvalidator cacheInvalidator;
+
+    @Mock
+    private QuoteDataVersion dataVersion;
+
     @InjectMocks
     private QuoteService quoteService;
 
@@ -47,11 +70,11 @@ class QuoteServiceTest {
         Long providerId = 1L;
         QuoteRequest request = new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(100), providerId);
         Provider provider = new Provider(providerId, "Test Provider");
-        Quote quote = new Quote(null, CoverageType.CAR, BigDecimal.valueOf(100), provider);
-        Quote savedQuote = new Quote(1L, CoverageType.CAR, BigDecimal.valueOf(100), provider);
+        Quote quote = new Quote(null, CoverageType.CAR, BigDecimal.valueOf(100), provider, null);
+        Quote savedQuote = new Quote(1L, CoverageType.CAR, BigDecimal.valueOf(100), provider, null);
         QuoteResponse expectedResponse = new QuoteResponse(1L, CoverageType.CAR, BigDecimal.valueOf(100), "Test Provider");
 
-        when(providerRepository.findById(providerId)).thenReturn(Optional.of(provider));
+        when(providerRegistry.find(providerId)).thenReturn(Optional.of(provider));
         when(quoteMapper.toEntity(request, provider)).thenReturn(quote);
         when(quoteRepository.save(quote)).thenReturn(savedQuote);
         when(quoteMapper.toResponse(savedQuote)).thenReturn(expectedResponse);
@@ -61,47 +84,126 @@ class QuoteServiceTest {
         assertNotNull(actualResponse);
         assertEquals(expectedResponse.id(), actualResponse.id());
         verify(quoteRepository).save(quote);
+        verify(eventPublisher).publishEvent(QuoteChangedEvent.created(expectedResponse));
     }
 
     @Test
     void createQuote_ProviderNotFound() {
         QuoteRequest request = new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(100), 99L);
-        when(providerRepository.findById(99L)).thenReturn(Optional.empty());
+        when(providerRegistry.find(99L)).thenReturn(Optional.empty());
 
         assertThrows(ResourceNotFoundException.class, () -> quoteService.createQuote(request));
         verify(quoteRepository, never()).save(any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void createQuotes_ResolvesProvidersOnceAndPublishesSingleEvent() {
+        Provider provider1 = new Provider(1L, "Provider 1");
+        Provider provider2 = new Provider(2L, "Provider 2");
+        QuoteRequest request1 = new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(100), 1L);
+        QuoteRequest request2 = new QuoteRequest(CoverageType.PET, BigDecimal.valueOf(50), 2L);
+        QuoteRequest request3 = new QuoteRequest(CoverageType.HEALTH, BigDecimal.valueOf(75), 1L);
+        Quote quote1 = new Quote(null, CoverageType.CAR, BigDecimal.valueOf(100), provider1, null);
+        Quote quote2 = new Quote(null, CoverageType.PET, BigDecimal.valueOf(50), provider2, null);
+        Quote quote3 = new Quote(null, CoverageType.HEALTH, BigDecimal.valueOf(75), provider1, null);
+        QuoteResponse response1 = new QuoteResponse(1L, CoverageType.CAR, BigDecimal.valueOf(100), "Provider 1");
+        QuoteResponse response2 = new QuoteResponse(2L, CoverageType.PET, BigDecimal.valueOf(50), "Provider 2");
+        QuoteResponse response3 = new QuoteResponse(3L, CoverageType.HEALTH, BigDecimal.valueOf(75), "Provider 1");
+
+        when(providerRegistry.findAll(anyCollection())).thenReturn(Map.of(1L, provider1, 2L, provider2));
+        when(quoteMapper.toEntity(request1, provider1)).thenReturn(quote1);
+        when(quoteMapper.toEntity(request2, provider2)).thenReturn(quote2);
+        when(quoteMapper.toEntity(request3, provider1)).thenReturn(quote3);
+        when(quoteRepository.saveAll(List.of(quote1, quote2, quote3))).thenReturn(List.of(quote1, quote2, quote3));
+        when(quoteMapper.toResponse(quote1)).thenReturn(response1);
+        when(quoteMapper.toResponse(quote2)).thenReturn(response2);
+        when(quoteMapper.toResponse(quote3)).thenReturn(response3);
+
+        List<QuoteResponse> responses = quoteService.createQuotes(List.of(request1, request2, request3));
+
+        assertEquals(List.of(response1, response2, response3), responses);
+        verify(providerRegistry).findAll(Set.of(1L, 2L));
+        verify(providerRegistry, never()).find(any());
+        verify(eventPublisher).publishEvent(QuoteChangedEvent.created(List.of(response1, response2, response3)));
+    }
+
+    @Test
+    void createQuotes_ProviderNotFound() {
+        QuoteRequest request1 = new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(100), 1L);
+        QuoteRequest request2 = new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(100), 99L);
+        when(providerRegistry.findAll(anyCollection())).thenReturn(Map.of(1L, new Provider(1L, "Provider 1")));
+
+        ResourceNotFoundException ex = assertThrows(ResourceNotFoundException.class,
+                () -> quoteService.createQuotes(List.of(request1, request2)));
+
+        assertTrue(ex.getMessage().contains("[99]"));
+        verify(quoteRepository, never()).saveAll(any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void getQuotesAfter_FirstPageReturnsCursorOfLastQuote() {
+        QuoteResponse q1 = new QuoteResponse(1L, CoverageType.CAR, BigDecimal.valueOf(10), "Provider");
+        QuoteResponse q2 = new QuoteResponse(2L, CoverageType.CAR, BigDecimal.valueOf(20), "Provider");
+        QuoteResponse q3 = new QuoteResponse(3L, CoverageType.CAR, BigDecimal.valueOf(30), "Provider");
+        when(quoteRepository.findFirstResponses(Limit.of(3))).thenReturn(List.of(q1, q2, q3));
+
+        QuoteCursorPage page = quoteService.getQuotesAfter(null, 2);
+
+        assertEquals(List.of(q1, q2), page.content());
+        assertEquals(new QuoteCursor(BigDecimal.valueOf(20), 2L), QuoteCursor.decode(page.nextCursor()));
+        verify(quoteRepository, never()).count();
+    }
+
+    @Test
+    void getQuotesAfter_LastPageHasNoCursor() {
+        QuoteCursor cursor = new QuoteCursor(BigDecimal.valueOf(20), 2L);
+        QuoteResponse q3 = new QuoteResponse(3L, CoverageType.CAR, BigDecimal.valueOf(30), "Provider");
+        when(quoteRepository.findResponsesAfter(BigDecimal.valueOf(20), 2L, Limit.of(3))).thenReturn(List.of(q3));
+
+        QuoteCursorPage page = quoteService.getQuotesAfter(cursor, 2);
+
+        assertEquals(List.of(q3), page.content());
+        assertNull(page.nextCursor());
     }
 
     @Test
     void getQuoteById_Success() {
         Long quoteId = 1L;
-        Quote quote = new Quote(quoteId, CoverageType.HEALTH, BigDecimal.TEN, new Provider());
         QuoteResponse expectedResponse = new QuoteResponse(quoteId, CoverageType.HEALTH, BigDecimal.TEN, "Provider");
 
-        when(quoteRepository.findById(quoteId)).thenReturn(Optional.of(quote));
-        when(quoteMapper.toResponse(quote)).thenReturn(expectedResponse);
+        when(quoteRepository.findResponseById(quoteId)).thenReturn(Optional.of(expectedResponse));
 
         QuoteResponse result = quoteService.getQuoteById(quoteId);
 
         assertEquals(expectedResponse, result);
+        verifyNoInteractions(quoteMapper);
+    }
+
+    @Test
+    void getQuoteById_NotFound() {
+        when(quoteRepository.findResponseById(99L)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> quoteService.getQuoteById(99L));
     }
 
     @Test
     void getAllQuotes_Success() {
         Pageable pageable = PageRequest.of(0, 10);
 
-        Quote quote1 = new Quote(1L, CoverageType.CAR, BigDecimal.TEN, new Provider(1L, "P1"));
-        Quote quote2 = new Quote(2L, CoverageType.HEALTH, BigDecimal.valueOf(20), new Provider(2L, "P2"));
-        Page<Quote> quotePage = new PageImpl<>(List.of(quote1, quote2));
+        QuoteResponse quote1 = new QuoteResponse(1L, CoverageType.CAR, BigDecimal.TEN, "P1");
+        QuoteResponse quote2 = new QuoteResponse(2L, CoverageType.HEALTH, BigDecimal.valueOf(20), "P2");
+        Page<QuoteResponse> quotePage = new PageImpl<>(List.of(quote1, quote2));
 
-        when(quoteRepository.findAll(pageable)).thenReturn(quotePage);
-        when(quoteMapper.toResponse(any(Quote.class))).thenReturn(new QuoteResponse(1L, CoverageType.CAR, BigDecimal.TEN, "P1"));
+        when(quoteRepository.findAllResponses(pageable)).thenReturn(quotePage);
 
         Page<QuoteResponse> result = quoteService.getAllQuotes(pageable);
 
         assertNotNull(result);
         assertEquals(2, result.getContent().size());
-        verify(quoteRepository).findAll(pageable);
+        verify(quoteRepository).findAllResponses(pageable);
+        verifyNoInteractions(quoteMapper);
     }
 
 
@@ -111,20 +213,21 @@ class QuoteServiceTest {
         Long providerId = 2L;
         QuoteRequest request = new QuoteRequest(CoverageType.PET, BigDecimal.valueOf(50), providerId);
 
-        Quote existingQuote = new Quote(quoteId, CoverageType.CAR, BigDecimal.valueOf(100), new Provider());
+        Quote existingQuote = new Quote(quoteId, CoverageType.CAR, BigDecimal.valueOf(100), new Provider(), 0L);
         Provider provider = new Provider(providerId, "Provider");
-        Quote updatedQuote = new Quote(quoteId, CoverageType.PET, BigDecimal.valueOf(50), provider);
+        Quote updatedQuote = new Quote(quoteId, CoverageType.PET, BigDecimal.valueOf(50), provider, 1L);
         QuoteResponse response = new QuoteResponse(quoteId, CoverageType.PET, BigDecimal.valueOf(50), "Provider");
 
         when(quoteRepository.findById(quoteId)).thenReturn(Optional.of(existingQuote));
-        when(providerRepository.findById(providerId)).thenReturn(Optional.of(provider));
-        when(quoteRepository.save(existingQuote)).thenReturn(updatedQuote);
+        when(providerRegistry.find(providerId)).thenReturn(Optional.of(provider));
+        when(quoteRepository.saveAndFlush(existingQuote)).thenReturn(updatedQuote);
         when(quoteMapper.toResponse(updatedQuote)).thenReturn(response);
 
         QuoteResponse result = quoteService.updateQuote(quoteId, request);
 
         assertEquals(CoverageType.PET, result.coverageType());
         verify(quoteMapper).updateEntity(existingQuote, request, provider);
+        verify(eventPublisher).publishEvent(QuoteChangedEvent.updated(response, 1));
     }
 
     @Test
@@ -138,35 +241,65 @@ class QuoteServiceTest {
     @Test
     void deleteQuote_Success() {
         Long quoteId = 1L;
-        when(quoteRepository.existsById(quoteId)).thenReturn(true);
+        Quote quote = new Quote(quoteId, CoverageType.CAR, BigDecimal.valueOf(100), new Provider(), 3L);
+        when(quoteRepository.findById(quoteId)).thenReturn(Optional.of(quote));
 
         quoteService.deleteQuote(quoteId);
 
-        verify(quoteRepository).deleteById(quoteId);
+        verify(quoteRepository).delete(quote);
+        verify(eventPublisher).publishEvent(QuoteChangedEvent.deleted(quoteId, 4));
     }
 
     @Test
     void deleteQuote_NotFound() {
         Long quoteId = 99L;
-        when(quoteRepository.existsById(quoteId)).thenReturn(false);
+        when(quoteRepository.findById(quoteId)).thenReturn(Optional.empty());
 
         assertThrows(ResourceNotFoundException.class, () -> quoteService.deleteQuote(quoteId));
-        verify(quoteRepository, never()).deleteById(any());
+        verify(quoteRepository, never()).delete(any());
     }
 
     @Test
-    void getAggregatedQuotes_Success() {
-        Quote cheap = new Quote(1L, CoverageType.CAR, BigDecimal.valueOf(10), new Provider());
-        Quote expensive = new Quote(2L, CoverageType.CAR, BigDecimal.valueOf(20), new Provider());
-        List<Quote> sortedList = List.of(cheap, expensive);
+    void applyMutations_AppliesInOrderAndPublishesOneEvent() {
+        Provider provider = new Provider(1L, "Test Provider");
+        Quote existing = new Quote(5L, CoverageType.CAR, BigDecimal.valueOf(100), provider, 2L);
+        QuoteRequest cheaper = new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(80), 1L);
+        QuoteResponse updated = new QuoteResponse(5L, CoverageType.CAR, BigDecimal.valueOf(80), "Test Provider");
+        when(providerRegistry.findAll(Set.of(1L, 2L))).thenReturn(Map.of(1L, provider));
+        when(quoteRepository.findAllById(Set.of(5L, 6L))).thenReturn(List.of(existing));
+        when(quoteMapper.toResponse(existing)).thenReturn(updated);
+
+        List<QuoteMutation.Outcome> outcomes = quoteService.applyMutations(List.of(
+                QuoteMutation.update(5L, cheaper),
+                QuoteMutation.update(6L, cheaper),
+                QuoteMutation.create(new QuoteRequest(CoverageType.PET, BigDecimal.TEN, 2L)),
+                QuoteMutation.delete(5L)));
+
+        assertEquals(List.of(
+                QuoteMutation.Outcome.applied(5L),
+                QuoteMutation.Outcome.rejected("Quote not found with ID: 6"),
+                QuoteMutation.Outcome.rejected("Provider not found with ID: 2"),
+                QuoteMutation.Outcome.applied(5L)), outcomes);
+        verify(quoteMapper).updateEntity(existing, cheaper, provider);
+        verify(quoteRepository).delete(existing);
+        verify(quoteRepository, never()).save(any());
+        InOrder inOrder = inOrder(quoteRepository, eventPublisher);
+        inOrder.verify(quoteRepository).flush();
+        inOrder.verify(eventPublisher).publishEvent(new QuoteChangedEvent(List.of(
+                new QuoteChangedEvent.QuoteChange(QuoteChangedEvent.ChangeType.UPDATED, 5L, 2, updated),
+                new QuoteChangedEvent.QuoteChange(QuoteChangedEvent.ChangeType.DELETED, 5L, 3, null))));
+    }
 
-        when(quoteRepository.findAllByOrderByPriceAsc()).thenReturn(sortedList);
-        when(quoteMapper.toResponse(any(Quote.class))).thenReturn(new QuoteResponse(1L, CoverageType.CAR, BigDecimal.valueOf(10), "Provider"));
+    @Test
+    void onQuoteChanged_AppliesEventThenInvalidates() {
+        QuoteChangedEvent event = QuoteChangedEvent.deleted(1L, 1);
 
-        List<QuoteResponse> result = quoteService.getAggregatedQuotes();
+        quoteService.onQuoteChanged(event);
 
-        assertEquals(2, result.size());
-        verify(quoteRepository).findAllByOrderByPriceAsc();
+        InOrder inOrder = inOrder(aggregationIndex, quoteStatistics, cacheInvalidator);
+        inOrder.verify(aggregationIndex).apply(event);
+        inOrder.verify(quoteStatistics).apply(event);
+        inOrder.verify(cacheInvalidator).invalidate(eq("encodedAggregatedQuotes"), any());
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.dto.VersionedQuote;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.event.QuoteChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class QuoteStatisticsReconcilerTest {
+
+    private static final List<QuoteResponse> QUOTES = List.of(
+            new QuoteResponse(1L, CoverageType.CAR, new BigDecimal("100.00"), "Alpha"),
+            new QuoteResponse(2L, CoverageType.PET, new BigDecimal("20.00"), "Beta"));
+
+    @Mock
+    private QuoteService quoteService;
+
+    @Mock
+    private QuoteAggregationIndex aggregationIndex;
+
+    private final QuoteDataVersion dataVersion = new QuoteDataVersion();
+    private QuoteStatistics statistics;
+    private QuoteStatisticsReconciler reconciler;
+
+    @BeforeEach
+    void setup() {
+        statistics = new QuoteStatistics(aggregationIndex);
+        reconciler = new QuoteStatisticsReconciler(quoteService, aggregationIndex, statistics, dataVersion);
+    }
+
+    @Test
+    void reconcile_MatchingStatisticsAreConsistent() {
+        streamFromDatabase(() -> {});
+        statistics.apply(QuoteChangedEvent.created(QUOTES));
+        when(aggregationIndex.versionedQuotes()).thenReturn(versioned(QUOTES));
+
+        assertEquals(QuoteStatisticsReconciler.Result.CONSISTENT, reconciler.reconcile());
+        verify(aggregationIndex, never()).rebuild();
+        verify(quoteService, never()).invalidateAggregatedQuotes();
+    }
+
+    @Test
+    void reconcile_StatisticsDriftIsRepairedFromDatabase() {
+        streamFromDatabase(() -> {});
+        statistics.apply(QuoteChangedEvent.created(QUOTES.subList(0, 1)));
+        when(aggregationIndex.versionedQuotes()).thenReturn(versioned(QUOTES));
+
+        assertEquals(QuoteStatisticsReconciler.Result.SUSPECTED, reconciler.reconcile());
+        verify(aggregationIndex, never()).rebuild();
+        assertEquals(QuoteStatisticsReconciler.Result.REPAIRED, reconciler.reconcile());
+        verify(aggregationIndex).rebuild();
+        assertEquals(2, statistics.get(null, null).get(0).count());
+    }
+
+    @Test
+    void reconcile_DifferenceGoneByTheNextRunIsNotRepaired() {
+        streamFromDatabase(() -> {});
+        // a commit whose listener had not run yet when the first run compared
+        statistics.apply(QuoteChangedEvent.created(QUOTES.subList(0, 1)));
+        when(aggregationIndex.versionedQuotes())
+                .thenReturn(versioned(QUOTES.subList(0, 1)))
+                .thenReturn(versioned(QUOTES));
+
+        assertEquals(QuoteStatisticsReconciler.Result.SUSPECTED, reconciler.reconcile());
+        statistics.apply(QuoteChangedEvent.created(QUOTES.subList(1, 2)));
+
+        assertEquals(QuoteStatisticsReconciler.Result.CONSISTENT, reconciler.reconcile());
+        verify(aggregationIndex, never()).rebuild();
+        verify(quoteService, never()).invalidateAggregatedQuotes();
+    }
+
+    @Test
+    void reconcile_IndexDisagreeingWithDatabaseIsReloaded() {
+        streamFromDatabase(() -> {});
+        // the index lost a quote and the statistics derived from it agree with the index
+        statistics.apply(QuoteChangedEvent.created(QUOTES.subList(0, 1)));
+        when(aggregationIndex.versionedQuotes())
+                .thenReturn(versioned(QUOTES.subList(0, 1)))
+                .thenReturn(versioned(QUOTES.subList(0, 1)))
+                .thenReturn(versioned(QUOTES));
+
+        assertEquals(QuoteStatisticsReconciler.Result.SUSPECTED, reconciler.reconcile());
+        assertEquals(QuoteStatisticsReconciler.Result.REPAIRED, reconciler.reconcile());
+        InOrder repair = inOrder(aggregationIndex, quoteService);
+        repair.verify(aggregationIndex).rebuild();
+        repair.verify(aggregationIndex).versionedQuotes();
+        repair.verify(quoteService).invalidateAggregatedQuotes();
+        assertEquals(2, statistics.get(null, null).get(0).count());
+    }
+
+    @Test
+    void reconcile_SkipsWhenQuotesChangeDuringRecompute() {
+        streamFromDatabase(dataVersion::bump);
+
+        assertEquals(QuoteStatisticsReconciler.Result.SKIPPED, reconciler.reconcile());
+        verify(aggregationIndex, never()).rebuild();
+    }
+
+    private static List<VersionedQuote> versioned(List<QuoteResponse> quotes) {
+        return quotes.stream().map(quote -> new VersionedQuote(quote, QuoteChangedEvent.INITIAL_VERSION)).toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void streamFromDatabase(Runnable duringScan) {
+        doAnswer(invocation -> {
+            QUOTES.forEach(invocation.<Consumer<QuoteResponse>>getArgument(0));
+            duringScan.run();
+            return null;
+        }).when(quoteService).streamAggregatedQuotes(any(Consumer.class));
+    }
+}
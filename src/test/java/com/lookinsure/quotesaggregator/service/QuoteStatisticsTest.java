@@ -0,0 +1,161 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.dto.QuoteResponse;
+import com.lookinsure.quotesaggregator.dto.QuoteStats;
+import com.lookinsure.quotesaggregator.dto.VersionedQuote;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.event.QuoteChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class QuoteStatisticsTest {
+
+    @Mock
+    private QuoteAggregationIndex aggregationIndex;
+
+    @InjectMocks
+    private QuoteStatistics statistics;
+
+    @Test
+    void apply_MaintainsProviderCoverageAndTotalGroups() {
+        statistics.apply(QuoteChangedEvent.created(List.of(
+                quote(1L, CoverageType.CAR, "100.00", "Alpha"),
+                quote(2L, CoverageType.CAR, "300.00", "Alpha"),
+                quote(3L, CoverageType.CAR, "200.00", "Alpha"),
+                quote(4L, CoverageType.CAR, "50.00", "Beta"),
+                quote(5L, CoverageType.PET, "10.00", "Beta"))));
+
+        assertEquals(stats("Alpha", CoverageType.CAR, 3, "100.00", "300.00", "200.00", "200.00"),
+                single("Alpha", CoverageType.CAR));
+        assertEquals(stats(null, CoverageType.CAR, 4, "50.00", "300.00", "162.50", "150.00"),
+                single(null, CoverageType.CAR));
+        assertEquals(stats("Beta", null, 2, "10.00", "50.00", "30.00", "30.00"), single("Beta", null));
+        assertEquals(stats(null, null, 5, "10.00", "300.00", "132.00", "100.00"), statistics.get(null, null).get(0));
+        assertEquals(3, statistics.get("Beta", null).size());
+        assertEquals(8, statistics.get(null, null).size());
+    }
+
+    @Test
+    void apply_UpdatesAndDeletesReplacePreviousContribution() {
+        statistics.apply(QuoteChangedEvent.created(List.of(
+                quote(1L, CoverageType.CAR, "100.00", "Alpha"),
+                quote(2L, CoverageType.CAR, "200.00", "Alpha"))));
+
+        statistics.apply(QuoteChangedEvent.updated(quote(2L, CoverageType.PET, "40.00", "Beta"), 1));
+        statistics.apply(QuoteChangedEvent.updated(quote(1L, CoverageType.CAR, "120.00", "Alpha"), 1));
+
+        assertEquals(stats("Alpha", CoverageType.CAR, 1, "120.00", "120.00", "120.00", "120.00"),
+                single("Alpha", CoverageType.CAR));
+        assertEquals(stats("Beta", CoverageType.PET, 1, "40.00", "40.00", "40.00", "40.00"),
+                single("Beta", CoverageType.PET));
+
+        statistics.apply(QuoteChangedEvent.deleted(1L, 2));
+        statistics.apply(QuoteChangedEvent.deleted(1L, 2));
+
+        assertTrue(statistics.get("Alpha", null).isEmpty());
+        assertEquals(1, statistics.get(null, null).get(0).count());
+    }
+
+    @Test
+    void apply_MedianMatchesFullSortThroughRandomChanges() {
+        Random random = new Random(42);
+        Map<Long, Long> prices = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            long id = random.nextInt(200);
+            if (random.nextInt(3) == 0) {
+                prices.remove(id);
+                statistics.apply(QuoteChangedEvent.deleted(id, i + 1));
+            } else {
+                long price = random.nextInt(50) * 100L;
+                prices.put(id, price);
+                statistics.apply(QuoteChangedEvent.updated(
+                        quote(id, CoverageType.HEALTH, BigDecimal.valueOf(price, 2).toPlainString(), "Alpha"), i + 1));
+            }
+
+            List<Long> sorted = new ArrayList<>(prices.values());
+            sorted.sort(null);
+            List<QuoteStats> home = statistics.get("Alpha", CoverageType.HEALTH);
+            if (sorted.isEmpty()) {
+                assertTrue(home.isEmpty());
+                continue;
+            }
+            int middle = sorted.size() / 2;
+            BigDecimal median = sorted.size() % 2 == 1
+                    ? BigDecimal.valueOf(sorted.get(middle), 2)
+                    : BigDecimal.valueOf(sorted.get(middle - 1) + sorted.get(middle), 2).divide(BigDecimal.TWO, 2, RoundingMode.HALF_UP);
+            assertEquals(median, home.get(0).medianPrice(), "after change " + i);
+            assertEquals(BigDecimal.valueOf(sorted.get(0), 2), home.get(0).minPrice());
+            assertEquals(BigDecimal.valueOf(sorted.get(sorted.size() - 1), 2), home.get(0).maxPrice());
+        }
+    }
+
+    @Test
+    void rebuild_RecomputesFromIndex() {
+        statistics.apply(QuoteChangedEvent.created(quote(1L, CoverageType.CAR, "100.00", "Alpha")));
+        when(aggregationIndex.versionedQuotes())
+                .thenReturn(List.of(new VersionedQuote(quote(7L, CoverageType.PET, "20.00", "Beta"), 0)));
+
+        statistics.rebuild();
+
+        assertTrue(statistics.get("Alpha", null).isEmpty());
+        assertEquals(stats("Beta", CoverageType.PET, 1, "20.00", "20.00", "20.00", "20.00"),
+                single("Beta", CoverageType.PET));
+    }
+
+    @Test
+    void apply_IgnoresChangesNotNewerThanTheCountedVersion() {
+        statistics.apply(QuoteChangedEvent.created(quote(1L, CoverageType.CAR, "100.00", "Alpha")));
+        statistics.apply(QuoteChangedEvent.updated(quote(1L, CoverageType.CAR, "300.00", "Alpha"), 2));
+        statistics.apply(QuoteChangedEvent.updated(quote(1L, CoverageType.CAR, "200.00", "Alpha"), 1));
+        statistics.apply(QuoteChangedEvent.created(quote(2L, CoverageType.CAR, "50.00", "Alpha")));
+        statistics.apply(QuoteChangedEvent.deleted(2L, 1));
+        statistics.apply(QuoteChangedEvent.created(quote(2L, CoverageType.CAR, "50.00", "Alpha")));
+
+        assertEquals(stats("Alpha", CoverageType.CAR, 1, "300.00", "300.00", "300.00", "300.00"),
+                single("Alpha", CoverageType.CAR));
+    }
+
+    @Test
+    void rebuild_KeepsDeletionsSoLateUpdatesStaySkipped() {
+        statistics.apply(QuoteChangedEvent.deleted(1L, 3));
+        when(aggregationIndex.versionedQuotes()).thenReturn(List.of());
+
+        statistics.rebuild();
+        statistics.apply(QuoteChangedEvent.updated(quote(1L, CoverageType.CAR, "100.00", "Alpha"), 2));
+
+        assertTrue(statistics.get(null, null).isEmpty());
+    }
+
+    private QuoteStats single(String providerName, CoverageType coverageType) {
+        return statistics.get(providerName, coverageType).stream()
+                .filter(stats -> (providerName == null) == (stats.providerName() == null))
+                .filter(stats -> (coverageType == null) == (stats.coverageType() == null))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static QuoteStats stats(String providerName, CoverageType coverageType, long count,
+                                    String min, String max, String average, String median) {
+        return new QuoteStats(providerName, coverageType, count, new BigDecimal(min), new BigDecimal(max),
+                new BigDecimal(average), new BigDecimal(median));
+    }
+
+    private static QuoteResponse quote(Long id, CoverageType coverageType, String price, String providerName) {
+        return new QuoteResponse(id, coverageType, new BigDecimal(price), providerName);
+    }
+}
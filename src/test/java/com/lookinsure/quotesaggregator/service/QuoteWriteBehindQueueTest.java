@@ -0,0 +1,186 @@
+package com.lookinsure.quotesaggregator.service;
+
+import com.lookinsure.quotesaggregator.config.WriteBehindProperties;
+import com.lookinsure.quotesaggregator.dto.PendingWrite;
+import com.lookinsure.quotesaggregator.dto.QuoteRequest;
+import com.lookinsure.quotesaggregator.entity.CoverageType;
+import com.lookinsure.quotesaggregator.exception.WriteQueueFullException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class QuoteWriteBehindQueueTest {
+
+    @Mock
+    private QuoteService quoteService;
+
+    private final WriteBehindProperties properties = new WriteBehindProperties();
+    private QuoteWriteBehindQueue queue;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (queue != null) {
+            queue.stop();
+        }
+    }
+
+    @Test
+    void submit_FullBatchIsFlushedInOneTransactionInSubmissionOrder() {
+        properties.setBatchSize(3);
+        properties.setFlushInterval(Duration.ofSeconds(30));
+        when(quoteService.applyMutations(any())).thenAnswer(invocation -> appliedInOrder(invocation.getArgument(0)));
+        start();
+
+        List<QuoteMutation> mutations = List.of(
+                QuoteMutation.update(1L, request(10)), QuoteMutation.update(1L, request(20)), QuoteMutation.delete(2L));
+        List<PendingWrite> pending = mutations.stream().map(queue::submit).toList();
+
+        verify(quoteService, timeout(5000)).applyMutations(mutations);
+        assertEquals(PendingWrite.Status.PENDING, pending.get(0).status());
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                assertEquals(PendingWrite.committed(pending.get(2).id(), 3L), queue.status(pending.get(2).id()).orElseThrow()));
+    }
+
+    @Test
+    void submit_PartialBatchIsFlushedAfterInterval() {
+        properties.setBatchSize(100);
+        properties.setFlushInterval(Duration.ofMillis(100));
+        when(quoteService.applyMutations(any())).thenAnswer(invocation -> appliedInOrder(invocation.getArgument(0)));
+        start();
+
+        queue.submit(QuoteMutation.create(request(10)));
+        queue.submit(QuoteMutation.create(request(20)));
+
+        verify(quoteService, timeout(5000)).applyMutations(argThat(batch -> batch.size() == 2));
+    }
+
+    @Test
+    void submit_RejectsWhenQueueIsFull() throws Exception {
+        properties.setCapacity(2);
+        properties.setBatchSize(1);
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(quoteService.applyMutations(any())).thenAnswer(invocation -> {
+            flushing.countDown();
+            release.await();
+            return appliedInOrder(invocation.getArgument(0));
+        });
+        start();
+
+        try {
+            queue.submit(QuoteMutation.delete(1L));
+            assertTrue(flushing.await(5, TimeUnit.SECONDS));
+            queue.submit(QuoteMutation.delete(2L));
+            queue.submit(QuoteMutation.delete(3L));
+
+            assertThrows(WriteQueueFullException.class, () -> queue.submit(QuoteMutation.delete(4L)));
+        } finally {
+            release.countDown();
+        }
+        verify(quoteService, timeout(5000).times(3)).applyMutations(any());
+    }
+
+    @Test
+    void stop_FlushesQueuedMutationsAndRejectsNewOnes() throws Exception {
+        properties.setFlushInterval(Duration.ofSeconds(30));
+        when(quoteService.applyMutations(any())).thenAnswer(invocation -> appliedInOrder(invocation.getArgument(0)));
+        start();
+        PendingWrite pending = queue.submit(QuoteMutation.create(request(10)));
+
+        queue.stop();
+
+        verify(quoteService).applyMutations(List.of(QuoteMutation.create(request(10))));
+        assertEquals(PendingWrite.Status.COMMITTED, queue.status(pending.id()).orElseThrow().status());
+        assertThrows(WriteQueueFullException.class, () -> queue.submit(QuoteMutation.delete(1L)));
+    }
+
+    @Test
+    void flush_ReportsRejectedMutationsAndFailedBatches() {
+        properties.setBatchSize(2);
+        properties.setFlushInterval(Duration.ofSeconds(30));
+        when(quoteService.applyMutations(any()))
+                .thenReturn(List.of(QuoteMutation.Outcome.applied(1L),
+                        QuoteMutation.Outcome.rejected("Quote not found with ID: 2")))
+                .thenThrow(new IllegalStateException("database unavailable"));
+        start();
+
+        PendingWrite applied = queue.submit(QuoteMutation.delete(1L));
+        PendingWrite rejected = queue.submit(QuoteMutation.delete(2L));
+        PendingWrite failed = queue.submit(QuoteMutation.delete(3L));
+        PendingWrite alsoFailed = queue.submit(QuoteMutation.delete(4L));
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                assertEquals(PendingWrite.Status.FAILED, queue.status(alsoFailed.id()).orElseThrow().status()));
+        assertEquals(PendingWrite.committed(applied.id(), 1L), queue.status(applied.id()).orElseThrow());
+        assertEquals(PendingWrite.failed(rejected.id(), "Quote not found with ID: 2"), queue.status(rejected.id()).orElseThrow());
+        assertEquals(PendingWrite.Status.FAILED, queue.status(failed.id()).orElseThrow().status());
+        assertTrue(queue.status("unknown").isEmpty());
+    }
+
+    @Test
+    void flush_ErrorFailsTheBatchButKeepsTheWriterRunning() {
+        properties.setBatchSize(1);
+        when(quoteService.applyMutations(any()))
+                .thenThrow(new StackOverflowError())
+                .thenAnswer(invocation -> appliedInOrder(invocation.getArgument(0)));
+        start();
+
+        PendingWrite failed = queue.submit(QuoteMutation.delete(1L));
+        PendingWrite committed = queue.submit(QuoteMutation.delete(2L));
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                assertEquals(PendingWrite.committed(committed.id(), 1L), queue.status(committed.id()).orElseThrow()));
+        assertEquals(PendingWrite.Status.FAILED, queue.status(failed.id()).orElseThrow().status());
+    }
+
+    @Test
+    void status_PendingWritesOutliveTheOutcomeBound() {
+        properties.setBatchSize(1);
+        properties.setResultCapacity(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(quoteService.applyMutations(any())).thenAnswer(invocation -> {
+            release.await();
+            return appliedInOrder(invocation.getArgument(0));
+        });
+        start();
+
+        List<PendingWrite> writes = LongStream.rangeClosed(1, 5).mapToObj(id -> queue.submit(QuoteMutation.delete(id))).toList();
+        verify(quoteService, timeout(5000)).applyMutations(any());
+        for (PendingWrite write : writes) {
+            assertEquals(write, queue.status(write.id()).orElseThrow());
+        }
+
+        release.countDown();
+        verify(quoteService, timeout(5000).times(5)).applyMutations(any());
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                assertEquals(1, writes.stream().filter(write -> queue.status(write.id()).isPresent()).count()));
+    }
+
+    private void start() {
+        queue = new QuoteWriteBehindQueue(quoteService, properties);
+        queue.start();
+    }
+
+    private static List<QuoteMutation.Outcome> appliedInOrder(List<QuoteMutation> mutations) {
+        return LongStream.rangeClosed(1, mutations.size()).mapToObj(QuoteMutation.Outcome::applied).toList();
+    }
+
+    private static QuoteRequest request(long price) {
+        return new QuoteRequest(CoverageType.CAR, BigDecimal.valueOf(price), 1L);
+    }
+}
@@ -0,0 +1,48 @@
+package com.lookinsure.quotesaggregator.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TombstonesTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Tombstones tombstones = new Tombstones(nanos::get);
+
+    @Test
+    void record_KeepsTheHighestDeletionVersion() {
+        tombstones.record(1L, 4);
+        tombstones.record(1L, 2);
+
+        assertEquals(4, tombstones.version(1L));
+        assertEquals(-1, tombstones.version(2L));
+    }
+
+    @Test
+    void version_ExpiresAfterRetention() {
+        tombstones.record(1L, 4);
+        nanos.addAndGet(Tombstones.RETENTION.minus(Duration.ofSeconds(1)).toNanos());
+        tombstones.record(2L, 3);
+        assertEquals(4, tombstones.version(1L));
+
+        nanos.addAndGet(Duration.ofSeconds(2).toNanos());
+
+        assertEquals(-1, tombstones.version(1L));
+        assertEquals(3, tombstones.version(2L));
+        assertEquals(1, tombstones.size());
+    }
+
+    @Test
+    void forgetAndClear_DropTombstones() {
+        tombstones.record(1L, 4);
+        tombstones.record(2L, 4);
+
+        tombstones.forget(1L);
+        assertEquals(-1, tombstones.version(1L));
+        tombstones.clear();
+        assertEquals(0, tombstones.size());
+    }
+}